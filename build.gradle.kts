@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.5.6"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("me.champeau.jmh") version "0.7.3"
 }
 
 group = "com.samsonduncan"
@@ -31,12 +32,27 @@ dependencies {
 	testImplementation("org.springframework.boot:spring-boot-starter-test")
 	testImplementation("io.projectreactor:reactor-test")
 	testRuntimeOnly("org.junit.platform:junit-platform-launcher")
-	implementation("org.java-websocket:Java-WebSocket:1.5.7")
+	//only the ReplayServer stand-in and benchmarks, the app connects through the JDK client (see FeedTransport)
+	jmhImplementation("org.java-websocket:Java-WebSocket:1.5.7")
 	implementation("org.bouncycastle:bcpkix-jdk18on:1.77")
 	implementation("com.nimbusds:nimbus-jose-jwt:9.31")
 	implementation("org.springframework.boot:spring-boot-starter-websocket")
+	implementation("com.lmax:disruptor:4.0.0")
+	implementation("org.springframework.boot:spring-boot-starter-actuator")
+	//already under micrometer, declared for PipelineLatency
+	implementation("org.hdrhistogram:HdrHistogram:2.2.2")
 }
 
 tasks.withType<Test> {
 	useJUnitPlatform()
 }
+
+//benchmarks live in src/jmh, run with ./gradlew jmh
+//a subset can be picked with eg ./gradlew jmh -PjmhIncludes=RoutingBenchmark
+jmh {
+	jmhVersion = "1.37"
+	//allocation rate per op alongside the timings
+	profilers.add("gc")
+	resultFormat = "JSON"
+	providers.gradleProperty("jmhIncludes").orNull?.let { includes.add(it) }
+}
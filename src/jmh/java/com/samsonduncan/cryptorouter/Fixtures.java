@@ -0,0 +1,32 @@
+package com.samsonduncan.cryptorouter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+//Loads recorded feed messages from src/jmh/resources/fixtures, one raw websocket message per line
+public final class Fixtures {
+
+    public static final String KRAKEN_BOOK = "fixtures/kraken-book10-xbtusd.jsonl";
+    public static final String COINBASE_LEVEL2 = "fixtures/coinbase-level2-btcusd.jsonl";
+
+    private Fixtures() {
+    }
+
+    public static String[] load(String resource) {
+        InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalArgumentException("Fixture not found: " + resource);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            return reader.lines()
+                    .filter(line -> !line.isBlank())
+                    .toArray(String[]::new);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
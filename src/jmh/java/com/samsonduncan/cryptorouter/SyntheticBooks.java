@@ -0,0 +1,68 @@
+package com.samsonduncan.cryptorouter;
+
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.util.SplittableRandom;
+
+//Generates BTC-USD style books for benchmarks, deterministic for a given seed
+public final class SyntheticBooks {
+
+    public static final InstrumentSpec INSTRUMENT = InstrumentSpec.BTC_USD;
+
+    //67000.00 at scale 2, one tick is 0.01
+    public static final long MID_PRICE = 6_700_000L;
+
+    private SyntheticBooks() {
+    }
+
+    /**
+     * Full snapshot for one exchange, levels a random 1-5 ticks apart starting next to the mid
+     * @param depth levels per side
+     * @param seed different seeds give books that only partly overlap
+     */
+    public static BookUpdate snapshot(Exchange exchange, int depth, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BookUpdate book = new BookUpdate(depth);
+        book.reset(exchange, true);
+
+        long bid = MID_PRICE - 1;
+        long ask = MID_PRICE + 1;
+        for (int i = 0; i < depth; i++) {
+            book.add(BookSide.BID, bid, quantity(random));
+            book.add(BookSide.ASK, ask, quantity(random));
+            bid -= random.nextInt(1, 6);
+            ask += random.nextInt(1, 6);
+        }
+        return book;
+    }
+
+    /**
+     * Delta update touching a few levels near the top of book, some of them removals
+     * @param changes number of levels changed
+     * @param spread how many ticks from the mid the changes can land
+     */
+    public static BookUpdate delta(Exchange exchange, int changes, int spread, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        BookUpdate book = new BookUpdate(changes);
+        book.reset(exchange, false);
+
+        for (int i = 0; i < changes; i++) {
+            long offset = random.nextInt(1, spread + 1);
+            long quantity = random.nextInt(3) == 0 ? 0 : quantity(random);
+            if (random.nextBoolean()) {
+                book.add(BookSide.BID, MID_PRICE - offset, quantity);
+            } else {
+                book.add(BookSide.ASK, MID_PRICE + offset, quantity);
+            }
+        }
+        return book;
+    }
+
+    //0.0001 to 2.5 BTC at scale 8
+    private static long quantity(SplittableRandom random) {
+        return random.nextLong(10_000L, 250_000_000L);
+    }
+}
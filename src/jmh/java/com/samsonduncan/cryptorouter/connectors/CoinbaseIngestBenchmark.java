@@ -0,0 +1,65 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.Fixtures;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/*
+Recorded Coinbase l2update batches through CoinbaseAdapter.onMessage,
+covering parse, the local ladder update and the hand off to OrderBookService.
+Only the connection thread's cost is measured, the book writer applies the updates on its own thread.
+The adapter is never connected, messages are fed to it directly after loading the recorded snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CoinbaseIngestBenchmark {
+
+    private CoinbaseAdapter adapter;
+    private String[] updates;
+    private int next;
+
+    @Setup
+    public void setup() throws Exception {
+        InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+        adapter = new CoinbaseAdapter(
+                null, //only used for the subscription
+                instruments,
+                new OrderBookService(instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments)));
+
+        String[] messages = Fixtures.load(Fixtures.COINBASE_LEVEL2);
+        for (String message : messages) {
+            if (message.contains("\"type\":\"snapshot\"")) {
+                adapter.onMessage(message);
+            }
+        }
+        updates = Arrays.stream(messages)
+                .filter(message -> message.contains("\"type\":\"l2update\""))
+                .toArray(String[]::new);
+        next = 0;
+    }
+
+    @Benchmark
+    public void l2update() throws Exception {
+        adapter.onMessage(updates[next]);
+        next = next + 1 == updates.length ? 0 : next + 1;
+    }
+}
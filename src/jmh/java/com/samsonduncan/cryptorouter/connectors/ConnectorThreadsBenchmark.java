@@ -0,0 +1,159 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+Many connections on one FeedTransport reading from one local WebSocket server,
+with messages delivered on ExecutionModel's platform or virtual connector threads.
+fanOut is the time from one server broadcast until every connection's adapter has the message.
+The JVM's platform thread count once all are open is printed at setup,
+virtual threads don't count towards it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectorThreadsBenchmark {
+
+    //about the size of a Kraken book update
+    private static final String MESSAGE = "[336,{\"a\":[[\"67012.30000\",\"0.25000000\",\"1718000000.123456\"]],"
+            + "\"b\":[[\"67011.90000\",\"1.50000000\",\"1718000000.123470\"]],\"c\":\"3478429510\"},\"book-10\",\"XBT/USD\"]";
+
+    @Param({"10", "50"})
+    private int connectors;
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService timers;
+    private FeedTransport transport;
+    private Server server;
+    private volatile CountDownLatch received;
+
+    @Setup
+    public void setup() throws Exception {
+        server = new Server(connectors);
+        server.start();
+        server.started.await();
+
+        executor = ExecutionModel.executor("bench-connector-", threads.equals("virtual"));
+        timers = Executors.newSingleThreadScheduledExecutor();
+        transport = new FeedTransport(executor, timers, Duration.ofSeconds(10), Duration.ofSeconds(30),
+                Duration.ofSeconds(60), new Backoff(Duration.ofMillis(500), Duration.ofSeconds(30)));
+        URI uri = new URI("ws://localhost:" + server.getPort());
+        for (int i = 0; i < connectors; i++) {
+            transport.connection("bench-" + i, uri, new Receiver()).connect();
+        }
+        if (!server.opened.await(30, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Connectors didn't all connect");
+        }
+        System.out.println(connectors + " connectors on " + threads + " threads: "
+                + ManagementFactory.getThreadMXBean().getThreadCount() + " live platform threads");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transport.close();
+        server.stop();
+        timers.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void fanOut() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(connectors);
+        received = latch;
+        server.broadcast(MESSAGE);
+        latch.await();
+    }
+
+    private final class Receiver implements ExchangeAdapter {
+
+        private final BookIntegrity integrity = new BookIntegrity();
+
+        @Override
+        public Exchange exchange() {
+            return Exchange.KRAKEN;
+        }
+
+        @Override
+        public BookIntegrity integrity() {
+            return integrity;
+        }
+
+        @Override
+        public List<String> subscribeMessages() {
+            return List.of();
+        }
+
+        @Override
+        public void onMessage(String message) {
+            received.countDown();
+        }
+    }
+
+    private static final class Server extends WebSocketServer {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch opened;
+
+        private Server(int connectors) {
+            super(new InetSocketAddress("localhost", 0));
+            this.opened = new CountDownLatch(connectors);
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            opened.countDown();
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samsonduncan.cryptorouter.Fixtures;
+import com.samsonduncan.cryptorouter.model.coinbase.CoinbaseSnapshot;
+import com.samsonduncan.cryptorouter.model.coinbase.CoinbaseUpdate;
+import com.samsonduncan.cryptorouter.model.kraken.KrakenOrderBookEntry;
+import com.samsonduncan.cryptorouter.model.kraken.KrakenOrderBookMessage;
+import com.samsonduncan.cryptorouter.model.kraken.KrakenSubscriptionStatus;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+Compares the streaming feed parsers with the tree + databind path they replaced,
+on recorded Kraken book-10 and Coinbase level2 messages.
+Each op parses one message, cycling through the recording, and both paths end in scaled longs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FeedParserBenchmark {
+
+    @Param({"kraken", "coinbase"})
+    private String feed;
+
+    private final InstrumentSpec instrument = InstrumentSpec.BTC_USD;
+    private ObjectMapper objectMapper;
+    private KrakenMessageParser krakenParser;
+    private CoinbaseMessageParser coinbaseParser;
+    private BookEventListener listener;
+    private String[] messages;
+    private int next;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        //the fixtures only carry one instrument
+        krakenParser = new KrakenMessageParser(objectMapper.getFactory(), channelId -> instrument);
+        coinbaseParser = new CoinbaseMessageParser(objectMapper.getFactory(), productId -> instrument);
+        listener = new BlackholeListener(blackhole);
+        messages = Fixtures.load(feed.equals("kraken") ? Fixtures.KRAKEN_BOOK : Fixtures.COINBASE_LEVEL2);
+        next = 0;
+    }
+
+    private String nextMessage() {
+        String message = messages[next];
+        next = next + 1 == messages.length ? 0 : next + 1;
+        return message;
+    }
+
+    @Benchmark
+    public Object streaming() throws Exception {
+        if (feed.equals("kraken")) {
+            return krakenParser.parse(nextMessage(), listener);
+        }
+        return coinbaseParser.parse(nextMessage(), listener);
+    }
+
+    @Benchmark
+    public void treeAndDatabind(Blackhole blackhole) throws Exception {
+        if (feed.equals("kraken")) {
+            krakenTree(nextMessage(), blackhole);
+        } else {
+            coinbaseTree(nextMessage(), blackhole);
+        }
+    }
+
+    //the previous KrakenConnector.onMessage path: contains, readTree, treeToValue
+    private void krakenTree(String message, Blackhole blackhole) throws Exception {
+        if (message.contains("\"event\":\"subscriptionStatus\"")) {
+            blackhole.consume(objectMapper.readValue(message, KrakenSubscriptionStatus.class));
+        } else if (message.contains("\"book-10\"")) {
+            JsonNode rootNode = objectMapper.readTree(message);
+            JsonNode payload = rootNode.get(1);
+            blackhole.consume(rootNode.get(3).asText());
+
+            KrakenOrderBookMessage bookMessage = objectMapper.treeToValue(payload, KrakenOrderBookMessage.class);
+            consumeKraken(bookMessage.getBs(), blackhole);
+            consumeKraken(bookMessage.getB(), blackhole);
+            consumeKraken(bookMessage.getAs(), blackhole);
+            consumeKraken(bookMessage.getA(), blackhole);
+        }
+    }
+
+    private void consumeKraken(List<KrakenOrderBookEntry> entries, Blackhole blackhole) {
+        if (entries == null) {
+            return;
+        }
+        for (KrakenOrderBookEntry entry : entries) {
+            blackhole.consume(instrument.parsePrice(entry.getPrice()));
+            blackhole.consume(instrument.parseQuantity(entry.getVolume()));
+        }
+    }
+
+    //the previous CoinbaseConnector.onMessage path: readTree, then readValue on the whole string again
+    private void coinbaseTree(String message, Blackhole blackhole) throws Exception {
+        JsonNode node = objectMapper.readTree(message);
+        String type = node.get("type").asText();
+
+        if (type.equals("snapshot")) {
+            CoinbaseSnapshot snapshot = objectMapper.readValue(message, CoinbaseSnapshot.class);
+            consumeCoinbase(snapshot.getBids(), 0, blackhole);
+            consumeCoinbase(snapshot.getAsks(), 0, blackhole);
+        } else if (type.equals("l2update")) {
+            CoinbaseUpdate update = objectMapper.readValue(message, CoinbaseUpdate.class);
+            consumeCoinbase(update.getChanges(), 1, blackhole);
+        }
+    }
+
+    private void consumeCoinbase(List<List<String>> levels, int priceIndex, Blackhole blackhole) {
+        for (List<String> level : levels) {
+            blackhole.consume(instrument.parsePrice(level.get(priceIndex)));
+            blackhole.consume(instrument.parseQuantity(level.get(priceIndex + 1)));
+        }
+    }
+
+    private record BlackholeListener(Blackhole blackhole) implements BookEventListener {
+
+        @Override
+        public void onBookStart(InstrumentSpec instrument, boolean snapshot) {
+            blackhole.consume(instrument);
+            blackhole.consume(snapshot);
+        }
+
+        @Override
+        public void onLevel(BookSide side, long price, long quantity) {
+            blackhole.consume(price);
+            blackhole.consume(quantity);
+        }
+
+        @Override
+        public void onBookEnd() {
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.Fixtures;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/*
+Offline ingest load test, N venues x M pairs over real local sockets.
+Each venue is its own ReplayServer replaying the Kraken or Coinbase recording (alternately)
+as M pairs, read through the shared FeedTransport into the real adapters and OrderBookService.
+One op is one replay of every venue, done when every message has been through its adapter,
+so messages per second is venues * pairs * recording lines / the op time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReplayIngestBenchmark {
+
+    @Param({"2", "8"})
+    private int venues;
+
+    @Param({"1", "10"})
+    private int pairs;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService timers;
+    private FeedTransport transport;
+    private OrderBookService orderBookService;
+    private final List<ReplayServer> servers = new ArrayList<>();
+    private final AtomicInteger received = new AtomicInteger();
+    private volatile CountDownLatch done;
+    private int expected;
+
+    @Setup
+    public void setup() throws Exception {
+        //venue v carries pairs P<v*pairs>..., listed on both exchanges
+        InstrumentRegistry instruments = new InstrumentRegistry();
+        for (int p = 0; p < venues * pairs; p++) {
+            instruments.register(new InstrumentSpec("P" + p + "-USD", 2, 8),
+                    Map.of(Exchange.KRAKEN, "P" + p + "/USD", Exchange.COINBASE, "P" + p + "-USD"));
+        }
+        orderBookService = new OrderBookService(instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments));
+
+        executor = ExecutionModel.executor("replay-connector-", true);
+        timers = Executors.newSingleThreadScheduledExecutor();
+        transport = new FeedTransport(executor, timers, Duration.ofSeconds(10), Duration.ofSeconds(30),
+                Duration.ofSeconds(60), new Backoff(Duration.ofMillis(500), Duration.ofSeconds(30)));
+
+        String[] kraken = Fixtures.load(Fixtures.KRAKEN_BOOK);
+        String[] coinbase = Fixtures.load(Fixtures.COINBASE_LEVEL2);
+        for (int v = 0; v < venues; v++) {
+            boolean isKraken = v % 2 == 0;
+            List<Map<String, String>> variants = new ArrayList<>();
+            for (int p = v * pairs; p < (v + 1) * pairs; p++) {
+                variants.add(isKraken
+                        ? Map.of("XBT/USD", "P" + p + "/USD",
+                                "[336,", "[" + (1000 + p) + ",",
+                                "\"channelID\":336", "\"channelID\":" + (1000 + p))
+                        : Map.of("BTC-USD", "P" + p + "-USD"));
+            }
+            ReplayServer server = new ReplayServer(0, isKraken ? kraken : coinbase, variants, 0, false);
+            server.start();
+            server.awaitStart();
+            servers.add(server);
+            expected += server.messagesPerReplay();
+
+            ExchangeAdapter adapter = isKraken
+                    ? new KrakenAdapter(instruments, orderBookService, 10)
+                    : new CoinbaseAdapter(null, instruments, orderBookService);
+            FeedConnection connection = transport.connection(
+                    "venue-" + v, new URI("ws://localhost:" + server.getPort()), new Counting(adapter));
+            connection.connect();
+        }
+
+        //wait for every socket to open
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (servers.stream().mapToInt(server -> server.getConnections().size()).sum() < venues) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Venues didn't all connect");
+            }
+            Thread.sleep(10);
+        }
+        System.out.println(venues + " venues x " + pairs + " pairs: " + expected + " messages per op");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        transport.close();
+        for (ReplayServer server : servers) {
+            server.stop();
+        }
+        timers.shutdownNow();
+        executor.shutdownNow();
+        orderBookService.shutdown();
+    }
+
+    @Benchmark
+    public void replay() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        done = latch;
+        received.set(0);
+        for (ReplayServer server : servers) {
+            server.replayAll();
+        }
+        latch.await();
+    }
+
+    //counts messages through the real adapter
+    private final class Counting implements ExchangeAdapter {
+
+        private final ExchangeAdapter adapter;
+
+        private Counting(ExchangeAdapter adapter) {
+            this.adapter = adapter;
+        }
+
+        @Override
+        public Exchange exchange() {
+            return adapter.exchange();
+        }
+
+        @Override
+        public BookIntegrity integrity() {
+            return adapter.integrity();
+        }
+
+        @Override
+        public void onConnect(Consumer<String> send) {
+            adapter.onConnect(send);
+        }
+
+        @Override
+        public void setActive(boolean active) {
+            adapter.setActive(active);
+        }
+
+        @Override
+        public List<String> subscribeMessages() {
+            //the replay is started by the benchmark, not a subscription
+            return List.of();
+        }
+
+        @Override
+        public void onMessage(String message) throws Exception {
+            adapter.onMessage(message);
+            if (received.incrementAndGet() == expected) {
+                done.countDown();
+            }
+        }
+
+        @Override
+        public void onDisconnect() {
+            adapter.onDisconnect();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.Fixtures;
+import org.java_websocket.WebSocket;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+Local stand-in for an exchange feed, replays a recording (see Fixtures) to whoever connects.
+Nothing is parsed. A client's first message is taken as its subscription, and if replayOnSubscribe
+is set the recording is then sent to it in a loop until it disconnects. replayAll sends it once
+to every open connection instead, which is what the ingest benchmarks time.
+
+Variants turn one recording into M pairs. Each is a set of literal replacements applied to
+every line up front, eg {"XBT/USD" -> "P1/USD", "[336," -> "[1001,"} for a Kraken pair and
+its channel. Every line is sent once per variant before the next line.
+messagesPerSecond paces each connection, 0 sends as fast as the socket drains.
+
+Runs on its own too, eg with the jmh jar on the classpath:
+ReplayServer 9001 fixtures/kraken-book10-xbtusd.jsonl 200
+and connectors.venues.kraken.uri=ws://localhost:9001
+ */
+public final class ReplayServer extends WebSocketServer {
+
+    //messages queued on a socket before waiting for it to drain
+    private static final int BATCH = 256;
+
+    private final String[][] lines;
+    private final long intervalNanos;
+    private final boolean replayOnSubscribe;
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    public ReplayServer(int port, String[] recording, List<Map<String, String>> variants,
+                        long messagesPerSecond, boolean replayOnSubscribe) {
+        super(new InetSocketAddress("localhost", port));
+        setReuseAddr(true);
+        this.intervalNanos = messagesPerSecond > 0 ? 1_000_000_000L / messagesPerSecond : 0;
+        this.replayOnSubscribe = replayOnSubscribe;
+
+        List<Map<String, String>> each = variants.isEmpty() ? List.of(Map.of()) : variants;
+        this.lines = new String[recording.length][each.size()];
+        for (int i = 0; i < recording.length; i++) {
+            for (int v = 0; v < each.size(); v++) {
+                String line = recording[i];
+                for (Map.Entry<String, String> replacement : each.get(v).entrySet()) {
+                    line = line.replace(replacement.getKey(), replacement.getValue());
+                }
+                lines[i][v] = line;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        long rate = args.length > 2 ? Long.parseLong(args[2]) : 100;
+        ReplayServer server = new ReplayServer(port, Fixtures.load(args[1]), List.of(), rate, true);
+        server.start();
+        server.awaitStart();
+        System.out.println("Replaying " + args[1] + " on ws://localhost:" + server.getPort() + " at " + rate + "/s");
+    }
+
+    public void awaitStart() throws InterruptedException {
+        started.await();
+    }
+
+    //messages one replay sends to each connection
+    public int messagesPerReplay() {
+        return lines.length * lines[0].length;
+    }
+
+    //one replay to every open connection, each on its own virtual thread
+    public void replayAll() {
+        for (WebSocket connection : getConnections()) {
+            Thread.ofVirtual().start(() -> replay(connection, 1));
+        }
+    }
+
+    //times 0 repeats until the connection closes
+    private void replay(WebSocket connection, int times) {
+        long next = System.nanoTime();
+        int sent = 0;
+        for (int pass = 0; times == 0 || pass < times; pass++) {
+            for (String[] variants : lines) {
+                for (String line : variants) {
+                    if (!connection.isOpen()) {
+                        return;
+                    }
+                    //the socket queues sends without limit, so let it drain every so often
+                    if (++sent % BATCH == 0) {
+                        while (connection.hasBufferedData()) {
+                            LockSupport.parkNanos(20_000);
+                        }
+                    }
+                    if (intervalNanos > 0) {
+                        next += intervalNanos;
+                        LockSupport.parkNanos(next - System.nanoTime());
+                    }
+                    try {
+                        connection.send(line);
+                    } catch (WebsocketNotConnectedException e) {
+                        //closed between the check and the send, eg the server stopping to test a reconnect
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket connection, ClientHandshake handshake) {
+    }
+
+    @Override
+    public void onMessage(WebSocket connection, String message) {
+        //only the first message starts a replay, later ones (eg resubscribes) are ignored
+        if (replayOnSubscribe && connection.getAttachment() == null) {
+            connection.setAttachment(Boolean.TRUE);
+            Thread.ofVirtual().start(() -> replay(connection, 0));
+        }
+    }
+
+    @Override
+    public void onClose(WebSocket connection, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onError(WebSocket connection, Exception e) {
+        e.printStackTrace();
+    }
+}
@@ -0,0 +1,130 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.PEMKeyPair;
+import org.bouncycastle.openssl.PEMParser;
+import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/*
+JWTs for a burst of Coinbase resubscriptions, eg every socket reconnecting after a network blip.
+parseKeyEachTime is how generateJwt used to work, parsing the PEM and building a signer per token.
+cachedSigner signs with the signer built at startup, pooled takes pre-signed tokens.
+The pool is topped up between invocations, as the background refill would between blips.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 50)
+@Measurement(iterations = 100)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CoinbaseAuthBenchmark {
+
+    @Param({"1", "50"})
+    private int sockets;
+
+    private String pem;
+    private ExecutionModel executionModel;
+    private CoinbaseAuthService authService;
+
+    @Setup
+    public void setup() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", new BouncyCastleProvider());
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        StringWriter out = new StringWriter();
+        try (JcaPEMWriter writer = new JcaPEMWriter(out)) {
+            writer.writeObject(generator.generateKeyPair());
+        }
+        pem = out.toString();
+
+        executionModel = new ExecutionModel(true);
+        authService = new CoinbaseAuthService("organizations/bench/apiKeys/bench", pem, sockets, executionModel);
+        authService.start();
+    }
+
+    @Setup(Level.Invocation)
+    public void refill() {
+        authService.refill(CoinbaseAuthService.WEBSOCKET_URI);
+    }
+
+    @TearDown
+    public void tearDown() {
+        authService.shutdown();
+        executionModel.close();
+    }
+
+    @Benchmark
+    public void parseKeyEachTime(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < sockets; i++) {
+            blackhole.consume(signParsingKey(CoinbaseAuthService.WEBSOCKET_URI));
+        }
+    }
+
+    @Benchmark
+    public void cachedSigner(Blackhole blackhole) {
+        for (int i = 0; i < sockets; i++) {
+            blackhole.consume(authService.signJwt(CoinbaseAuthService.WEBSOCKET_URI));
+        }
+    }
+
+    @Benchmark
+    public void pooled(Blackhole blackhole) {
+        for (int i = 0; i < sockets; i++) {
+            blackhole.consume(authService.generateJwt());
+        }
+    }
+
+    //the old generateJwt
+    private String signParsingKey(String uri) throws Exception {
+        ECPrivateKey key;
+        try (PEMParser pemParser = new PEMParser(new StringReader(pem.replace("\\n", "\n")))) {
+            PEMKeyPair keyPair = (PEMKeyPair) pemParser.readObject();
+            key = (ECPrivateKey) new JcaPEMKeyConverter().setProvider("BC").getPrivateKey(keyPair.getPrivateKeyInfo());
+        }
+        JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.ES256)
+                .keyID("organizations/bench/apiKeys/bench")
+                .customParam("nonce", UUID.randomUUID().toString())
+                .build();
+        JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
+                .subject("organizations/bench/apiKeys/bench")
+                .issuer("cdp")
+                .claim("uri", uri)
+                .expirationTime(new Date(Instant.now().plusSeconds(120).toEpochMilli()))
+                .issueTime(new Date())
+                .notBeforeTime(new Date())
+                .build();
+        SignedJWT signedJWT = new SignedJWT(header, claimsSet);
+        signedJWT.sign(new ECDSASigner(key));
+        return signedJWT.serialize();
+    }
+}
@@ -0,0 +1,71 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.SyntheticBooks;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Connector side of ingest, publishing deltas into the ring as fast as possible.
+The writer drains on its own thread and the ring blocks when full,
+so this measures sustained ingest throughput with and without conflation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class IngestBenchmark {
+
+    @Param({"100", "1000"})
+    private int depth;
+
+    @Param({"true", "false"})
+    private boolean conflate;
+
+    private OrderBookService orderBookService;
+    private BookUpdate[] deltas;
+    private int next;
+
+    @Setup
+    public void setup() {
+        InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+        orderBookService = new OrderBookService(
+                instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, conflate, new PipelineLatency(instruments));
+        orderBookService.publish(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.KRAKEN, depth, 1));
+        orderBookService.publish(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.COINBASE, depth, 2));
+
+        deltas = new BookUpdate[256];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = SyntheticBooks.delta(i % 2 == 0 ? Exchange.KRAKEN : Exchange.COINBASE, 3, 20, i);
+        }
+        next = 0;
+    }
+
+    @TearDown
+    public void tearDown() {
+        orderBookService.shutdown();
+    }
+
+    @Benchmark
+    public boolean publishDelta() {
+        boolean published = orderBookService.publish(SyntheticBooks.INSTRUMENT, deltas[next]);
+        next = next + 1 == deltas.length ? 0 : next + 1;
+        return published;
+    }
+}
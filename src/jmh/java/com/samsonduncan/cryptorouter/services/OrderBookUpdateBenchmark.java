@@ -0,0 +1,89 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.SyntheticBooks;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Cost of applying one update to the consolidated book on the writer (OrderBookService.apply),
+including publishing the new snapshot,
+at different book depths and numbers of contributing exchanges.
+snapshot replaces one exchange's whole book, delta changes a few levels near the touch.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OrderBookUpdateBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int depth;
+
+    //limited by the Exchange enum
+    @Param({"1", "2"})
+    private int exchanges;
+
+    private OrderBookService orderBookService;
+    private BookUpdate[] snapshots;
+    private BookUpdate[] deltas;
+    private int nextSnapshot;
+    private int nextDelta;
+
+    @Setup
+    public void setup() {
+        InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+        orderBookService = new OrderBookService(
+                instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments));
+        Exchange[] venues = Exchange.values();
+
+        //two variants per exchange so each replace actually moves levels
+        snapshots = new BookUpdate[exchanges * 2];
+        for (int i = 0; i < snapshots.length; i++) {
+            snapshots[i] = SyntheticBooks.snapshot(venues[i % exchanges], depth, i);
+        }
+        for (int i = 0; i < exchanges; i++) {
+            orderBookService.apply(SyntheticBooks.INSTRUMENT, snapshots[i]);
+        }
+
+        deltas = new BookUpdate[256];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = SyntheticBooks.delta(venues[i % exchanges], 3, 20, i);
+        }
+        nextSnapshot = 0;
+        nextDelta = 0;
+    }
+
+    @Benchmark
+    public void snapshot() {
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, snapshots[nextSnapshot]);
+        nextSnapshot = nextSnapshot + 1 == snapshots.length ? 0 : nextSnapshot + 1;
+    }
+
+    @Benchmark
+    public void delta() {
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, deltas[nextDelta]);
+        nextDelta = nextDelta + 1 == deltas.length ? 0 : nextDelta + 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        orderBookService.shutdown();
+    }
+}
@@ -0,0 +1,99 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.SyntheticBooks;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.config.RoutingConfig;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.CostAwareOptimiser;
+import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.OrderSide;
+import com.samsonduncan.cryptorouter.routing.PriceOnlyOptimiser;
+import com.samsonduncan.cryptorouter.routing.Quote;
+import com.samsonduncan.cryptorouter.routing.RouteRequest;
+import com.samsonduncan.cryptorouter.routing.RoutingOptimiser;
+import com.samsonduncan.cryptorouter.routing.VenueBalances;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+RoutingEngine.calculateRoute and quote against a two exchange synthetic book,
+order sizes from inside the top level up to most of the book.
+quote should stay flat as the order grows, calculateRoute grows with the legs it builds.
+optimiser compares the price-only walk with the fee, balance and lot aware split.
+sliced routes the same quantity as ten child orders in one batch, each taking depth from the last.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RoutingBenchmark {
+
+    @Param({"100", "1000"})
+    private int depth;
+
+    //BTC
+    @Param({"0.01", "1", "25", "500"})
+    private String quantity;
+
+    @Param({"price-only", "cost-aware"})
+    private String optimiser;
+
+    private RoutingEngine routingEngine;
+    private BigDecimal orderQuantity;
+    private List<RouteRequest> slices;
+
+    @Setup
+    public void setup() {
+        InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+        OrderBookService orderBookService = new OrderBookService(
+                instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments));
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.KRAKEN, depth, 1));
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.COINBASE, depth, 2));
+
+        RoutingOptimiser routingOptimiser = optimiser.equals("price-only")
+                ? new PriceOnlyOptimiser()
+                : new CostAwareOptimiser(RoutingConfig.defaultVenues(), new VenueBalances(), new BigDecimal("0.000001"));
+        routingEngine = new RoutingEngine(orderBookService, routingOptimiser);
+        orderQuantity = new BigDecimal(quantity);
+        slices = Collections.nCopies(10, new RouteRequest(
+                OrderSide.BUY, orderQuantity.divide(BigDecimal.TEN, 8, RoundingMode.DOWN)));
+    }
+
+    @Benchmark
+    public ExecutionPlan buy() {
+        return routingEngine.calculateRoute(SyntheticBooks.INSTRUMENT.symbol(), OrderSide.BUY, orderQuantity);
+    }
+
+    @Benchmark
+    public Quote quote() {
+        return routingEngine.quote(SyntheticBooks.INSTRUMENT.symbol(), OrderSide.BUY, orderQuantity);
+    }
+
+    @Benchmark
+    public BatchExecutionPlan sliced() {
+        return routingEngine.calculateRoutes(SyntheticBooks.INSTRUMENT.symbol(), slices, true);
+    }
+
+    @Benchmark
+    public ExecutionPlan sell() {
+        return routingEngine.calculateRoute(SyntheticBooks.INSTRUMENT.symbol(), OrderSide.SELL, orderQuantity);
+    }
+}
@@ -0,0 +1,87 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.SyntheticBooks;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+Encoding cost of one order book feed with no sessions attached.
+shape is the whole book per exchange, or the top 10 levels summed across exchanges.
+encoding is the JSON text feed or the WireFormat binary one.
+snapshot is what a client gets on subscribe or resync.
+delta applies a few changed levels then runs one broadcast tick, merge plus diff and encoding.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BroadcastBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int depth;
+
+    @Param({"full", "top10"})
+    private String shape;
+
+    @Param({"json", "binary"})
+    private String encoding;
+
+    private OrderBookService orderBookService;
+    private ShapeFeed feed;
+    private BookUpdate[] deltas;
+    private int next;
+
+    @Setup
+    public void setup() {
+        InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+        orderBookService = new OrderBookService(
+                instruments, 4096, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments));
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.KRAKEN, depth, 1));
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, SyntheticBooks.snapshot(Exchange.COINBASE, depth, 2));
+
+        String instrument = SyntheticBooks.INSTRUMENT.symbol();
+        boolean binary = encoding.equals("binary");
+        FeedShape feedShape = shape.equals("full")
+                ? FeedShape.full(instrument, binary)
+                : new FeedShape(instrument, 10, null, true, 1, binary);
+        feed = new ShapeFeed(feedShape, orderBookService.getSnapshot(instrument));
+
+        deltas = new BookUpdate[256];
+        for (int i = 0; i < deltas.length; i++) {
+            deltas[i] = SyntheticBooks.delta(i % 2 == 0 ? Exchange.KRAKEN : Exchange.COINBASE, 3, 20, i);
+        }
+        next = 0;
+    }
+
+    @Benchmark
+    public WebSocketMessage<?> snapshot() {
+        return feed.snapshotMessage();
+    }
+
+    @Benchmark
+    public WebSocketMessage<?> delta() {
+        orderBookService.apply(SyntheticBooks.INSTRUMENT, deltas[next]);
+        next = next + 1 == deltas.length ? 0 : next + 1;
+        return feed.deltaMessage(orderBookService.getSnapshot(SyntheticBooks.INSTRUMENT.symbol()));
+    }
+}
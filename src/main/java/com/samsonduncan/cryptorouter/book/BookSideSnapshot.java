@@ -0,0 +1,234 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+/*
+Immutable view of one side of the consolidated book, best level first.
+Quantities are held flat, one slot per exchange per level, so a level is
+read without any map lookups. Copied out of ConsolidatedBook's MergedSide and never changed after.
+
+Running totals from the best level down (quantity, and notional as 128 bits) come with the
+levels, MergedSide keeps them as the book changes, so the cost of filling any quantity is a
+binary search away.
+ */
+public final class BookSideSnapshot {
+
+    private static final int EXCHANGES = Exchange.values().length;
+
+    private final BookSide side;
+    private final long[] prices;
+    private final long[] quantities; //level * EXCHANGES + exchange ordinal
+    private final int depth;
+
+    //totals across all exchanges from level 0 to each level inclusive
+    private final long[] cumulativeQuantities;
+    private final long[] cumulativeNotionalHigh;
+    private final long[] cumulativeNotionalLow;
+
+    BookSideSnapshot(
+            BookSide side,
+            long[] prices,
+            long[] quantities,
+            int depth,
+            long[] cumulativeQuantities,
+            long[] cumulativeNotionalHigh,
+            long[] cumulativeNotionalLow) {
+        this.side = side;
+        this.prices = prices;
+        this.quantities = quantities;
+        this.depth = depth;
+        this.cumulativeQuantities = cumulativeQuantities;
+        this.cumulativeNotionalHigh = cumulativeNotionalHigh;
+        this.cumulativeNotionalLow = cumulativeNotionalLow;
+    }
+
+    static BookSideSnapshot empty(BookSide side) {
+        return new BookSideSnapshot(side, new long[0], new long[0], 0, new long[0], new long[0], new long[0]);
+    }
+
+    public BookSide getSide() {
+        return side;
+    }
+
+    //number of price levels
+    public int depth() {
+        return depth;
+    }
+
+    //scaled price of a level, 0 is the best
+    public long price(int level) {
+        checkLevel(level);
+        return prices[level];
+    }
+
+    //scaled quantity one exchange has at a level, 0 if it has none
+    public long quantity(int level, Exchange exchange) {
+        checkLevel(level);
+        return quantities[level * EXCHANGES + exchange.ordinal()];
+    }
+
+    //scaled quantity across all exchanges at a level
+    public long totalQuantity(int level) {
+        checkLevel(level);
+        long total = 0;
+        int base = level * EXCHANGES;
+        for (int i = 0; i < EXCHANGES; i++) {
+            total += quantities[base + i];
+        }
+        return total;
+    }
+
+    //quantity across all exchanges from the best level through this one
+    public long cumulativeQuantity(int level) {
+        checkLevel(level);
+        return cumulativeQuantities[level];
+    }
+
+    //sum of price * quantity from the best level through this one, upper 64 bits (signed)
+    public long cumulativeNotionalHigh(int level) {
+        checkLevel(level);
+        return cumulativeNotionalHigh[level];
+    }
+
+    //lower 64 bits (unsigned) of cumulativeNotional
+    public long cumulativeNotionalLow(int level) {
+        checkLevel(level);
+        return cumulativeNotionalLow[level];
+    }
+
+    /**
+     * Finds the level where a fill of the given size ends, O(log n)
+     * @param quantity scaled quantity to fill
+     * @return first level whose cumulative quantity reaches it, depth() if the side can't fill it
+     */
+    public int levelForQuantity(long quantity) {
+        int low = 0;
+        int high = depth;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulativeQuantities[mid] < quantity) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    //level at exactly this price, -1 if the side has none, O(log n)
+    public int levelOf(long price) {
+        int low = 0;
+        int high = depth - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midPrice = prices[mid];
+            if (midPrice == price) {
+                return mid;
+            }
+            //levels run best first, so bids descend and asks ascend
+            boolean before = side == BookSide.BID ? midPrice > price : midPrice < price;
+            if (before) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copy of this side with some quantity already taken, eg by earlier orders in a batch.
+     * Levels left with nothing are dropped. Only the taken levels are rebuilt, deeper levels
+     * are copied with their running totals shifted, so a small take off a deep book stays cheap.
+     * This snapshot is unchanged.
+     * @param taken scaled quantity taken per level and exchange, indexed level * Exchange.values().length + ordinal
+     * @param levels number of levels from the best that taken covers
+     * @return the remaining book
+     */
+    public BookSideSnapshot minus(long[] taken, int levels) {
+        levels = Math.min(levels, depth);
+        long[] remainingPrices = new long[depth];
+        long[] remainingQuantities = new long[depth * EXCHANGES];
+        long[] remainingCumulativeQuantities = new long[depth];
+        long[] remainingNotionalHigh = new long[depth];
+        long[] remainingNotionalLow = new long[depth];
+        int remainingDepth = 0;
+
+        long runningQuantity = 0;
+        long runningHigh = 0;
+        long runningLow = 0;
+
+        //rebuild the levels taken from
+        for (int level = 0; level < levels; level++) {
+            int base = level * EXCHANGES;
+            int into = remainingDepth * EXCHANGES;
+            long levelQuantity = 0;
+            for (int i = 0; i < EXCHANGES; i++) {
+                long left = Math.max(quantities[base + i] - taken[base + i], 0);
+                remainingQuantities[into + i] = left;
+                levelQuantity += left;
+            }
+            if (levelQuantity == 0) {
+                continue;
+            }
+
+            long price = prices[level];
+            long notionalLow = levelQuantity * price;
+            long notionalHigh = Math.multiplyHigh(levelQuantity, price);
+            long sumLow = runningLow + notionalLow;
+            if (Long.compareUnsigned(sumLow, runningLow) < 0) {
+                notionalHigh++;
+            }
+            runningLow = sumLow;
+            runningHigh += notionalHigh;
+            runningQuantity += levelQuantity;
+
+            remainingPrices[remainingDepth] = price;
+            remainingCumulativeQuantities[remainingDepth] = runningQuantity;
+            remainingNotionalHigh[remainingDepth] = runningHigh;
+            remainingNotionalLow[remainingDepth] = runningLow;
+            remainingDepth++;
+        }
+
+        //deeper levels are unchanged apart from everything taken above them
+        if (levels < depth) {
+            long takenQuantity = levels > 0 ? cumulativeQuantities[levels - 1] - runningQuantity : 0;
+            long takenLow = levels > 0 ? cumulativeNotionalLow[levels - 1] - runningLow : 0;
+            long takenHigh = levels > 0 ? cumulativeNotionalHigh[levels - 1] - runningHigh : 0;
+            if (levels > 0 && Long.compareUnsigned(cumulativeNotionalLow[levels - 1], runningLow) < 0) {
+                takenHigh--;
+            }
+
+            int tail = depth - levels;
+            System.arraycopy(prices, levels, remainingPrices, remainingDepth, tail);
+            System.arraycopy(quantities, levels * EXCHANGES, remainingQuantities, remainingDepth * EXCHANGES, tail * EXCHANGES);
+            for (int level = levels; level < depth; level++) {
+                long low = cumulativeNotionalLow[level];
+                long high = cumulativeNotionalHigh[level] - takenHigh;
+                if (Long.compareUnsigned(low, takenLow) < 0) {
+                    high--;
+                }
+                remainingCumulativeQuantities[remainingDepth] = cumulativeQuantities[level] - takenQuantity;
+                remainingNotionalHigh[remainingDepth] = high;
+                remainingNotionalLow[remainingDepth] = low - takenLow;
+                remainingDepth++;
+            }
+        }
+
+        return new BookSideSnapshot(
+                side,
+                remainingPrices,
+                remainingQuantities,
+                remainingDepth,
+                remainingCumulativeQuantities,
+                remainingNotionalHigh,
+                remainingNotionalLow);
+    }
+
+    private void checkLevel(int level) {
+        if (level < 0 || level >= depth) {
+            throw new IndexOutOfBoundsException("Level " + level + " out of bounds for depth " + depth);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+//Immutable, versioned view of the consolidated book, safe to read from any thread without locking
+public record BookSnapshot(
+        long version, //increases by one per published snapshot, a conflated batch of updates publishes one
+        InstrumentSpec instrument,
+        BookSideSnapshot bids,
+        BookSideSnapshot asks,
+        Exchange source, //exchange of the last update applied, null before the first
+        long publishedNanos //System.nanoTime it was published, 0 for the empty book
+) {
+
+    public static BookSnapshot empty(InstrumentSpec instrument) {
+        return new BookSnapshot(
+                0,
+                instrument,
+                BookSideSnapshot.empty(BookSide.BID),
+                BookSideSnapshot.empty(BookSide.ASK),
+                null,
+                0);
+    }
+
+    public BookSideSnapshot side(BookSide side) {
+        return side == BookSide.BID ? bids : asks;
+    }
+}
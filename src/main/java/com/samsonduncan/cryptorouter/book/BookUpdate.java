@@ -0,0 +1,144 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.util.Arrays;
+
+/*
+Mutable, reusable form of one exchange's book update, levels held in primitive arrays.
+Connectors fill one as scratch while parsing, then it is copied into a pre-allocated
+ingest ring slot, so handing an update to the book writer allocates nothing once
+the arrays have grown to the feed's usual size.
+Not thread safe, owned by one thread at a time.
+ */
+public final class BookUpdate {
+
+    private Exchange exchange;
+
+    //true if this replaces everything the exchange had, false if levels are deltas
+    private boolean snapshot;
+
+    //levels in the order they were added, best first for snapshots
+    private long[] bidPrices;
+    private long[] bidQuantities;
+    private int bidCount;
+    private long[] askPrices;
+    private long[] askQuantities;
+    private int askCount;
+
+    //System.nanoTime the message arrived on the socket, 0 if it didn't come off one (see PipelineLatency)
+    private long receivedNanos;
+    //exchange's own time for the update in epoch microseconds, 0 if the feed didn't say
+    private long eventMicros;
+
+    public BookUpdate() {
+        this(64);
+    }
+
+    public BookUpdate(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 1);
+        bidPrices = new long[capacity];
+        bidQuantities = new long[capacity];
+        askPrices = new long[capacity];
+        askQuantities = new long[capacity];
+    }
+
+    //starts a new update, dropping any levels from the last one
+    public void reset(Exchange exchange, boolean snapshot) {
+        this.exchange = exchange;
+        this.snapshot = snapshot;
+        bidCount = 0;
+        askCount = 0;
+        receivedNanos = 0;
+        eventMicros = 0;
+    }
+
+    //when the update arrived and when the exchange says it happened, for latency recording
+    public void stamp(long receivedNanos, long eventMicros) {
+        this.receivedNanos = receivedNanos;
+        this.eventMicros = eventMicros;
+    }
+
+    //adds one level, quantity 0 removes it when applied as a delta
+    public void add(BookSide side, long price, long quantity) {
+        if (side == BookSide.BID) {
+            if (bidCount == bidPrices.length) {
+                bidPrices = Arrays.copyOf(bidPrices, bidCount * 2);
+                bidQuantities = Arrays.copyOf(bidQuantities, bidCount * 2);
+            }
+            bidPrices[bidCount] = price;
+            bidQuantities[bidCount] = quantity;
+            bidCount++;
+        } else {
+            if (askCount == askPrices.length) {
+                askPrices = Arrays.copyOf(askPrices, askCount * 2);
+                askQuantities = Arrays.copyOf(askQuantities, askCount * 2);
+            }
+            askPrices[askCount] = price;
+            askQuantities[askCount] = quantity;
+            askCount++;
+        }
+    }
+
+    //replaces the quantity of a level already added, see CoalescedDeltas
+    void setQuantity(BookSide side, int index, long quantity) {
+        if (side == BookSide.BID) {
+            bidQuantities[index] = quantity;
+        } else {
+            askQuantities[index] = quantity;
+        }
+    }
+
+    //makes this a copy of other, reusing this update's arrays where they are big enough
+    public void copyFrom(BookUpdate other) {
+        reset(other.exchange, other.snapshot);
+        if (bidPrices.length < other.bidCount) {
+            bidPrices = new long[other.bidPrices.length];
+            bidQuantities = new long[other.bidPrices.length];
+        }
+        if (askPrices.length < other.askCount) {
+            askPrices = new long[other.askPrices.length];
+            askQuantities = new long[other.askPrices.length];
+        }
+        System.arraycopy(other.bidPrices, 0, bidPrices, 0, other.bidCount);
+        System.arraycopy(other.bidQuantities, 0, bidQuantities, 0, other.bidCount);
+        System.arraycopy(other.askPrices, 0, askPrices, 0, other.askCount);
+        System.arraycopy(other.askQuantities, 0, askQuantities, 0, other.askCount);
+        bidCount = other.bidCount;
+        askCount = other.askCount;
+        stamp(other.receivedNanos, other.eventMicros);
+    }
+
+    public Exchange getExchange() {
+        return exchange;
+    }
+
+    public boolean isSnapshot() {
+        return snapshot;
+    }
+
+    public long getReceivedNanos() {
+        return receivedNanos;
+    }
+
+    public long getEventMicros() {
+        return eventMicros;
+    }
+
+    public boolean isEmpty() {
+        return bidCount == 0 && askCount == 0;
+    }
+
+    public int count(BookSide side) {
+        return side == BookSide.BID ? bidCount : askCount;
+    }
+
+    public long price(BookSide side, int index) {
+        return side == BookSide.BID ? bidPrices[index] : askPrices[index];
+    }
+
+    public long quantity(BookSide side, int index) {
+        return side == BookSide.BID ? bidQuantities[index] : askQuantities[index];
+    }
+}
@@ -0,0 +1,142 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.util.Arrays;
+
+/*
+One exchange's deltas to one book, folded together so each level is applied once.
+A conflating writer adds every delta in a ring batch that no later snapshot replaces,
+a level set more than once keeps only its last quantity (0 still removes it), and the
+folded update is applied in one go. Levels keep the order they first appeared in.
+Folding is keyed on side and price through a small open addressing index, so adding a
+level is O(1) and nothing is allocated once the arrays have grown to the usual batch.
+Not thread safe, owned by one book writer and reused batch after batch.
+ */
+public final class CoalescedDeltas {
+
+    private final BookUpdate update = new BookUpdate();
+    private final LevelIndex bids = new LevelIndex();
+    private final LevelIndex asks = new LevelIndex();
+
+    private final Exchange exchange;
+
+    //deltas folded in since the last clear
+    private int deltas = 0;
+
+    public CoalescedDeltas(Exchange exchange) {
+        this.exchange = exchange;
+        update.reset(exchange, false);
+    }
+
+    //starts afresh for the next batch, once the folded update has been applied
+    public void clear() {
+        update.reset(exchange, false);
+        bids.clear();
+        asks.clear();
+        deltas = 0;
+    }
+
+    //folds in a delta from this exchange, newer than any added since the last clear
+    public void add(BookUpdate delta) {
+        fold(delta, BookSide.BID, bids);
+        fold(delta, BookSide.ASK, asks);
+        deltas++;
+    }
+
+    //number of deltas folded in, 0 if there is nothing to apply
+    public int size() {
+        return deltas;
+    }
+
+    //every level touched and its latest quantity, valid until the next clear
+    public BookUpdate update() {
+        return update;
+    }
+
+    private void fold(BookUpdate delta, BookSide side, LevelIndex index) {
+        for (int i = 0; i < delta.count(side); i++) {
+            long price = delta.price(side, i);
+            long quantity = delta.quantity(side, i);
+            int level = index.get(price);
+            if (level >= 0) {
+                update.setQuantity(side, level, quantity);
+            } else {
+                index.put(price, update.count(side));
+                update.add(side, price, quantity);
+            }
+        }
+    }
+
+    //price to its level's position in the update, cleared by moving to a new generation
+    private static final class LevelIndex {
+
+        private long[] prices = new long[64];
+        private int[] levels = new int[64];
+        //a slot is in use only if it carries the current generation
+        private int[] generations = new int[64];
+        private int generation = 1;
+        private int size = 0;
+
+        void clear() {
+            if (++generation == 0) {
+                //wrapped, old slots could look current again
+                Arrays.fill(generations, 0);
+                generation = 1;
+            }
+            size = 0;
+        }
+
+        //-1 if the price isn't in this batch yet
+        int get(long price) {
+            int mask = prices.length - 1;
+            for (int slot = hash(price) & mask; generations[slot] == generation; slot = (slot + 1) & mask) {
+                if (prices[slot] == price) {
+                    return levels[slot];
+                }
+            }
+            return -1;
+        }
+
+        //price must not be in the index yet
+        void put(long price, int level) {
+            if ((size + 1) * 2 > prices.length) {
+                grow();
+            }
+            insert(price, level);
+            size++;
+        }
+
+        private void insert(long price, int level) {
+            int mask = prices.length - 1;
+            int slot = hash(price) & mask;
+            while (generations[slot] == generation) {
+                slot = (slot + 1) & mask;
+            }
+            prices[slot] = price;
+            levels[slot] = level;
+            generations[slot] = generation;
+        }
+
+        private void grow() {
+            long[] oldPrices = prices;
+            int[] oldLevels = levels;
+            int[] oldGenerations = generations;
+            prices = new long[oldPrices.length * 2];
+            levels = new int[oldPrices.length * 2];
+            generations = new int[oldPrices.length * 2];
+            for (int i = 0; i < oldPrices.length; i++) {
+                if (oldGenerations[i] == generation) {
+                    insert(oldPrices[i], oldLevels[i]);
+                }
+            }
+        }
+
+        //prices on a tick grid are close together, so spread them before masking
+        private static int hash(long price) {
+            long mixed = price * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+/*
+Writer side of the consolidated book for one instrument.
+Each exchange's contribution is kept in its own pair of PriceLadders, so a snapshot
+replace is a clear and reload of that exchange only, and a delta is O(log n).
+The merged sides (see MergedSide) are kept alongside, a delta patches the one merged level
+it changes, and snapshot() copies them out into an immutable BookSnapshot for readers.
+Not thread safe, it must only be touched by the single book writer.
+ */
+public final class ConsolidatedBook {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+
+    private final InstrumentSpec instrument;
+
+    //indexed by exchange ordinal
+    private final PriceLadder[] bids = new PriceLadder[EXCHANGES.length];
+    private final PriceLadder[] asks = new PriceLadder[EXCHANGES.length];
+
+    private final MergedSide mergedBids = new MergedSide(BookSide.BID);
+    private final MergedSide mergedAsks = new MergedSide(BookSide.ASK);
+
+    public ConsolidatedBook(InstrumentSpec instrument) {
+        this.instrument = instrument;
+        for (int i = 0; i < EXCHANGES.length; i++) {
+            bids[i] = new PriceLadder(BookSide.BID);
+            asks[i] = new PriceLadder(BookSide.ASK);
+        }
+    }
+
+    public InstrumentSpec getInstrument() {
+        return instrument;
+    }
+
+    /**
+     * Applies a whole update from one exchange, a snapshot replaces its levels, a delta sets each level it carries
+     * @param update Levels best first for snapshots, quantity 0 removes a level in deltas
+     */
+    public void apply(BookUpdate update) {
+        int exchange = update.getExchange().ordinal();
+        if (update.isSnapshot()) {
+            load(bids[exchange], update, BookSide.BID);
+            load(asks[exchange], update, BookSide.ASK);
+            mergedBids.remerge();
+            mergedAsks.remerge();
+        } else {
+            set(bids[exchange], mergedBids, exchange, update, BookSide.BID);
+            set(asks[exchange], mergedAsks, exchange, update, BookSide.ASK);
+        }
+    }
+
+    //sets one exchange's quantity at a level, 0 removes it
+    public void apply(Exchange exchange, BookSide side, long price, long quantity) {
+        PriceLadder ladder = side == BookSide.BID ? bids[exchange.ordinal()] : asks[exchange.ordinal()];
+        ladder.set(price, quantity);
+        (side == BookSide.BID ? mergedBids : mergedAsks).set(exchange.ordinal(), price, quantity);
+    }
+
+    //removes every level an exchange contributed
+    public void clear(Exchange exchange) {
+        bids[exchange.ordinal()].clear();
+        asks[exchange.ordinal()].clear();
+        mergedBids.remerge();
+        mergedAsks.remerge();
+    }
+
+    //number of levels an exchange has on one side
+    public int depth(Exchange exchange, BookSide side) {
+        return side == BookSide.BID ? bids[exchange.ordinal()].size() : asks[exchange.ordinal()].size();
+    }
+
+    //immutable snapshot of the merged sides, a side nothing changed since the last one is shared with it
+    public BookSnapshot snapshot(long version) {
+        return snapshot(version, null, 0);
+    }
+
+    //same, saying which exchange's update it follows and when it was published
+    public BookSnapshot snapshot(long version, Exchange source, long publishedNanos) {
+        return new BookSnapshot(
+                version,
+                instrument,
+                mergedBids.snapshot(bids),
+                mergedAsks.snapshot(asks),
+                source,
+                publishedNanos);
+    }
+
+    //levels arrive best first, loaded worst first so every insert is an append
+    private static void load(PriceLadder ladder, BookUpdate update, BookSide side) {
+        ladder.clear();
+        for (int i = update.count(side) - 1; i >= 0; i--) {
+            ladder.set(update.price(side, i), update.quantity(side, i));
+        }
+    }
+
+    private static void set(PriceLadder ladder, MergedSide merged, int exchange, BookUpdate update, BookSide side) {
+        for (int i = 0; i < update.count(side); i++) {
+            long price = update.price(side, i);
+            long quantity = update.quantity(side, i);
+            ladder.set(price, quantity);
+            merged.set(exchange, price, quantity);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.util.Arrays;
+
+/*
+Writer side of one side of the consolidated book: every exchange merged, best level first,
+with the running totals BookSideSnapshot searches on. Kept between snapshots rather than
+merged again for each one.
+
+A delta patches its one level, a binary search plus an arraycopy when a level comes or goes,
+and marks the running totals stale from that level down. snapshot() brings the stale totals
+up to date, only from the shallowest level changed since the last snapshot however many
+deltas landed in between, then copies the arrays out for readers. A side nothing touched
+hands back the snapshot it already built.
+
+A snapshot replace from one exchange touches most levels, so it's cheaper to merge the
+exchanges' ladders again, once, when the next snapshot is taken.
+Not thread safe, only the book writer touches it.
+ */
+final class MergedSide {
+
+    private static final int EXCHANGES = Exchange.values().length;
+
+    private final BookSide side;
+
+    private long[] prices;
+    private long[] quantities; //level * EXCHANGES + exchange ordinal
+    private long[] levelQuantities; //across all exchanges
+    private int depth = 0;
+
+    //totals across all exchanges from level 0 to each level inclusive, valid before staleFrom
+    private long[] cumulativeQuantities;
+    private long[] cumulativeNotionalHigh;
+    private long[] cumulativeNotionalLow;
+    private int staleFrom = 0;
+
+    //set by a snapshot replace, the ladders are merged again on the next snapshot
+    private boolean remerge = false;
+
+    //the last snapshot handed out, null once anything has changed since
+    private BookSideSnapshot published;
+
+    MergedSide(BookSide side) {
+        this.side = side;
+        allocate(64);
+    }
+
+    /**
+     * Sets one exchange's quantity at a price, O(log n) plus a shift when a level is added or goes
+     * @param exchange exchange ordinal
+     * @param quantity scaled quantity, 0 takes the exchange off the level and the level goes once nobody is on it
+     */
+    void set(int exchange, long price, long quantity) {
+        if (remerge) {
+            //rebuilt from the ladders anyway
+            return;
+        }
+        int level = find(price);
+        if (level >= 0) {
+            int slot = level * EXCHANGES + exchange;
+            long total = levelQuantities[level] - quantities[slot] + quantity;
+            if (total == 0) {
+                remove(level);
+            } else {
+                quantities[slot] = quantity;
+                levelQuantities[level] = total;
+            }
+            changed(level);
+        } else if (quantity != 0) {
+            level = -level - 1;
+            insert(level, price);
+            quantities[level * EXCHANGES + exchange] = quantity;
+            levelQuantities[level] = quantity;
+            changed(level);
+        }
+    }
+
+    //the exchanges' ladders have been reloaded, merge them again on the next snapshot
+    void remerge() {
+        remerge = true;
+        published = null;
+    }
+
+    //immutable copy for readers, ladders indexed by exchange ordinal are only read after a remerge
+    BookSideSnapshot snapshot(PriceLadder[] ladders) {
+        if (published != null) {
+            return published;
+        }
+        if (remerge) {
+            merge(ladders);
+            remerge = false;
+            staleFrom = 0;
+        }
+        accumulate();
+        published = new BookSideSnapshot(
+                side,
+                Arrays.copyOf(prices, depth),
+                Arrays.copyOf(quantities, depth * EXCHANGES),
+                depth,
+                Arrays.copyOf(cumulativeQuantities, depth),
+                Arrays.copyOf(cumulativeNotionalHigh, depth),
+                Arrays.copyOf(cumulativeNotionalLow, depth));
+        return published;
+    }
+
+    private void changed(int level) {
+        staleFrom = Math.min(staleFrom, level);
+        published = null;
+    }
+
+    //running totals from the first stale level to the end, notional held as 128 bits (high/low)
+    private void accumulate() {
+        int from = Math.min(staleFrom, depth);
+        long runningQuantity = from > 0 ? cumulativeQuantities[from - 1] : 0;
+        long runningHigh = from > 0 ? cumulativeNotionalHigh[from - 1] : 0;
+        long runningLow = from > 0 ? cumulativeNotionalLow[from - 1] : 0;
+
+        for (int level = from; level < depth; level++) {
+            long price = prices[level];
+            long levelQuantity = levelQuantities[level];
+
+            //add this level's notional, carrying into the high word
+            long notionalLow = levelQuantity * price;
+            long notionalHigh = Math.multiplyHigh(levelQuantity, price);
+            long sumLow = runningLow + notionalLow;
+            if (Long.compareUnsigned(sumLow, runningLow) < 0) {
+                notionalHigh++;
+            }
+            runningLow = sumLow;
+            runningHigh += notionalHigh;
+            runningQuantity += levelQuantity;
+
+            cumulativeQuantities[level] = runningQuantity;
+            cumulativeNotionalHigh[level] = runningHigh;
+            cumulativeNotionalLow[level] = runningLow;
+        }
+        staleFrom = Integer.MAX_VALUE;
+    }
+
+    //level at exactly this price, or -(insertion point) - 1 like Arrays.binarySearch
+    private int find(long price) {
+        int low = 0;
+        int high = depth - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midPrice = prices[mid];
+            if (midPrice == price) {
+                return mid;
+            }
+            //levels run best first, so bids descend and asks ascend
+            boolean before = side == BookSide.BID ? midPrice > price : midPrice < price;
+            if (before) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -low - 1;
+    }
+
+    //opens an empty level, running totals behind it are stale so they aren't shifted
+    private void insert(int level, long price) {
+        if (depth == prices.length) {
+            grow(depth * 2);
+        }
+        int behind = depth - level;
+        System.arraycopy(prices, level, prices, level + 1, behind);
+        System.arraycopy(levelQuantities, level, levelQuantities, level + 1, behind);
+        System.arraycopy(quantities, level * EXCHANGES, quantities, (level + 1) * EXCHANGES, behind * EXCHANGES);
+        prices[level] = price;
+        Arrays.fill(quantities, level * EXCHANGES, (level + 1) * EXCHANGES, 0);
+        depth++;
+    }
+
+    private void remove(int level) {
+        int behind = depth - level - 1;
+        System.arraycopy(prices, level + 1, prices, level, behind);
+        System.arraycopy(levelQuantities, level + 1, levelQuantities, level, behind);
+        System.arraycopy(quantities, (level + 1) * EXCHANGES, quantities, level * EXCHANGES, behind * EXCHANGES);
+        depth--;
+    }
+
+    //k way merge of the exchanges' ladders, levels with the same price are combined
+    private void merge(PriceLadder[] ladders) {
+        int total = 0;
+        for (PriceLadder ladder : ladders) {
+            total += ladder.size();
+        }
+        if (total > prices.length) {
+            allocate(Math.max(total, prices.length * 2));
+        }
+        Arrays.fill(quantities, 0, total * EXCHANGES, 0);
+
+        int[] cursors = new int[ladders.length];
+        depth = 0;
+        while (true) {
+            //find the best price at the head of any ladder
+            boolean found = false;
+            long best = 0;
+            for (int i = 0; i < ladders.length; i++) {
+                if (cursors[i] < ladders[i].size()) {
+                    long price = ladders[i].price(cursors[i]);
+                    if (!found || isBetter(price, best)) {
+                        best = price;
+                        found = true;
+                    }
+                }
+            }
+            if (!found) {
+                break;
+            }
+
+            //take that price from every ladder that has it
+            prices[depth] = best;
+            long levelQuantity = 0;
+            for (int i = 0; i < ladders.length; i++) {
+                if (cursors[i] < ladders[i].size() && ladders[i].price(cursors[i]) == best) {
+                    long quantity = ladders[i].quantity(cursors[i]);
+                    quantities[depth * EXCHANGES + i] = quantity;
+                    levelQuantity += quantity;
+                    cursors[i]++;
+                }
+            }
+            levelQuantities[depth] = levelQuantity;
+            depth++;
+        }
+    }
+
+    private boolean isBetter(long price, long than) {
+        return side == BookSide.BID ? price > than : price < than;
+    }
+
+    private void allocate(int capacity) {
+        prices = new long[capacity];
+        quantities = new long[capacity * EXCHANGES];
+        levelQuantities = new long[capacity];
+        cumulativeQuantities = new long[capacity];
+        cumulativeNotionalHigh = new long[capacity];
+        cumulativeNotionalLow = new long[capacity];
+    }
+
+    //keeps the levels and the running totals that are still valid
+    private void grow(int capacity) {
+        prices = Arrays.copyOf(prices, capacity);
+        quantities = Arrays.copyOf(quantities, capacity * EXCHANGES);
+        levelQuantities = Arrays.copyOf(levelQuantities, capacity);
+        cumulativeQuantities = Arrays.copyOf(cumulativeQuantities, capacity);
+        cumulativeNotionalHigh = Arrays.copyOf(cumulativeNotionalHigh, capacity);
+        cumulativeNotionalLow = Arrays.copyOf(cumulativeNotionalLow, capacity);
+    }
+}
@@ -0,0 +1,180 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+
+import java.util.Arrays;
+
+/*
+One side of a single exchange's local book, held as primitive sorted arrays.
+Insert, update and delete are a binary search plus an arraycopy of the levels
+behind the change. Levels are stored worst to best, so the top of book sits at
+the end of the arrays and the frequent changes near the touch move very little.
+Not thread safe, each connector owns its ladders and only touches them from its socket thread.
+ */
+public final class PriceLadder {
+
+    //receives a level during iteration, avoids boxing prices and quantities
+    @FunctionalInterface
+    public interface LevelConsumer {
+        void accept(long price, long quantity);
+    }
+
+    private final BookSide side;
+
+    //keys are prices for bids and negated prices for asks,
+    //so both sides are kept ascending with the best level last
+    private long[] keys;
+    private long[] quantities;
+    private int size;
+
+    public PriceLadder(BookSide side) {
+        this(side, 64);
+    }
+
+    public PriceLadder(BookSide side, int initialCapacity) {
+        this.side = side;
+        this.keys = new long[Math.max(initialCapacity, 1)];
+        this.quantities = new long[keys.length];
+    }
+
+    public BookSide getSide() {
+        return side;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Sets the quantity at a price level, inserting or removing it as needed
+     * @param price scaled price
+     * @param quantity scaled quantity, 0 removes the level
+     * @return the quantity previously at the level, 0 if there was none
+     */
+    public long set(long price, long quantity) {
+        if (quantity == 0) {
+            return remove(price);
+        }
+        long key = toKey(price);
+
+        //fast path, new best level (also how snapshots loaded worst first are appended)
+        if (size == 0 || key > keys[size - 1]) {
+            ensureCapacity();
+            keys[size] = key;
+            quantities[size] = quantity;
+            size++;
+            return 0;
+        }
+
+        int index = Arrays.binarySearch(keys, 0, size, key);
+        if (index >= 0) {
+            //existing level, update in place
+            long previous = quantities[index];
+            quantities[index] = quantity;
+            return previous;
+        }
+
+        //new level, shift the better levels up by one
+        int insertAt = -index - 1;
+        ensureCapacity();
+        System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+        System.arraycopy(quantities, insertAt, quantities, insertAt + 1, size - insertAt);
+        keys[insertAt] = key;
+        quantities[insertAt] = quantity;
+        size++;
+        return 0;
+    }
+
+    /**
+     * Removes a price level
+     * @param price scaled price
+     * @return the quantity that was at the level, 0 if there was none
+     */
+    public long remove(long price) {
+        int index = Arrays.binarySearch(keys, 0, size, toKey(price));
+        if (index < 0) {
+            return 0;
+        }
+        long previous = quantities[index];
+        System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(quantities, index + 1, quantities, index, size - index - 1);
+        size--;
+        return previous;
+    }
+
+    //quantity at a price, 0 if the level is absent
+    public long quantityAt(long price) {
+        int index = Arrays.binarySearch(keys, 0, size, toKey(price));
+        return index >= 0 ? quantities[index] : 0;
+    }
+
+    //price of the nth best level, 0 is the top of book
+    public long price(int level) {
+        return fromKey(keys[indexOf(level)]);
+    }
+
+    //quantity of the nth best level, 0 is the top of book
+    public long quantity(int level) {
+        return quantities[indexOf(level)];
+    }
+
+    //iterates levels from best to worst
+    public void forEach(LevelConsumer consumer) {
+        for (int i = size - 1; i >= 0; i--) {
+            consumer.accept(fromKey(keys[i]), quantities[i]);
+        }
+    }
+
+    /**
+     * Drops every level worse than the given depth
+     * Needed for feeds like Kraken that stop sending a level once it falls out of the subscribed depth
+     * @param depth number of best levels to keep
+     * @param removed receives each dropped level, may be null
+     * @return number of levels dropped
+     */
+    public int truncate(int depth, LevelConsumer removed) {
+        int excess = size - depth;
+        if (excess <= 0) {
+            return 0;
+        }
+        if (removed != null) {
+            for (int i = 0; i < excess; i++) {
+                removed.accept(fromKey(keys[i]), quantities[i]);
+            }
+        }
+        System.arraycopy(keys, excess, keys, 0, depth);
+        System.arraycopy(quantities, excess, quantities, 0, depth);
+        size = depth;
+        return excess;
+    }
+
+    private int indexOf(int level) {
+        if (level < 0 || level >= size) {
+            throw new IndexOutOfBoundsException("Level " + level + " out of bounds for ladder of size " + size);
+        }
+        return size - 1 - level;
+    }
+
+    private long toKey(long price) {
+        return side == BookSide.BID ? price : -price;
+    }
+
+    private long fromKey(long key) {
+        return side == BookSide.BID ? key : -key;
+    }
+
+    private void ensureCapacity() {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            quantities = Arrays.copyOf(quantities, size * 2);
+        }
+    }
+}
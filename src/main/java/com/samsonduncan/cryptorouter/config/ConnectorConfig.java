@@ -0,0 +1,94 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.connectors.CoinbaseAdapter;
+import com.samsonduncan.cryptorouter.connectors.ConnectorRegistry;
+import com.samsonduncan.cryptorouter.connectors.ExchangeAdapter;
+import com.samsonduncan.cryptorouter.connectors.FeedConnection;
+import com.samsonduncan.cryptorouter.connectors.FeedTransport;
+import com.samsonduncan.cryptorouter.connectors.KrakenAdapter;
+import com.samsonduncan.cryptorouter.connectors.VenueFailover;
+import com.samsonduncan.cryptorouter.connectors.VenueSettings;
+import com.samsonduncan.cryptorouter.services.CoinbaseAuthService;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+/*
+Exchange connections from connectors.venues.<name>.* (see VenueSettings and application.properties).
+Each entry names the adapter that speaks its feed, all of them share one FeedTransport.
+Pairs come from the InstrumentRegistry, a venue subscribes to every instrument listed on its exchange.
+A venue with standby=true gets a second connection, registered as <name>-standby.
+ */
+@Configuration
+@EnableConfigurationProperties(ConnectorProperties.class)
+public class ConnectorConfig {
+
+    //startup only, the connections themselves log through LogSite
+    private static final Logger log = LoggerFactory.getLogger(ConnectorConfig.class);
+
+    @Bean
+    public FeedTransport feedTransport(ExecutionModel executionModel, ConnectorProperties properties) {
+        return new FeedTransport(executionModel.connectors(), executionModel.connectorTimers(),
+                properties.connectTimeout(), properties.heartbeat(), properties.staleAfter(), properties.reconnect());
+    }
+
+    @Bean
+    public ConnectorRegistry connectorRegistry(
+            ConnectorProperties properties,
+            FeedTransport transport,
+            CoinbaseAuthService authService,
+            InstrumentRegistry instrumentRegistry,
+            OrderBookService orderBookService) {
+        ConnectorRegistry registry = new ConnectorRegistry();
+        for (Map.Entry<String, VenueSettings> entry : properties.venues().entrySet()) {
+            VenueSettings venue = entry.getValue();
+            if (!venue.enabled()) {
+                log.info("Venue {} is disabled", entry.getKey());
+                continue;
+            }
+            FeedConnection connection = transport.connection(entry.getKey(), venue.uri(),
+                    adapter(entry.getKey(), venue, authService, instrumentRegistry, orderBookService));
+            registry.register(connection);
+            if (venue.standby()) {
+                //same feed again on its own adapter, so it keeps its own local books warm
+                FeedConnection standby = transport.connection(entry.getKey() + "-standby", venue.uri(),
+                        adapter(entry.getKey(), venue, authService, instrumentRegistry, orderBookService));
+                registry.register(standby)
+                        .register(new VenueFailover(connection, standby));
+            }
+        }
+        return registry;
+    }
+
+    private ExchangeAdapter adapter(
+            String name,
+            VenueSettings venue,
+            CoinbaseAuthService authService,
+            InstrumentRegistry instrumentRegistry,
+            OrderBookService orderBookService) {
+        return switch (venue.adapter()) {
+            case "kraken" -> new KrakenAdapter(
+                    instrumentRegistry, orderBookService, venue.depth() > 0 ? venue.depth() : 10);
+            case "coinbase" -> new CoinbaseAdapter(authService, instrumentRegistry, orderBookService);
+            default -> throw new IllegalArgumentException(
+                    "Unknown exchange adapter for venue " + name + ": " + venue.adapter());
+        };
+    }
+
+    //Connects every venue when app is ready
+    @Bean
+    public ApplicationRunner applicationRunner(ConnectorRegistry connectorRegistry) {
+        return args -> {
+            log.info("Starting connectors...");
+            connectorRegistry.connectAll();
+            log.info("Connectors started");
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.connectors.Backoff;
+import com.samsonduncan.cryptorouter.connectors.VenueSettings;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * connectors.* settings
+ * @param venues venue name to its settings, in the order they're configured
+ * @param connectTimeout how long a socket may take to open
+ * @param heartbeat ping interval
+ * @param staleAfter a connection that hears nothing, not even a pong, for this long is dropped
+ *                   and its venue's levels leave the consolidated book until it reconnects
+ * @param reconnect delays between attempts to reopen a dropped connection
+ */
+@ConfigurationProperties("connectors")
+public record ConnectorProperties(
+        @DefaultValue Map<String, VenueSettings> venues,
+        @DefaultValue("10s") Duration connectTimeout,
+        @DefaultValue("15s") Duration heartbeat,
+        @DefaultValue("30s") Duration staleAfter,
+        @DefaultValue Backoff reconnect) {
+}
@@ -0,0 +1,21 @@
+package com.samsonduncan.cryptorouter.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ExecutionConfig {
+
+    //startup only, hot paths log through LogSite
+    private static final Logger log = LoggerFactory.getLogger(ExecutionConfig.class);
+
+    //not exposed as Executor beans, which would replace Boot's applicationTaskExecutor
+    @Bean
+    public ExecutionModel executionModel(@Value("${spring.threads.virtual.enabled:false}") boolean virtual) {
+        log.info("Running I/O on {} threads", virtual ? "virtual" : "platform");
+        return new ExecutionModel(virtual);
+    }
+}
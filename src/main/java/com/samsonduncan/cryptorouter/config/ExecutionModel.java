@@ -0,0 +1,69 @@
+package com.samsonduncan.cryptorouter.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/*
+The threads blocking I/O runs on, set by spring.threads.virtual.enabled.
+Virtual: a new virtual thread per task, so a connection's message delivery or a session's drain
+costs a small heap object while it waits rather than a platform thread.
+Platform: a cached pool of daemon threads, how it ran before.
+
+Spring Boot moves Tomcat's request threads (REST handlers and inbound feed messages) and
+@Scheduled tasks over with the same property. The book writers are not affected, each ingest
+shard keeps its own platform thread (see OrderBookService).
+ */
+public final class ExecutionModel implements AutoCloseable {
+
+    private final boolean virtual;
+    private final ExecutorService connectors;
+    private final ExecutorService feedSenders;
+    private final ScheduledExecutorService connectorTimers;
+
+    public ExecutionModel(boolean virtual) {
+        this.virtual = virtual;
+        this.connectors = executor("connector-", virtual);
+        this.feedSenders = executor("orderbook-feed-sender-", virtual);
+        this.connectorTimers = Executors.newSingleThreadScheduledExecutor(virtual
+                ? Thread.ofVirtual().name("connector-timer").factory()
+                : Thread.ofPlatform().name("connector-timer").daemon().factory());
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    //exchange feed connections, delivers their messages (see FeedTransport)
+    public ExecutorService connectors() {
+        return connectors;
+    }
+
+    //heartbeats for every connection, one thread however many there are
+    //tasks only check and hand off, anything slow goes to connectors()
+    public ScheduledExecutorService connectorTimers() {
+        return connectorTimers;
+    }
+
+    //per-session feed writers, see SessionSender
+    public ExecutorService feedSenders() {
+        return feedSenders;
+    }
+
+    //threads named prefix1, prefix2...
+    public static ExecutorService executor(String prefix, boolean virtual) {
+        if (virtual) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory());
+        }
+        ThreadFactory threads = Thread.ofPlatform().name(prefix, 1).daemon().factory();
+        return Executors.newCachedThreadPool(threads);
+    }
+
+    @Override
+    public void close() {
+        connectorTimers.shutdownNow();
+        connectors.shutdownNow();
+        feedSenders.shutdownNow();
+    }
+}
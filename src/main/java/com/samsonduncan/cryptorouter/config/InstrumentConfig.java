@@ -0,0 +1,30 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Configuration
+public class InstrumentConfig {
+
+    //Instruments the app runs, add a pair here to subscribe and build a book for it
+    @Bean
+    public InstrumentRegistry instrumentRegistry() {
+        return defaultInstruments();
+    }
+
+    //static so benchmarks can build the same registry without a context
+    public static InstrumentRegistry defaultInstruments() {
+        return new InstrumentRegistry()
+                .register(InstrumentSpec.BTC_USD, Map.of(
+                        Exchange.KRAKEN, "XBT/USD",
+                        Exchange.COINBASE, "BTC-USD"))
+                .register(InstrumentSpec.ETH_USD, Map.of(
+                        Exchange.KRAKEN, "ETH/USD",
+                        Exchange.COINBASE, "ETH-USD"));
+    }
+}
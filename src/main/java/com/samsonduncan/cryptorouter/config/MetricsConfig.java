@@ -0,0 +1,149 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.connectors.BookIntegrity;
+import com.samsonduncan.cryptorouter.connectors.ConnectorRegistry;
+import com.samsonduncan.cryptorouter.connectors.FeedConnection;
+import com.samsonduncan.cryptorouter.connectors.VenueFailover;
+import com.samsonduncan.cryptorouter.diagnostics.HotPathLog;
+import com.samsonduncan.cryptorouter.services.CoinbaseAuthService;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import com.samsonduncan.cryptorouter.websocket.OrderBookWebSocketHandler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+
+    //Ingest counters, read from the service when scraped so the writer threads never touch Micrometer
+    @Bean
+    public MeterBinder orderBookIngestMetrics(OrderBookService orderBookService) {
+        return registry -> {
+            FunctionCounter.builder("orderbook.ingest.conflated", orderBookService, OrderBookService::getConflatedUpdates)
+                    .description("Book updates skipped or folded into a later snapshot by conflation")
+                    .register(registry);
+            FunctionCounter.builder("orderbook.ingest.dropped", orderBookService, OrderBookService::getDroppedUpdates)
+                    .description("Book updates dropped because an ingest ring was full")
+                    .register(registry);
+        };
+    }
+
+    //Book integrity per connection and failovers per venue, tagged with the names from connectors.venues
+    @Bean
+    public MeterBinder connectorIntegrityMetrics(ConnectorRegistry connectorRegistry) {
+        return registry -> {
+            for (FeedConnection connection : connectorRegistry.connections()) {
+                BookIntegrity integrity = connection.adapter().integrity();
+                FunctionCounter.builder("connector.book.checksum.failures", integrity, BookIntegrity::getChecksumFailures)
+                        .description("Local books whose checksum disagreed with the exchange's")
+                        .tag("venue", connection.name())
+                        .register(registry);
+                FunctionCounter.builder("connector.book.crossed", integrity, BookIntegrity::getCrossedBooks)
+                        .description("Local books found crossed after an update")
+                        .tag("venue", connection.name())
+                        .register(registry);
+                FunctionCounter.builder("connector.book.resyncs", integrity, BookIntegrity::getResyncs)
+                        .description("Book snapshots asked for again after a failed check")
+                        .tag("venue", connection.name())
+                        .register(registry);
+                FunctionCounter.builder("connector.book.skipped", integrity, BookIntegrity::getSkippedUpdates)
+                        .description("Deltas dropped while their book waited for a snapshot")
+                        .tag("venue", connection.name())
+                        .register(registry);
+            }
+            for (VenueFailover failover : connectorRegistry.failovers()) {
+                FunctionCounter.builder("connector.failovers", failover, VenueFailover::getFailovers)
+                        .description("Times a venue's hot standby connection took over")
+                        .tag("venue", failover.name())
+                        .register(registry);
+            }
+        };
+    }
+
+    //Stage latencies per exchange and instrument over the last PipelineLatency window,
+    //one gauge per percentile, read from numbers kept at the end of the window
+    @Bean
+    public MeterBinder pipelineLatencyMetrics(PipelineLatency latency) {
+        return registry -> {
+            for (PipelineLatency.Series series : latency.series()) {
+                String stage = series.stage().name().toLowerCase(Locale.ROOT);
+                String exchange = series.exchange().name().toLowerCase(Locale.ROOT);
+                for (int i = 0; i < PipelineLatency.PERCENTILES.length; i++) {
+                    int index = i;
+                    TimeGauge.builder("pipeline.latency", series, TimeUnit.NANOSECONDS, s -> s.percentile(index))
+                            .description("Book update latency by pipeline stage over the last window")
+                            .tags("stage", stage, "exchange", exchange, "instrument", series.instrument(),
+                                    "quantile", String.valueOf(PipelineLatency.PERCENTILES[i] / 100))
+                            .register(registry);
+                }
+                Gauge.builder("pipeline.latency.count", series, PipelineLatency.Series::count)
+                        .description("Updates timed at a pipeline stage over the last window")
+                        .tags("stage", stage, "exchange", exchange, "instrument", series.instrument())
+                        .register(registry);
+            }
+        };
+    }
+
+    //JWT signing, most tokens should come from the pool rather than be signed on the connect path
+    @Bean
+    public MeterBinder coinbaseAuthMetrics(CoinbaseAuthService authService) {
+        return registry -> {
+            FunctionCounter.builder("coinbase.jwt.signed", authService, CoinbaseAuthService::getSignedTokens)
+                    .description("Coinbase JWTs signed, pooled or inline")
+                    .register(registry);
+            FunctionCounter.builder("coinbase.jwt.pool.misses", authService, CoinbaseAuthService::getPoolMisses)
+                    .description("JWTs signed inline because their URI's pool was empty")
+                    .register(registry);
+        };
+    }
+
+    //Feed fan-out, same idea, the sender threads only bump LongAdders
+    @Bean
+    public MeterBinder orderBookFeedMetrics(OrderBookWebSocketHandler handler) {
+        return registry -> {
+            Gauge.builder("orderbook.feed.sessions", handler, OrderBookWebSocketHandler::getSessionCount)
+                    .description("Open order book feed sessions")
+                    .register(registry);
+            Gauge.builder("orderbook.feed.queued", handler, OrderBookWebSocketHandler::getQueuedBytes)
+                    .description("Bytes queued for feed sessions")
+                    .register(registry);
+            FunctionTimer.builder("orderbook.feed.send", handler,
+                            OrderBookWebSocketHandler::getSentMessages,
+                            OrderBookWebSocketHandler::getSendNanos,
+                            TimeUnit.NANOSECONDS)
+                    .description("Messages sent to feed sessions and time spent sending")
+                    .register(registry);
+            FunctionCounter.builder("orderbook.feed.dropped", handler, OrderBookWebSocketHandler::getDroppedMessages)
+                    .description("Queued feed messages dropped because a session fell behind")
+                    .register(registry);
+            FunctionCounter.builder("orderbook.feed.overflows", handler, OrderBookWebSocketHandler::getOverflows)
+                    .description("Session backlogs replaced by fresh snapshots")
+                    .register(registry);
+            FunctionCounter.builder("orderbook.feed.evicted", handler, OrderBookWebSocketHandler::getEvictedSessions)
+                    .description("Feed sessions closed for being too slow")
+                    .register(registry);
+        };
+    }
+
+    //Hot path log lines that never made it to the console
+    @Bean
+    public MeterBinder hotPathLogMetrics() {
+        HotPathLog log = HotPathLog.get();
+        return registry -> {
+            FunctionCounter.builder("hotpath.log.dropped", log, HotPathLog::getDropped)
+                    .description("Log lines dropped because the log ring was full")
+                    .register(registry);
+            FunctionCounter.builder("hotpath.log.suppressed", log, HotPathLog::getSuppressed)
+                    .description("Log lines skipped by sampling or rate limits")
+                    .register(registry);
+        };
+    }
+}
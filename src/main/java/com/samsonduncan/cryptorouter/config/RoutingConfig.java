@@ -0,0 +1,70 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.routing.CostAwareOptimiser;
+import com.samsonduncan.cryptorouter.routing.FeeTier;
+import com.samsonduncan.cryptorouter.routing.PriceOnlyOptimiser;
+import com.samsonduncan.cryptorouter.routing.RoutingOptimiser;
+import com.samsonduncan.cryptorouter.routing.VenueBalances;
+import com.samsonduncan.cryptorouter.routing.VenueProfile;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Configuration
+public class RoutingConfig {
+
+    //Unlimited until balances are set
+    @Bean
+    public VenueBalances venueBalances() {
+        return new VenueBalances();
+    }
+
+    //routing.optimiser picks the split, "price-only" (default) or "cost-aware"
+    //price-only is what /route has always returned, cost-aware changes the split and adds fees, so it's opt in
+    @Bean
+    public RoutingOptimiser routingOptimiser(
+            @Value("${routing.optimiser:price-only}") String optimiser,
+            @Value("${routing.slippage-per-millisecond:0.000001}") BigDecimal slippagePerMillisecond,
+            VenueBalances venueBalances) {
+        return switch (optimiser) {
+            case "price-only" -> new PriceOnlyOptimiser();
+            case "cost-aware" -> new CostAwareOptimiser(defaultVenues(), venueBalances, slippagePerMillisecond);
+            default -> throw new IllegalArgumentException("Unknown routing optimiser: " + optimiser);
+        };
+    }
+
+    //Published taker schedules at the lowest volume tiers, lots and minimums for the USD spot pairs
+    //static so benchmarks can build the same optimiser without a context
+    public static List<VenueProfile> defaultVenues() {
+        return List.of(
+                new VenueProfile(
+                        Exchange.KRAKEN,
+                        List.of(
+                                new FeeTier(BigDecimal.ZERO, new BigDecimal("0.0040")),
+                                new FeeTier(new BigDecimal("50000"), new BigDecimal("0.0035")),
+                                new FeeTier(new BigDecimal("100000"), new BigDecimal("0.0024")),
+                                new FeeTier(new BigDecimal("250000"), new BigDecimal("0.0022")),
+                                new FeeTier(new BigDecimal("500000"), new BigDecimal("0.0020")),
+                                new FeeTier(new BigDecimal("1000000"), new BigDecimal("0.0018"))),
+                        BigDecimal.ZERO,
+                        new BigDecimal("0.00000001"),
+                        new BigDecimal("0.5"),
+                        15_000),
+                new VenueProfile(
+                        Exchange.COINBASE,
+                        List.of(
+                                new FeeTier(BigDecimal.ZERO, new BigDecimal("0.0060")),
+                                new FeeTier(new BigDecimal("10000"), new BigDecimal("0.0040")),
+                                new FeeTier(new BigDecimal("50000"), new BigDecimal("0.0025")),
+                                new FeeTier(new BigDecimal("100000"), new BigDecimal("0.0020")),
+                                new FeeTier(new BigDecimal("1000000"), new BigDecimal("0.0018"))),
+                        BigDecimal.ZERO,
+                        new BigDecimal("0.00000001"),
+                        BigDecimal.ONE,
+                        5_000));
+    }
+}
@@ -0,0 +1,18 @@
+package com.samsonduncan.cryptorouter.config;
+
+import com.samsonduncan.cryptorouter.wire.ExecutionPlanMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    //added after the defaults, so only an explicit Accept of the binary type picks it over JSON
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ExecutionPlanMessageConverter());
+    }
+}
@@ -0,0 +1,24 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reconnect delays, doubling from initial up to max
+ * @param initial delay before the first retry
+ * @param max longest wait between retries, a connection that stayed up this long starts again from initial
+ */
+public record Backoff(
+        @DefaultValue("500ms") Duration initial,
+        @DefaultValue("30s") Duration max) {
+
+    //half the doubled delay plus a random share of the other half,
+    //so venues dropped by the same outage don't all retry in step
+    public long delayMillis(int attempt) {
+        long delay = Math.min(max.toMillis(), initial.toMillis() << Math.min(attempt, 20));
+        long half = delay / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+}
@@ -0,0 +1,29 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+/*
+Receives book events from the streaming feed parsers as the tokens are read,
+so levels go straight into the connector's update with no intermediate objects.
+Calls for one message are always onBookStart, any number of onLevel, then onBookEnd.
+ */
+public interface BookEventListener {
+
+    //start of the book part of a message for one instrument, snapshot is true if it replaces the whole book
+    void onBookStart(InstrumentSpec instrument, boolean snapshot);
+
+    //one level change, scaled price and quantity, quantity 0 removes the level
+    void onLevel(BookSide side, long price, long quantity);
+
+    //checksum the exchange sent for its book as of this message, comes before onBookEnd, only from feeds that send one
+    default void onChecksum(long checksum) {
+    }
+
+    //the exchange's time for the message in epoch microseconds, comes before onBookEnd, only from feeds that send one
+    default void onEventTime(long epochMicros) {
+    }
+
+    //end of the message, every level has been delivered
+    void onBookEnd();
+}
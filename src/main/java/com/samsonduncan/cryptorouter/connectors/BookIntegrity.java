@@ -0,0 +1,54 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+One adapter's book integrity counters, bumped from its connection's delivery thread
+and read by MetricsConfig when scraped.
+A failed check means the local book no longer matches the exchange's, eg a message was lost,
+so the adapter pulls that instrument out of the consolidated book and asks for a fresh snapshot
+rather than let the router chase liquidity that isn't there.
+ */
+public final class BookIntegrity {
+
+    private final AtomicLong checksumFailures = new AtomicLong();
+    private final AtomicLong crossedBooks = new AtomicLong();
+    private final AtomicLong resyncs = new AtomicLong();
+    private final AtomicLong skippedUpdates = new AtomicLong();
+
+    void checksumFailed() {
+        checksumFailures.incrementAndGet();
+    }
+
+    void crossed() {
+        crossedBooks.incrementAndGet();
+    }
+
+    void resynced() {
+        resyncs.incrementAndGet();
+    }
+
+    void skipped() {
+        skippedUpdates.incrementAndGet();
+    }
+
+    //local books whose checksum disagreed with the one the exchange sent
+    public long getChecksumFailures() {
+        return checksumFailures.get();
+    }
+
+    //local books left with the best bid at or above the best ask
+    public long getCrossedBooks() {
+        return crossedBooks.get();
+    }
+
+    //snapshots asked for again after a failed check
+    public long getResyncs() {
+        return resyncs.get();
+    }
+
+    //deltas dropped because their book was waiting for a snapshot
+    public long getSkippedUpdates() {
+        return skippedUpdates.get();
+    }
+}
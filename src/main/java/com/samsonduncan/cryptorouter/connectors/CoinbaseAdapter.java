@@ -0,0 +1,281 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.CoinbaseAuthService;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/*
+Adapter for Coinbase Exchange.
+Subscribes to level2_batch and keeps a full local book per product from its snapshot and l2updates
+
+Nothing on the exchange feed's level2_batch channel is numbered, so a lost l2update can't be
+seen as a gap. What it leaves behind can though, and that is the primary check here: a level that should have gone stays and the book ends up
+crossed. That product alone is then resubscribed, its levels pulled from the consolidated book
+and its l2updates skipped until coinbase's new snapshot lands, while other products carry on.
+A lost update that doesn't cross the book goes unseen until the product's next resync.
+A book message that fails to parse is a lost update too, its product is resynced the same way.
+Levels are only applied to the local ladders once the whole message has parsed.
+ */
+public class CoinbaseAdapter implements ExchangeAdapter {
+
+    private static final LogSite UNKNOWN_MESSAGE = LogSite.info("connector.coinbase.unknown", 1);
+    private static final LogSite CROSSED = LogSite.warn("connector.coinbase.crossed", 10);
+    private static final LogSite PARSE_FAILED = LogSite.warn("connector.coinbase.parse.failed", 10);
+    private static final LogSite SUBSCRIBING = LogSite.info("connector.coinbase.subscribing", 10);
+    private static final LogSite SUBSCRIBED = LogSite.info("connector.coinbase.subscribed", 10);
+
+    //jackson objmapper engine, authservice
+    private final ObjectMapper objectMapper;
+    private final CoinbaseAuthService authService;
+
+    //streaming parser for feed messages, and the handler it feeds
+    private final CoinbaseMessageParser parser;
+    private final BookHandler bookHandler = new BookHandler();
+
+    //local copy of the exchange's book per instrument, kept up to date by l2update messages
+    private final Map<String, LocalBook> books = new HashMap<>();
+
+    //holds OrderBookService obj
+    private final OrderBookService orderBook;
+
+    //maps coinbase product ids to instruments
+    private final InstrumentRegistry instrumentRegistry;
+
+    private final BookIntegrity integrity = new BookIntegrity();
+
+    //queues a message on the current socket, set on every connect
+    private Consumer<String> send;
+
+    //false while a hot standby, republish is set when promoted, see setActive
+    private volatile boolean active = true;
+    private volatile boolean republish = false;
+
+    public CoinbaseAdapter(CoinbaseAuthService authService,
+                           InstrumentRegistry instrumentRegistry,
+                           OrderBookService orderBook) {
+        this.orderBook = orderBook;
+        this.instrumentRegistry = instrumentRegistry;
+        for (InstrumentSpec instrument : instrumentRegistry.getInstruments(Exchange.COINBASE)) {
+            books.put(instrument.symbol(), new LocalBook(instrument, 4096));
+        }
+
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(
+                DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                false);
+        this.parser = new CoinbaseMessageParser(
+                objectMapper.getFactory(),
+                productId -> instrumentRegistry.forExchangeSymbol(Exchange.COINBASE, productId));
+        this.authService = authService;
+    }
+
+    @Override
+    public Exchange exchange() {
+        return Exchange.COINBASE;
+    }
+
+    @Override
+    public BookIntegrity integrity() {
+        return integrity;
+    }
+
+    @Override
+    public void onConnect(Consumer<String> send) {
+        this.send = send;
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        if (active && !this.active) {
+            republish = true;
+        }
+        this.active = active;
+    }
+
+    @Override
+    public List<String> subscribeMessages() {
+        List<InstrumentSpec> instruments = instrumentRegistry.getInstruments(Exchange.COINBASE);
+        SUBSCRIBING.log(Exchange.COINBASE, null, LogSite.NO_SEQUENCE,
+                instruments.stream().map(InstrumentSpec::symbol).toList().toString(), null);
+        return List.of(subscription("subscribe", instruments));
+    }
+
+    //subscribe or unsubscribe message for some products' level2_batch
+    private String subscription(String type, List<InstrumentSpec> instruments) {
+        //create subscription msg using jackson for correct formatting
+        ObjectNode subscriptionMessage = objectMapper.createObjectNode();
+
+        subscriptionMessage.put("type", type);
+        subscriptionMessage.putArray("channels").add("level2_batch");
+        ArrayNode productIds = subscriptionMessage.putArray("product_ids");
+        for (InstrumentSpec instrument : instruments) {
+            productIds.add(instrumentRegistry.exchangeSymbol(instrument, Exchange.COINBASE));
+        }
+        if (type.equals("subscribe")) {
+            //call service to get JWT token
+            subscriptionMessage.put("jwt", authService.generateJwt());
+        }
+
+        //now convert obj into a JSON str
+        return subscriptionMessage.toString();
+    }
+
+    @Override
+    public void onMessage(String message) throws Exception {
+        bookHandler.received(System.nanoTime());
+        if (republish) {
+            republish = false;
+            bookHandler.republish();
+        }
+        //single streaming pass, book levels are collected by bookHandler as they are read
+        CoinbaseMessageParser.MessageType type;
+        try {
+            type = parser.parse(message, bookHandler);
+        } catch (Exception e) {
+            bookHandler.failed();
+            throw e;
+        }
+
+        if (type == CoinbaseMessageParser.MessageType.SUBSCRIPTIONS) {
+            //coinbase sends to confirm subscription is successful
+            SUBSCRIBED.log(Exchange.COINBASE, null, LogSite.NO_SEQUENCE, message, null);
+
+        } else if (type == CoinbaseMessageParser.MessageType.UNKNOWN) {
+            UNKNOWN_MESSAGE.log(Exchange.COINBASE, null, LogSite.NO_SEQUENCE, message, null);
+        }
+        //snapshot and l2update are already applied,
+        //heartbeat is sent periodically to check connection is still alive
+    }
+
+    //l2updates after a reconnect only make sense on top of the new snapshot
+    @Override
+    public void onDisconnect() {
+        for (LocalBook book : books.values()) {
+            book.hasSnapshot = false;
+            if (active) {
+                book.evict(Exchange.COINBASE, orderBook);
+            }
+        }
+    }
+
+    //Applies levels from the parser to the local ladders and collects them for OrderBookService
+    private class BookHandler implements BookEventListener {
+
+        //reused for every message, OrderBookService copies it into its ring
+        private final BookUpdate update = new BookUpdate(1024);
+        private LocalBook book;
+        private boolean ignoring;
+        //when the message arrived and the exchange's time for it, stamped on the update for PipelineLatency
+        private long receivedNanos;
+        private long eventMicros;
+
+        @Override
+        public void onBookStart(InstrumentSpec instrument, boolean snapshot) {
+            book = books.get(instrument.symbol());
+            //l2update before the first snapshot has nothing to apply to
+            ignoring = !snapshot && !book.hasSnapshot;
+            if (ignoring) {
+                integrity.skipped();
+                return;
+            }
+
+            //a snapshot reloads the local ladders once all its levels are read, see onBookEnd
+            update.reset(Exchange.COINBASE, snapshot);
+        }
+
+        @Override
+        public void onLevel(BookSide side, long price, long quantity) {
+            if (ignoring) {
+                return;
+            }
+            //applied to the local ladders in onBookEnd, once nothing in the message can fail
+            update.add(side, price, quantity);
+        }
+
+        @Override
+        public void onEventTime(long epochMicros) {
+            eventMicros = epochMicros;
+        }
+
+        private void received(long nanos) {
+            receivedNanos = nanos;
+            eventMicros = 0;
+        }
+
+        @Override
+        public void onBookEnd() {
+            if (ignoring) {
+                return;
+            }
+            book.apply(update);
+            if (update.isSnapshot()) {
+                book.hasSnapshot = true;
+            } else if (!book.bids.isEmpty() && !book.asks.isEmpty() && book.bids.price(0) >= book.asks.price(0)) {
+                integrity.crossed();
+                resync(book, CROSSED);
+                book = null;
+                return;
+            }
+
+            //call OrderBookService, a standby only keeps its local book
+            if (active) {
+                update.stamp(receivedNanos, eventMicros);
+                orderBook.publish(book.instrument, update);
+            }
+            book = null;
+        }
+
+        //the message being parsed failed part way, nothing of it was applied but the update is lost,
+        //so its product can't be trusted until a new snapshot
+        private void failed() {
+            if (book != null && !ignoring) {
+                resync(book, PARSE_FAILED);
+            }
+            book = null;
+        }
+
+        //a promoted standby's books replace whatever the consolidated book has for coinbase
+        private void republish() {
+            for (LocalBook book : books.values()) {
+                if (book.hasSnapshot) {
+                    book.publishSnapshot(Exchange.COINBASE, update, orderBook);
+                }
+            }
+        }
+
+        //pulls the product's coinbase levels out of the consolidated book and subscribes to it again,
+        //coinbase answers with a fresh snapshot
+        private void resync(LocalBook book, LogSite reason) {
+            integrity.resynced();
+            book.hasSnapshot = false;
+            book.bids.clear();
+            book.asks.clear();
+            if (active) {
+                book.evict(Exchange.COINBASE, orderBook);
+            }
+
+            if (send == null) {
+                reason.log(Exchange.COINBASE, book.instrument.symbol(), LogSite.NO_SEQUENCE,
+                        "not connected to resubscribe", null);
+                return;
+            }
+            reason.log(Exchange.COINBASE, book.instrument.symbol(), LogSite.NO_SEQUENCE, "resubscribing", null);
+            send.accept(subscription("unsubscribe", List.of(book.instrument)));
+            send.accept(subscription("subscribe", List.of(book.instrument)));
+        }
+    }
+}
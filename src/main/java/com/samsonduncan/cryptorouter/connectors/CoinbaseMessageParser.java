@@ -0,0 +1,160 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/*
+Single pass streaming parser for Coinbase level2 websocket messages.
+Reads the Jackson tokens once and pushes book levels straight to a BookEventListener,
+replacing readTree followed by a second full parse with readValue.
+
+{"type":"snapshot","product_id":"BTC-USD","bids":[["price","size"], ...],"asks":[...]}
+{"type":"l2update","product_id":"BTC-USD","changes":[["buy","price","size"], ...],"time":"..."}
+The array field names are enough to tell a snapshot from an update,
+so levels are delivered even if "type" isn't the first field.
+"product_id" must come before the levels though, it picks the instrument and its scales.
+"time" is passed on as the message's event time wherever it comes.
+ */
+public class CoinbaseMessageParser {
+
+    public enum MessageType {
+        SNAPSHOT,
+        L2UPDATE,
+        SUBSCRIPTIONS,
+        HEARTBEAT,
+        UNKNOWN
+    }
+
+    private final JsonFactory jsonFactory;
+    //product_id to instrument, null for products not subscribed to
+    private final Function<String, InstrumentSpec> products;
+
+    public CoinbaseMessageParser(JsonFactory jsonFactory, Function<String, InstrumentSpec> products) {
+        this.jsonFactory = jsonFactory;
+        this.products = products;
+    }
+
+    /**
+     * Parses one message, delivering any book levels to the listener as they are read
+     * @param message raw websocket text
+     * @param listener receives book events for snapshot and l2update messages
+     * @return the message type
+     */
+    public MessageType parse(String message, BookEventListener listener) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return MessageType.UNKNOWN;
+            }
+
+            MessageType type = MessageType.UNKNOWN;
+            InstrumentSpec instrument = null;
+            boolean started = false;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+
+                switch (field) {
+                    case "type" -> type = parseType(parser);
+                    case "product_id" -> instrument = products.apply(parser.getText());
+                    case "time" -> {
+                        long eventMicros = StreamingJson.isoEpochMicros(parser);
+                        if (eventMicros != 0) {
+                            listener.onEventTime(eventMicros);
+                        }
+                    }
+                    case "bids" -> {
+                        started = start(listener, instrument, started, true);
+                        parseSnapshotLevels(parser, instrument, BookSide.BID, listener);
+                    }
+                    case "asks" -> {
+                        started = start(listener, instrument, started, true);
+                        parseSnapshotLevels(parser, instrument, BookSide.ASK, listener);
+                    }
+                    case "changes" -> {
+                        started = start(listener, instrument, started, false);
+                        parseChanges(parser, instrument, listener);
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+
+            if (started) {
+                listener.onBookEnd();
+            }
+            return type;
+        }
+    }
+
+    private MessageType parseType(JsonParser parser) throws IOException {
+        if (StreamingJson.textEquals(parser, "l2update")) {
+            return MessageType.L2UPDATE;
+        }
+        if (StreamingJson.textEquals(parser, "snapshot")) {
+            return MessageType.SNAPSHOT;
+        }
+        if (StreamingJson.textEquals(parser, "heartbeat")) {
+            return MessageType.HEARTBEAT;
+        }
+        if (StreamingJson.textEquals(parser, "subscriptions")) {
+            return MessageType.SUBSCRIPTIONS;
+        }
+        return MessageType.UNKNOWN;
+    }
+
+    private boolean start(
+            BookEventListener listener,
+            InstrumentSpec instrument,
+            boolean started,
+            boolean snapshot) throws IOException {
+        if (instrument == null) {
+            //levels can't be scaled without knowing the product
+            throw new IOException("Book levels without a known product_id");
+        }
+        if (!started) {
+            listener.onBookStart(instrument, snapshot);
+        }
+        return true;
+    }
+
+    //[["price", "size"], ...]
+    private void parseSnapshotLevels(
+            JsonParser parser,
+            InstrumentSpec instrument,
+            BookSide side,
+            BookEventListener listener) throws IOException {
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+            long price = StreamingJson.parseDecimal(parser, instrument.priceScale());
+            parser.nextToken();
+            long quantity = StreamingJson.parseDecimal(parser, instrument.quantityScale());
+            StreamingJson.skipToEndOfArray(parser);
+
+            listener.onLevel(side, price, quantity);
+        }
+    }
+
+    //[["buy", "price", "size"], ["sell", "price", "size"], ...]
+    private void parseChanges(
+            JsonParser parser,
+            InstrumentSpec instrument,
+            BookEventListener listener) throws IOException {
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+            BookSide side = StreamingJson.firstChar(parser) == 'b' ? BookSide.BID : BookSide.ASK;
+            parser.nextToken();
+            long price = StreamingJson.parseDecimal(parser, instrument.priceScale());
+            parser.nextToken();
+            long quantity = StreamingJson.parseDecimal(parser, instrument.quantityScale());
+            StreamingJson.skipToEndOfArray(parser);
+
+            listener.onLevel(side, price, quantity);
+        }
+    }
+}
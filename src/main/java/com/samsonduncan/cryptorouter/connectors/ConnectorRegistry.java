@@ -0,0 +1,50 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Every configured venue's connection by name, filled in at startup (see ConnectorConfig)
+and read only after that.
+ */
+public class ConnectorRegistry {
+
+    private final Map<String, FeedConnection> connections = new LinkedHashMap<>();
+    private final List<VenueFailover> failovers = new ArrayList<>();
+
+    public ConnectorRegistry register(FeedConnection connection) {
+        if (connections.putIfAbsent(connection.name(), connection) != null) {
+            throw new IllegalArgumentException("Venue already registered: " + connection.name());
+        }
+        return this;
+    }
+
+    //a venue's active and standby connections, both must be registered too
+    public ConnectorRegistry register(VenueFailover failover) {
+        failovers.add(failover);
+        return this;
+    }
+
+    public void connectAll() {
+        for (FeedConnection connection : connections.values()) {
+            connection.connect();
+        }
+    }
+
+    //null if no venue has that name
+    public FeedConnection get(String name) {
+        return connections.get(name);
+    }
+
+    public Collection<FeedConnection> connections() {
+        return Collections.unmodifiableCollection(connections.values());
+    }
+
+    public List<VenueFailover> failovers() {
+        return Collections.unmodifiableList(failovers);
+    }
+}
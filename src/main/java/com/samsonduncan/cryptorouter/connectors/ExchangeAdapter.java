@@ -0,0 +1,43 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/*
+One exchange's feed protocol: what to send once connected, and turning its messages into
+normalised book updates for OrderBookService. Sockets, framing and heartbeats are shared
+(see FeedTransport), so a new venue is an adapter, an Exchange constant and a
+connectors.venues entry (see ConnectorConfig).
+A connection calls its adapter from one thread at a time, in message order.
+ */
+public interface ExchangeAdapter {
+
+    Exchange exchange();
+
+    //counters for the adapter's book checks, see BookIntegrity
+    BookIntegrity integrity();
+
+    //called on every (re)connect before subscribeMessages, send queues a message on the new socket,
+    //for adapters that need to send more later, eg to resubscribe a book that failed a check
+    default void onConnect(Consumer<String> send) {
+    }
+
+    //sent in order once the socket opens, eg the book subscription
+    List<String> subscribeMessages() throws Exception;
+
+    //false while the connection is a hot standby (see VenueFailover): local books are kept but
+    //nothing is published. May be called from any thread, a promoted adapter republishes its
+    //local books from its own delivery thread before its next message
+    default void setActive(boolean active) {
+    }
+
+    //one complete text message from the exchange
+    void onMessage(String message) throws Exception;
+
+    //the socket closed or failed, anything learnt from it (channel ids, local books) is stale,
+    //an active adapter also takes its levels out of the consolidated book until it has new snapshots
+    default void onDisconnect() {
+    }
+}
@@ -0,0 +1,247 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+/*
+One venue's socket on the shared FeedTransport, handing whole text messages to its adapter.
+Messages are asked for one at a time, so the adapter is never called concurrently and a slow
+adapter pushes back on the socket rather than queueing in memory.
+Sends are chained, the JDK socket only allows one text send in flight.
+Unless closed on purpose, a connection that drops or fails to open is reopened after a
+jittered backoff (see Backoff), on a fresh socket with a fresh subscription.
+Messages the adapter fails on are logged through a rate limited LogSite, numbered by
+their position on the connection, so a bad feed can't flood the console from the socket thread.
+Connects, drops and reconnects go through LogSites too, a flapping venue is as rate limited.
+ */
+public final class FeedConnection implements WebSocket.Listener {
+
+    private static final ByteBuffer PING = ByteBuffer.allocate(0);
+    private static final LogSite MESSAGE_FAILED = LogSite.error("connector.message.failed", 1);
+    private static final LogSite CONNECTED = LogSite.info("connector.connected", 10);
+    private static final LogSite CONNECT_FAILED = LogSite.warn("connector.connect.failed", 1);
+    private static final LogSite SUBSCRIBE_FAILED = LogSite.error("connector.subscribe.failed", 1);
+    private static final LogSite SEND_FAILED = LogSite.warn("connector.send.failed", 1);
+    private static final LogSite DISCONNECTED = LogSite.info("connector.disconnected", 10);
+    private static final LogSite RECONNECTING = LogSite.info("connector.reconnecting", 10, "delayMs", "attempt");
+
+    private final String name;
+    private final URI uri;
+    private final ExchangeAdapter adapter;
+    private final FeedTransport transport;
+
+    //text frames of a message not yet complete, only touched from listener callbacks
+    private final StringBuilder partial = new StringBuilder();
+    //whole messages received on this connection, the seq of a logged failure
+    private long messages = 0;
+
+    //null while disconnected
+    private volatile WebSocket webSocket;
+    private volatile long lastReceived;
+    private volatile boolean closed = false;
+    private CompletableFuture<WebSocket> sends = CompletableFuture.completedFuture(null);
+
+    //set when the venue runs a hot standby, see VenueFailover
+    private volatile VenueFailover failover;
+    //reconnects since the connection was last up for a while, sets the backoff delay
+    private int attempts = 0;
+    private volatile long openedAt;
+
+    FeedConnection(String name, URI uri, ExchangeAdapter adapter, FeedTransport transport) {
+        this.name = name;
+        this.uri = uri;
+        this.adapter = adapter;
+        this.transport = transport;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public ExchangeAdapter adapter() {
+        return adapter;
+    }
+
+    public boolean isOpen() {
+        return webSocket != null;
+    }
+
+    //opens the socket in the background, failures are logged and retried
+    public void connect() {
+        if (closed) {
+            return;
+        }
+        transport.httpClient().newWebSocketBuilder()
+                .connectTimeout(transport.connectTimeout())
+                .buildAsync(uri, this)
+                .whenComplete((ws, e) -> {
+                    if (e != null && !closed) {
+                        CONNECT_FAILED.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, name + " at " + uri, e);
+                        VenueFailover venue = failover;
+                        if (venue != null) {
+                            venue.disconnected(this);
+                        }
+                        reconnectLater();
+                    }
+                });
+    }
+
+    void failover(VenueFailover failover) {
+        this.failover = failover;
+    }
+
+    //queues a text message behind any still being sent
+    public synchronized void send(String message) {
+        WebSocket ws = webSocket;
+        if (ws == null) {
+            throw new IllegalStateException(name + " is not connected");
+        }
+        sends = sends.exceptionally(e -> null)
+                .thenCompose(ignored -> ws.sendText(message, true))
+                .whenComplete((sent, e) -> {
+                    if (e != null) {
+                        SEND_FAILED.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, name, e);
+                    }
+                });
+    }
+
+    public void close() {
+        closed = true;
+        transport.remove(this);
+        WebSocket ws = webSocket;
+        if (ws != null) {
+            ws.sendClose(WebSocket.NORMAL_CLOSURE, "").exceptionally(e -> null);
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket) {
+        this.webSocket = webSocket;
+        lastReceived = System.nanoTime();
+        openedAt = lastReceived;
+        CONNECTED.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, name, null);
+        try {
+            adapter.onConnect(this::send);
+            for (String message : adapter.subscribeMessages()) {
+                send(message);
+            }
+        } catch (Exception e) {
+            SUBSCRIBE_FAILED.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, name, e);
+        }
+        VenueFailover venue = failover;
+        if (venue != null) {
+            venue.connected(this);
+        }
+        webSocket.request(1);
+    }
+
+    @Override
+    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+        lastReceived = System.nanoTime();
+        if (!last) {
+            partial.append(data);
+            webSocket.request(1);
+            return null;
+        }
+
+        //most messages come in one frame, so no copy through the builder
+        String message;
+        if (partial.isEmpty()) {
+            message = data.toString();
+        } else {
+            message = partial.append(data).toString();
+            partial.setLength(0);
+        }
+        messages++;
+        try {
+            adapter.onMessage(message);
+        } catch (Exception e) {
+            MESSAGE_FAILED.log(adapter.exchange(), null, messages, message, e);
+        }
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onBinary(WebSocket webSocket, ByteBuffer data, boolean last) {
+        //no venue sends book data as binary
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onPong(WebSocket webSocket, ByteBuffer message) {
+        lastReceived = System.nanoTime();
+        webSocket.request(1);
+        return null;
+    }
+
+    @Override
+    public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+        disconnected(webSocket, "closed: " + statusCode + " " + reason);
+        return null;
+    }
+
+    @Override
+    public void onError(WebSocket webSocket, Throwable error) {
+        disconnected(webSocket, "failed: " + error);
+    }
+
+    //called by the transport's timer, pings or gives up on a silent socket
+    void heartbeat(long now, long timeoutNanos) {
+        WebSocket ws = webSocket;
+        if (ws == null || closed) {
+            return;
+        }
+        if (now - lastReceived > timeoutNanos) {
+            ws.abort();
+            disconnected(ws, "timed out, nothing received for " + (now - lastReceived) / 1_000_000 + "ms");
+            return;
+        }
+        ws.sendPing(PING.duplicate()).exceptionally(e -> null);
+    }
+
+    //once per socket, whichever of close, error or timeout comes first
+    private void disconnected(WebSocket ws, String why) {
+        synchronized (this) {
+            if (webSocket != ws) {
+                return;
+            }
+            webSocket = null;
+            sends = CompletableFuture.completedFuture(null);
+        }
+        partial.setLength(0);
+        //closing on purpose fails whatever is in flight, nothing worth logging
+        if (!closed) {
+            DISCONNECTED.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, name + " " + why, null);
+        }
+        //a standby takes over first, so the adapter knows whether its levels still need evicting
+        VenueFailover venue = failover;
+        if (venue != null) {
+            venue.disconnected(this);
+        }
+        adapter.onDisconnect();
+
+        //a connection that stayed up a while starts its backoff again
+        if (System.nanoTime() - openedAt >= transport.reconnect().max().toNanos()) {
+            synchronized (this) {
+                attempts = 0;
+            }
+        }
+        reconnectLater();
+    }
+
+    private synchronized void reconnectLater() {
+        if (closed) {
+            return;
+        }
+        long delay = transport.reconnect().delayMillis(attempts);
+        RECONNECTING.log(adapter.exchange(), null, LogSite.NO_SEQUENCE, delay, ++attempts, name, null);
+        transport.timers().schedule(this::connect, delay, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,89 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/*
+The sockets every exchange connection shares: one JDK HttpClient, so one selector thread
+for all of them, with messages delivered on the given executor (virtual threads by default,
+see ExecutionModel). Nothing here is per venue, that's the ExchangeAdapter's job.
+
+One timer task pings every open connection each heartbeat interval,
+a connection that hears nothing, not even a pong, for staleAfter is aborted.
+Dropped connections are reopened on the same timer after a backoff delay.
+ */
+public final class FeedTransport implements AutoCloseable {
+
+    private final HttpClient httpClient;
+    private final Duration connectTimeout;
+    private final long staleAfterNanos;
+    private final Backoff reconnect;
+    private final ScheduledExecutorService timers;
+    private final Set<FeedConnection> connections = ConcurrentHashMap.newKeySet();
+    private final ScheduledFuture<?> heartbeat;
+
+    public FeedTransport(ExecutorService executor, ScheduledExecutorService timers,
+                         Duration connectTimeout, Duration heartbeat, Duration staleAfter, Backoff reconnect) {
+        this.httpClient = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.connectTimeout = connectTimeout;
+        this.staleAfterNanos = staleAfter.toNanos();
+        this.reconnect = reconnect;
+        this.timers = timers;
+        long heartbeatNanos = heartbeat.toNanos();
+        this.heartbeat = timers.scheduleAtFixedRate(
+                this::heartbeat, heartbeatNanos, heartbeatNanos, TimeUnit.NANOSECONDS);
+    }
+
+    //a connection for one venue, not connected until connect() is called
+    public FeedConnection connection(String name, URI uri, ExchangeAdapter adapter) {
+        FeedConnection connection = new FeedConnection(name, uri, adapter, this);
+        connections.add(connection);
+        return connection;
+    }
+
+    HttpClient httpClient() {
+        return httpClient;
+    }
+
+    Duration connectTimeout() {
+        return connectTimeout;
+    }
+
+    Backoff reconnect() {
+        return reconnect;
+    }
+
+    ScheduledExecutorService timers() {
+        return timers;
+    }
+
+    void remove(FeedConnection connection) {
+        connections.remove(connection);
+    }
+
+    private void heartbeat() {
+        long now = System.nanoTime();
+        for (FeedConnection connection : connections) {
+            connection.heartbeat(now, staleAfterNanos);
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeat.cancel(false);
+        for (FeedConnection connection : connections) {
+            connection.close();
+        }
+        httpClient.shutdownNow();
+    }
+}
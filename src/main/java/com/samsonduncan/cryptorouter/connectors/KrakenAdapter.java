@@ -0,0 +1,333 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.book.PriceLadder;
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.model.kraken.KrakenSubscriptionStatus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+
+/*
+Adapter for Kraken Exchange.
+Contains all logic for subscribing to, and reading Kraken's book feed
+
+Kraken's v1 book messages carry no sequence numbers, a lost update only shows up as a
+checksum mismatch. Every update's checksum is checked against the local ladders, and on a
+mismatch that pair alone is resubscribed: its levels are pulled from the consolidated book,
+its deltas skipped until kraken's new snapshot lands, while other pairs carry on.
+A book message that fails to parse is a lost update too, its pair is resynced the same way.
+Levels are only applied to the local ladders once the whole message has parsed.
+ */
+public class KrakenAdapter implements ExchangeAdapter {
+
+    private static final LogSite OTHER_MESSAGE = LogSite.info("connector.kraken.other", 1);
+    private static final LogSite CHECKSUM_FAILED = LogSite.warn("connector.kraken.checksum.failed", 10);
+    private static final LogSite PARSE_FAILED = LogSite.warn("connector.kraken.parse.failed", 10);
+    private static final LogSite SUBSCRIBING = LogSite.info("connector.kraken.subscribing", 10);
+    private static final LogSite SUBSCRIPTION_STATUS = LogSite.info("connector.kraken.subscription", 20);
+    private static final LogSite UNKNOWN_PAIR = LogSite.warn("connector.kraken.pair.unknown", 1);
+
+    //main engine from Jackson
+    private final ObjectMapper objectMapper;
+
+    //streaming parser for book messages, and the handler it feeds
+    private final KrakenMessageParser parser;
+    private final BookHandler bookHandler = new BookHandler();
+
+    //holds OrderBookService
+    private final OrderBookService orderBook;
+
+    //maps kraken pair names to instruments
+    private final InstrumentRegistry instrumentRegistry;
+
+    //depth subscribed to, kraken only sends levels within it
+    private final int depth;
+
+    //local copy of the exchange's book at the subscribed depth, one per instrument
+    private final Map<String, LocalBook> books = new HashMap<>();
+
+    //channelID from each subscriptionStatus, book messages only carry the id
+    private final Map<Long, InstrumentSpec> channels = new HashMap<>();
+
+    private final BookIntegrity integrity = new BookIntegrity();
+    private final KrakenChecksum checksum = new KrakenChecksum();
+
+    //queues a message on the current socket, set on every connect
+    private Consumer<String> send;
+
+    //false while a hot standby, republish is set when promoted, see setActive
+    private volatile boolean active = true;
+    private volatile boolean republish = false;
+
+    //depth is one of the book depths kraken offers, 10, 25, 100, 500 or 1000
+    public KrakenAdapter(InstrumentRegistry instrumentRegistry, OrderBookService orderBook, int depth) {
+        this.orderBook = orderBook;
+        this.instrumentRegistry = instrumentRegistry;
+        this.depth = depth;
+        for (InstrumentSpec instrument : instrumentRegistry.getInstruments(Exchange.KRAKEN)) {
+            books.put(instrument.symbol(), new LocalBook(instrument, depth + 1));
+        }
+
+        //configure objectMapper
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(
+                DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES,
+                false);
+        this.parser = new KrakenMessageParser(objectMapper.getFactory(), channels::get);
+    }
+
+    @Override
+    public Exchange exchange() {
+        return Exchange.KRAKEN;
+    }
+
+    @Override
+    public BookIntegrity integrity() {
+        return integrity;
+    }
+
+    @Override
+    public void onConnect(Consumer<String> send) {
+        this.send = send;
+    }
+
+    @Override
+    public void setActive(boolean active) {
+        if (active && !this.active) {
+            republish = true;
+        }
+        this.active = active;
+    }
+
+    @Override
+    public List<String> subscribeMessages() {
+        //every registered pair kraken lists, in one subscription
+        List<String> pairs = instrumentRegistry.getInstruments(Exchange.KRAKEN).stream()
+                .map(instrument -> instrumentRegistry.exchangeSymbol(instrument, Exchange.KRAKEN))
+                .toList();
+
+        SUBSCRIBING.log(Exchange.KRAKEN, null, LogSite.NO_SEQUENCE, pairs.toString(), null);
+        return List.of(subscription("subscribe", pairs));
+    }
+
+    //subscribe or unsubscribe message for some pairs' books at our depth
+    private String subscription(String event, List<String> pairs) {
+        //pair names are plain ascii, eg "XBT/USD"
+        String pairList = pairs.stream()
+                .map(pair -> "\"" + pair + "\"")
+                .collect(Collectors.joining(",", "[", "]"));
+        return """
+            {
+             "event": "%s",
+             "pair": %s,
+             "subscription": { "name": "book", "depth": %d }
+            }
+            """.formatted(event, pairList, depth);
+    }
+
+    //parse JSON in a single streaming pass and update order book
+    @Override
+    public void onMessage(String message) throws Exception {
+        bookHandler.received(System.nanoTime());
+        if (republish) {
+            republish = false;
+            bookHandler.republish();
+        }
+        //book levels are collected by bookHandler while the message is parsed
+        KrakenMessageParser.MessageType type;
+        try {
+            type = parser.parse(message, bookHandler);
+        } catch (Exception e) {
+            bookHandler.failed();
+            throw e;
+        }
+
+        switch (type) {
+            case BOOK, HEARTBEAT -> {
+                //book already handled, heartbeats only confirm the connection is alive
+            }
+            case SUBSCRIPTION_STATUS -> {
+                //rare, so the full object mapping is fine here
+                KrakenSubscriptionStatus status = objectMapper.readValue(
+                        message,
+                        KrakenSubscriptionStatus.class);
+                SUBSCRIPTION_STATUS.log(Exchange.KRAKEN, status.getPair(), LogSite.NO_SEQUENCE, status.toString(), null);
+                registerChannel(status);
+            }
+            default ->
+                //some other message, eg systemStatus, log for now
+                OTHER_MESSAGE.log(Exchange.KRAKEN, null, LogSite.NO_SEQUENCE, message, null);
+        }
+    }
+
+    //remember which instrument a subscribed channel carries
+    private void registerChannel(KrakenSubscriptionStatus status) {
+        if (status.getChannelID() == null) {
+            return;
+        }
+        if ("unsubscribed".equals(status.getStatus())) {
+            //a resync's unsubscribe, the new subscription gets its own id
+            channels.remove(status.getChannelID());
+            return;
+        }
+        if (!"subscribed".equals(status.getStatus())) {
+            return;
+        }
+        InstrumentSpec instrument = instrumentRegistry.forExchangeSymbol(Exchange.KRAKEN, status.getPair());
+        if (instrument == null) {
+            UNKNOWN_PAIR.log(Exchange.KRAKEN, status.getPair(), LogSite.NO_SEQUENCE, "subscribed but not registered", null);
+            return;
+        }
+        channels.put(status.getChannelID(), instrument);
+    }
+
+    //ids are handed out again on every subscription, and books restart from the next snapshot
+    @Override
+    public void onDisconnect() {
+        channels.clear();
+        for (LocalBook book : books.values()) {
+            book.hasSnapshot = false;
+            if (active) {
+                book.evict(Exchange.KRAKEN, orderBook);
+            }
+        }
+    }
+
+    //Applies levels from the parser to the local ladders and collects them for OrderBookService
+    private class BookHandler implements BookEventListener {
+
+        //reused for every message, OrderBookService copies it into its ring
+        private final BookUpdate update = new BookUpdate(depth * 2);
+        private LocalBook book;
+        private boolean ignoring;
+        //checksum sent with the message, -1 if none
+        private long expectedChecksum = -1;
+        //when the message arrived and the exchange's time for it, stamped on the update for PipelineLatency
+        private long receivedNanos;
+        private long eventMicros;
+
+        //kraken doesn't send deletes for levels pushed out of the subscribed depth,
+        //so they are dropped locally and passed on as zero quantity deltas
+        private final PriceLadder.LevelConsumer removeBid = (price, quantity) -> update.add(BookSide.BID, price, 0);
+        private final PriceLadder.LevelConsumer removeAsk = (price, quantity) -> update.add(BookSide.ASK, price, 0);
+
+        @Override
+        public void onBookStart(InstrumentSpec instrument, boolean snapshot) {
+            book = books.get(instrument.symbol());
+            //deltas while waiting for a resync's snapshot have nothing to apply to
+            ignoring = !snapshot && !book.hasSnapshot;
+            if (ignoring) {
+                integrity.skipped();
+                return;
+            }
+
+            //'as'/'bs' is the initial snapshot, 'a'/'b' are changed levels only
+            update.reset(Exchange.KRAKEN, snapshot);
+        }
+
+        @Override
+        public void onLevel(BookSide side, long price, long quantity) {
+            if (ignoring) {
+                return;
+            }
+            //applied to the local ladders in onBookEnd, once nothing in the message can fail
+            update.add(side, price, quantity);
+        }
+
+        @Override
+        public void onChecksum(long checksum) {
+            expectedChecksum = checksum;
+        }
+
+        @Override
+        public void onEventTime(long epochMicros) {
+            eventMicros = epochMicros;
+        }
+
+        private void received(long nanos) {
+            receivedNanos = nanos;
+            eventMicros = 0;
+        }
+
+        @Override
+        public void onBookEnd() {
+            long expected = expectedChecksum;
+            expectedChecksum = -1;
+            if (ignoring) {
+                book = null;
+                return;
+            }
+            book.apply(update);
+            if (update.isSnapshot()) {
+                book.hasSnapshot = true;
+                book.priceDecimals = parser.priceDecimals();
+                book.quantityDecimals = parser.volumeDecimals();
+            }
+            book.bids.truncate(depth, removeBid);
+            book.asks.truncate(depth, removeAsk);
+
+            if (expected >= 0 && checksum.compute(book, book.priceDecimals, book.quantityDecimals) != expected) {
+                integrity.checksumFailed();
+                resync(book, CHECKSUM_FAILED);
+            } else if (active) {
+                //call OrderBookService, a standby only keeps its local book
+                update.stamp(receivedNanos, eventMicros);
+                orderBook.publish(book.instrument, update);
+            }
+            book = null;
+        }
+
+        //the message being parsed failed part way, nothing of it was applied but the update is lost,
+        //so its pair can't be trusted until a new snapshot
+        private void failed() {
+            expectedChecksum = -1;
+            if (book != null && !ignoring) {
+                resync(book, PARSE_FAILED);
+            }
+            book = null;
+        }
+
+        //a promoted standby's books replace whatever the consolidated book has for kraken
+        private void republish() {
+            for (LocalBook book : books.values()) {
+                if (book.hasSnapshot) {
+                    book.publishSnapshot(Exchange.KRAKEN, update, orderBook);
+                }
+            }
+        }
+
+        //pulls the pair's kraken levels out of the consolidated book and subscribes to it again,
+        //kraken answers with a fresh snapshot
+        private void resync(LocalBook book, LogSite reason) {
+            integrity.resynced();
+            book.hasSnapshot = false;
+            book.bids.clear();
+            book.asks.clear();
+            if (active) {
+                book.evict(Exchange.KRAKEN, orderBook);
+            }
+
+            String pair = instrumentRegistry.exchangeSymbol(book.instrument, Exchange.KRAKEN);
+            if (send == null) {
+                reason.log(Exchange.KRAKEN, book.instrument.symbol(), LogSite.NO_SEQUENCE,
+                        "not connected to resubscribe", null);
+                return;
+            }
+            reason.log(Exchange.KRAKEN, book.instrument.symbol(), LogSite.NO_SEQUENCE, "resubscribing", null);
+            send.accept(subscription("unsubscribe", List.of(pair)));
+            send.accept(subscription("subscribe", List.of(pair)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.book.PriceLadder;
+import com.samsonduncan.cryptorouter.model.normalised.FixedPoint;
+
+import java.util.zip.CRC32;
+
+/*
+Kraken's book checksum, rebuilt from a local book.
+CRC32 of the top 10 asks (lowest first) then the top 10 bids (highest first), each level
+written as its price then its volume, as sent on the wire with the '.' and leading zeros
+dropped, eg "67012.10000" and "0.05000000" become "6701210000" and "5000000".
+Our scaled longs already have no leading zeros, so only the wire's decimal places are needed.
+Writes into a reused buffer, nothing is allocated per check.
+Not thread safe, one per adapter.
+ */
+final class KrakenChecksum {
+
+    static final int LEVELS = 10;
+
+    private final CRC32 crc = new CRC32();
+    //20 levels of two numbers, at most 19 digits each
+    private final byte[] buffer = new byte[LEVELS * 2 * 2 * 19];
+    private int length;
+
+    /**
+     * @param book local book, its ladders at the instrument's scales
+     * @param priceDecimals decimal places kraken writes prices with
+     * @param volumeDecimals decimal places kraken writes volumes with
+     * @return the checksum kraken would send for this book, unsigned
+     */
+    long compute(LocalBook book, int priceDecimals, int volumeDecimals) {
+        length = 0;
+        levels(book.asks, priceDecimals - book.instrument.priceScale(), volumeDecimals - book.instrument.quantityScale());
+        levels(book.bids, priceDecimals - book.instrument.priceScale(), volumeDecimals - book.instrument.quantityScale());
+        crc.reset();
+        crc.update(buffer, 0, length);
+        return crc.getValue();
+    }
+
+    //best first, shifts are wire decimals minus our scale
+    private void levels(PriceLadder ladder, int priceShift, int volumeShift) {
+        int count = Math.min(LEVELS, ladder.size());
+        for (int level = 0; level < count; level++) {
+            digits(rescale(ladder.price(level), priceShift));
+            digits(rescale(ladder.quantity(level), volumeShift));
+        }
+    }
+
+    private static long rescale(long value, int shift) {
+        return shift >= 0 ? value * FixedPoint.pow10(shift) : value / FixedPoint.pow10(-shift);
+    }
+
+    private void digits(long value) {
+        int start = length;
+        do {
+            buffer[length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+        //written backwards, flip in place
+        for (int i = start, j = length - 1; i < j; i++, j--) {
+            byte b = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = b;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.io.IOException;
+import java.util.function.LongFunction;
+
+/*
+Single pass streaming parser for Kraken websocket messages.
+Reads the Jackson tokens once and pushes book levels straight to a BookEventListener,
+no JsonNode tree, String lists or KrakenOrderBookEntry objects are built.
+
+Book messages are arrays, with one object per side when both changed:
+[channelID, {"as":[[price, volume, timestamp], ...], "bs":[...]}, "book-10", "XBT/USD"]
+[channelID, {"a":[...]}, {"b":[...], "c":"checksum"}, "book-10", "XBT/USD"]
+The pair comes after the levels, so the instrument is found from the channelID,
+which kraken assigns per subscription in the subscriptionStatus event.
+"c" is kraken's CRC32 of its top 10 levels as written on the wire, so the decimal places of
+the last snapshot's strings are kept for rebuilding them (see KrakenChecksum).
+An update's event time is the latest of its levels' timestamps ("1534614057.321597", seconds),
+a snapshot's timestamps are when each level last changed so they aren't passed on.
+Everything else is an event object, eg {"event":"heartbeat"}
+ */
+public class KrakenMessageParser {
+
+    public enum MessageType {
+        BOOK,
+        SUBSCRIPTION_STATUS,
+        HEARTBEAT,
+        OTHER
+    }
+
+    private final JsonFactory jsonFactory;
+    //channelID to instrument, null for channels not subscribed to
+    private final LongFunction<InstrumentSpec> channels;
+
+    //decimal places kraken writes prices and volumes with, from the last snapshot
+    private int priceDecimals;
+    private int volumeDecimals;
+
+    //latest level timestamp in the message being parsed, epoch microseconds
+    private long eventMicros;
+
+    public KrakenMessageParser(JsonFactory jsonFactory, LongFunction<InstrumentSpec> channels) {
+        this.jsonFactory = jsonFactory;
+        this.channels = channels;
+    }
+
+    /**
+     * Parses one message, delivering any book levels to the listener as they are read
+     * @param message raw websocket text
+     * @param listener receives book events, only called for BOOK messages
+     * @return what kind of message it was
+     */
+    public MessageType parse(String message, BookEventListener listener) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(message)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_OBJECT) {
+                return parseEvent(parser);
+            }
+            if (token == JsonToken.START_ARRAY) {
+                return parseChannelMessage(parser, listener);
+            }
+            return MessageType.OTHER;
+        }
+    }
+
+    //decimal places of the prices in the last snapshot parsed
+    public int priceDecimals() {
+        return priceDecimals;
+    }
+
+    //decimal places of the volumes in the last snapshot parsed
+    public int volumeDecimals() {
+        return volumeDecimals;
+    }
+
+    //event objects, only the "event" field is needed to dispatch
+    private MessageType parseEvent(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if (field.equals("event")) {
+                if (StreamingJson.textEquals(parser, "heartbeat")) {
+                    return MessageType.HEARTBEAT;
+                }
+                if (StreamingJson.textEquals(parser, "subscriptionStatus")) {
+                    return MessageType.SUBSCRIPTION_STATUS;
+                }
+                return MessageType.OTHER;
+            }
+            parser.skipChildren();
+        }
+        return MessageType.OTHER;
+    }
+
+    //channel arrays, each object inside holds one or both sides of the book
+    private MessageType parseChannelMessage(JsonParser parser, BookEventListener listener) throws IOException {
+        if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+            return MessageType.OTHER;
+        }
+        InstrumentSpec instrument = channels.apply(parser.getLongValue());
+        if (instrument == null) {
+            //not a book channel we know about
+            return MessageType.OTHER;
+        }
+
+        boolean started = false;
+        eventMicros = 0;
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of input in Kraken message");
+            }
+            if (token == JsonToken.START_OBJECT) {
+                started = parseBookObject(parser, instrument, listener, started);
+            } else {
+                //channel name and pair
+                parser.skipChildren();
+            }
+        }
+
+        if (!started) {
+            return MessageType.OTHER;
+        }
+        if (eventMicros != 0) {
+            listener.onEventTime(eventMicros);
+        }
+        listener.onBookEnd();
+        return MessageType.BOOK;
+    }
+
+    //reads one payload object, returns whether onBookStart has been sent
+    private boolean parseBookObject(
+            JsonParser parser,
+            InstrumentSpec instrument,
+            BookEventListener listener,
+            boolean started) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+
+            //'as'/'bs' snapshot, 'a'/'b' update
+            BookSide side;
+            switch (field) {
+                case "as", "a" -> side = BookSide.ASK;
+                case "bs", "b" -> side = BookSide.BID;
+                case "c" -> {
+                    //"3478429510", unsigned 32 bit
+                    listener.onChecksum(StreamingJson.parseDecimal(parser, 0));
+                    continue;
+                }
+                default -> {
+                    parser.skipChildren();
+                    continue;
+                }
+            }
+
+            boolean snapshot = field.length() == 2;
+            if (!started) {
+                listener.onBookStart(instrument, snapshot);
+                started = true;
+            }
+            parseLevels(parser, instrument, side, snapshot, listener);
+        }
+        return started;
+    }
+
+    //[[price, volume, timestamp], [price, volume, timestamp, "r"], ...]
+    private void parseLevels(
+            JsonParser parser,
+            InstrumentSpec instrument,
+            BookSide side,
+            boolean snapshot,
+            BookEventListener listener) throws IOException {
+        while (parser.nextToken() == JsonToken.START_ARRAY) {
+            parser.nextToken();
+            if (snapshot) {
+                priceDecimals = StreamingJson.decimals(parser);
+            }
+            long price = StreamingJson.parseDecimal(parser, instrument.priceScale());
+            parser.nextToken();
+            if (snapshot) {
+                volumeDecimals = StreamingJson.decimals(parser);
+            }
+            long quantity = StreamingJson.parseDecimal(parser, instrument.quantityScale());
+            //timestamp and optional update type
+            if (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (!snapshot) {
+                    eventMicros = Math.max(eventMicros, StreamingJson.parseDecimal(parser, 6));
+                }
+                StreamingJson.skipToEndOfArray(parser);
+            }
+
+            listener.onLevel(side, price, quantity);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.book.PriceLadder;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+
+//An adapter's local copy of one exchange's book for one instrument, only touched by the adapter, one message at a time
+final class LocalBook {
+
+    final InstrumentSpec instrument;
+    final PriceLadder bids;
+    final PriceLadder asks;
+
+    //false until the first snapshot, deltas before it have nothing to apply to
+    boolean hasSnapshot = false;
+
+    //decimal places the exchange writes prices and quantities with, for feeds whose checksums need them
+    int priceDecimals;
+    int quantityDecimals;
+
+    LocalBook(InstrumentSpec instrument, int capacity) {
+        this.instrument = instrument;
+        this.bids = new PriceLadder(BookSide.BID, capacity);
+        this.asks = new PriceLadder(BookSide.ASK, capacity);
+    }
+
+    //applies a parsed update to the ladders, a snapshot reloads them, a delta sets each level it carries.
+    //adapters only call this once the whole message has parsed, so one that fails half way
+    //(eg a price with more decimals than the instrument's scale) leaves the ladders as they were
+    void apply(BookUpdate update) {
+        if (update.isSnapshot()) {
+            load(bids, update, BookSide.BID);
+            load(asks, update, BookSide.ASK);
+        } else {
+            set(bids, update, BookSide.BID);
+            set(asks, update, BookSide.ASK);
+        }
+    }
+
+    //snapshot levels arrive best first, loaded worst first so every insert is an append
+    private static void load(PriceLadder ladder, BookUpdate snapshot, BookSide side) {
+        ladder.clear();
+        for (int i = snapshot.count(side) - 1; i >= 0; i--) {
+            ladder.set(snapshot.price(side, i), snapshot.quantity(side, i));
+        }
+    }
+
+    private static void set(PriceLadder ladder, BookUpdate delta, BookSide side) {
+        for (int i = 0; i < delta.count(side); i++) {
+            ladder.set(delta.price(side, i), delta.quantity(side, i));
+        }
+    }
+
+    //the whole local book as one snapshot, eg when a hot standby takes over
+    void publishSnapshot(Exchange exchange, BookUpdate update, OrderBookService orderBook) {
+        update.reset(exchange, true);
+        bids.forEach((price, quantity) -> update.add(BookSide.BID, price, quantity));
+        asks.forEach((price, quantity) -> update.add(BookSide.ASK, price, quantity));
+        orderBook.publish(instrument, update);
+    }
+
+    //an empty snapshot, the exchange's levels for this instrument leave the consolidated book
+    //rare and may run off the delivery thread (eg a stale socket), so it brings its own update
+    void evict(Exchange exchange, OrderBookService orderBook) {
+        BookUpdate empty = new BookUpdate(1);
+        empty.reset(exchange, true);
+        orderBook.publish(instrument, empty);
+    }
+}
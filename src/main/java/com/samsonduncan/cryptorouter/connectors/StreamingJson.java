@@ -0,0 +1,114 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.samsonduncan.cryptorouter.model.normalised.FixedPoint;
+
+import java.io.IOException;
+
+//Small helpers shared by the streaming feed parsers, all read the current token in place
+final class StreamingJson {
+
+    private StreamingJson() {
+    }
+
+    //parses the current string token as a scaled long without creating a String
+    static long parseDecimal(JsonParser parser, int scale) throws IOException {
+        return FixedPoint.parse(
+                parser.getTextCharacters(),
+                parser.getTextOffset(),
+                parser.getTextLength(),
+                scale);
+    }
+
+    //decimal places written in the current string token, eg 5 for "67012.10000"
+    static int decimals(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        for (int i = length - 1; i >= 0; i--) {
+            if (chars[offset + i] == '.') {
+                return length - 1 - i;
+            }
+        }
+        return 0;
+    }
+
+    //parses the current string token as an ISO 8601 UTC time, eg "2019-08-14T20:42:27.265865Z", to epoch microseconds
+    //digits past microseconds are dropped, 0 if it isn't in that form
+    static long isoEpochMicros(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        if (length < 20 || chars[offset + 4] != '-' || chars[offset + 10] != 'T' || chars[offset + length - 1] != 'Z') {
+            return 0;
+        }
+        long days = epochDay(
+                digits(chars, offset, 4),
+                digits(chars, offset + 5, 2),
+                digits(chars, offset + 8, 2));
+        long seconds = days * 86_400
+                + digits(chars, offset + 11, 2) * 3_600L
+                + digits(chars, offset + 14, 2) * 60L
+                + digits(chars, offset + 17, 2);
+        long micros = 0;
+        int fraction = offset + 20;
+        int end = offset + length - 1;
+        if (chars[offset + 19] == '.') {
+            for (int i = 0; i < 6; i++) {
+                micros = micros * 10 + (fraction + i < end ? chars[fraction + i] - '0' : 0);
+            }
+        }
+        return seconds * 1_000_000 + micros;
+    }
+
+    private static int digits(char[] chars, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            value = value * 10 + chars[offset + i] - '0';
+        }
+        return value;
+    }
+
+    //days since 1970-01-01 of a proleptic Gregorian date, same as LocalDate.toEpochDay without the object
+    private static long epochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146_097L + dayOfEra - 719_468;
+    }
+
+    //compares the current string token to a constant without creating a String
+    static boolean textEquals(JsonParser parser, String expected) throws IOException {
+        int length = parser.getTextLength();
+        if (length != expected.length()) {
+            return false;
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //first char of the current string token
+    static char firstChar(JsonParser parser) throws IOException {
+        return parser.getTextLength() == 0 ? 0 : parser.getTextCharacters()[parser.getTextOffset()];
+    }
+
+    //moves past the rest of the array the parser is inside, including nested values
+    static void skipToEndOfArray(JsonParser parser) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == null) {
+                throw new IOException("Unexpected end of input inside array");
+            }
+            parser.skipChildren();
+        }
+    }
+}
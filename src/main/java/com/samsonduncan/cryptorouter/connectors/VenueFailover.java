@@ -0,0 +1,78 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Two connections to the same venue's feed, one active and one hot standby.
+Both stay subscribed and keep their adapter's local books current, only the active
+adapter publishes to OrderBookService. When the active connection drops or goes stale
+and the standby is open, the standby takes over: it republishes its local books as snapshots
+and carries on with its deltas, so the venue never leaves the consolidated book.
+The dropped connection comes back as the new standby, there's no switching back.
+
+The feeds don't number their messages, so the two can't be merged message by message
+and the standby's copies are simply not published.
+ */
+public final class VenueFailover {
+
+    private static final LogSite FAILED_OVER = LogSite.warn("connector.failover", 10);
+
+    private final FeedConnection first;
+    private final FeedConnection second;
+    private final AtomicLong failovers = new AtomicLong();
+
+    //guarded by this
+    private FeedConnection active;
+
+    public VenueFailover(FeedConnection primary, FeedConnection standby) {
+        this.first = primary;
+        this.second = standby;
+        this.active = primary;
+        primary.adapter().setActive(true);
+        standby.adapter().setActive(false);
+        primary.failover(this);
+        standby.failover(this);
+    }
+
+    public String name() {
+        return first.name();
+    }
+
+    //times the standby has taken over
+    public long getFailovers() {
+        return failovers.get();
+    }
+
+    //the active connection went, or never opened, hand over if the other is up
+    synchronized void disconnected(FeedConnection connection) {
+        if (connection == active) {
+            promote(other(connection));
+        }
+    }
+
+    //a connection opened while the active one is down, eg both dropped and this came back first
+    synchronized void connected(FeedConnection connection) {
+        if (connection != active && !active.isOpen()) {
+            promote(connection);
+        }
+    }
+
+    private void promote(FeedConnection next) {
+        if (!next.isOpen()) {
+            //nothing to hand to, the active connection evicts its levels and reconnects
+            return;
+        }
+        active.adapter().setActive(false);
+        next.adapter().setActive(true);
+        FAILED_OVER.log(next.adapter().exchange(), null, LogSite.NO_SEQUENCE,
+                name() + " from " + active.name() + " to " + next.name(), null);
+        active = next;
+        failovers.incrementAndGet();
+    }
+
+    private FeedConnection other(FeedConnection connection) {
+        return connection == first ? second : first;
+    }
+}
@@ -0,0 +1,21 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.net.URI;
+
+/**
+ * One connectors.venues.&lt;name&gt; entry
+ * @param adapter which ExchangeAdapter speaks the feed, eg "kraken"
+ * @param uri feed endpoint, a ReplayServer's ws://localhost address to run offline
+ * @param depth levels subscribed to where the exchange takes a depth, 0 for its default
+ * @param enabled false keeps the entry without connecting
+ * @param standby opens a second connection to the same feed as a hot standby, see VenueFailover
+ */
+public record VenueSettings(
+        String adapter,
+        URI uri,
+        @DefaultValue("0") int depth,
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("false") boolean standby) {
+}
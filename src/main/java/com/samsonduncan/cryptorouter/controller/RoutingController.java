@@ -1,12 +1,27 @@
 package com.samsonduncan.cryptorouter.controller;
 
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.BatchRouteRequest;
 import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
 import com.samsonduncan.cryptorouter.routing.OrderSide;
+import com.samsonduncan.cryptorouter.routing.Quote;
+import com.samsonduncan.cryptorouter.routing.RouteRequest;
+import com.samsonduncan.cryptorouter.routing.RouteUpdate;
 import com.samsonduncan.cryptorouter.services.RoutingEngine;
-import org.springframework.core.annotation.Order;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 
@@ -15,24 +30,122 @@ public class RoutingController {
 
     //inject routing engine
     private final RoutingEngine routingEngine;
+    //largest batch one call may route, bounds the cpu time one call takes on the shared parallel pool
+    private final int maxBatchOrders;
 
-    public RoutingController(RoutingEngine routingEngine) {
+    public RoutingController(RoutingEngine routingEngine,
+                             @Value("${routing.batch.max-orders:1000}") int maxBatchOrders) {
         this.routingEngine = routingEngine;
+        this.maxBatchOrders = maxBatchOrders;
     }
 
     //API endpoint method
     @PostMapping("/route")
-    public ExecutionPlan getExecutionPlan(
+    public Mono<ExecutionPlan> getExecutionPlan(
             @RequestParam("side") String side,
-            @RequestParam("quantity") String quantity
+            @RequestParam("quantity") String quantity,
+            @RequestParam(value = "instrument", defaultValue = "BTC-USD") String instrument
     ) {
         //convert inputs to correct types
-        OrderSide sideEnum = OrderSide.valueOf(side.toUpperCase());
-        BigDecimal quantityDecimal = new BigDecimal(quantity);
+        OrderSide sideEnum = parseSide(side);
+        BigDecimal quantityDecimal = parseQuantity(quantity);
+        checkOrder(instrument, sideEnum, quantityDecimal);
 
-        //call the engine + return result
-        return routingEngine.calculateRoute(sideEnum, quantityDecimal);
+        //call the engine + return result, routed on the same cpu sized pool as streamed routes (see
+        //OrderBookService.watch) so the request thread goes back to Tomcat rather than doing the walk
+        return Mono.fromSupplier(() -> routingEngine.calculateRoute(instrument, sideEnum, quantityDecimal))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    //Server sent events, the current plan then a new one whenever the book changes it
+    //replaces polling /route, a client stays subscribed for as long as it holds the order
+    @GetMapping(value = "/route/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<RouteUpdate> streamExecutionPlan(
+            @RequestParam("side") String side,
+            @RequestParam("quantity") String quantity,
+            @RequestParam(value = "instrument", defaultValue = "BTC-USD") String instrument
+    ) {
+        OrderSide sideEnum = parseSide(side);
+        BigDecimal quantityDecimal = parseQuantity(quantity);
+        checkOrder(instrument, sideEnum, quantityDecimal);
+        return routingEngine.streamRoute(instrument, sideEnum, quantityDecimal);
+    }
+
+    //Many orders in one call, all routed against the same book snapshot
+    @PostMapping("/route/batch")
+    public Mono<BatchExecutionPlan> getExecutionPlans(@RequestBody BatchRouteRequest request) {
+        String instrument = request.instrument() != null ? request.instrument() : "BTC-USD";
+        if (request.orders() == null || request.orders().isEmpty()) {
+            throw new IllegalArgumentException("Batch has no orders");
+        }
+        if (request.orders().size() > maxBatchOrders) {
+            throw new IllegalArgumentException(
+                    "Batch has " + request.orders().size() + " orders, at most " + maxBatchOrders + " are routed per call");
+        }
+        for (RouteRequest order : request.orders()) {
+            if (order == null) {
+                throw new IllegalArgumentException("Batch has an empty order");
+            }
+            checkOrder(instrument, order.side(), order.quantity());
+        }
+        return Mono.fromSupplier(() -> routingEngine.calculateRoutes(instrument, request.orders(), request.consumeDepth()))
+                .subscribeOn(Schedulers.parallel());
+    }
+
+    //Price only, no legs, cheap enough to poll
+    @GetMapping("/quote")
+    public Quote getQuote(
+            @RequestParam("side") String side,
+            @RequestParam("quantity") String quantity,
+            @RequestParam(value = "instrument", defaultValue = "BTC-USD") String instrument
+    ) {
+        OrderSide sideEnum = parseSide(side);
+        BigDecimal quantityDecimal = parseQuantity(quantity);
+        checkOrder(instrument, sideEnum, quantityDecimal);
+        return routingEngine.quote(instrument, sideEnum, quantityDecimal);
+    }
+
+    private static OrderSide parseSide(String side) {
+        return OrderSide.valueOf(side.toUpperCase());
+    }
+
+    private static BigDecimal parseQuantity(String quantity) {
+        try {
+            return new BigDecimal(quantity);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Quantity isn't a number: " + quantity);
+        }
+    }
 
+    //an order the engine can route: a side, and at least one whole lot of a quantity that fits the book's longs
+    //anything less would come back as an empty plan that looks filled
+    private void checkOrder(String instrument, OrderSide side, BigDecimal quantity) {
+        if (side == null) {
+            throw new IllegalArgumentException("Order has no side");
+        }
+        if (quantity == null) {
+            throw new IllegalArgumentException("Order has no quantity");
+        }
+        if (quantity.signum() <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive: " + quantity.toPlainString());
+        }
+        InstrumentSpec spec = routingEngine.getInstrument(instrument);
+        long lots;
+        try {
+            lots = spec.quantityFromDecimal(quantity);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Quantity too large: " + quantity);
+        }
+        if (lots == 0) {
+            throw new IllegalArgumentException(
+                    "Quantity is less than one lot of " + spec.quantityToDecimal(1).toPlainString() + ": " + quantity.toPlainString());
+        }
+    }
 
+    //Bad input rather than a server fault: an unknown instrument or side, a quantity that isn't a positive
+    //number of lots, an empty or oversized batch. Also catches these when thrown inside a Mono
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
     }
 }
@@ -0,0 +1,200 @@
+package com.samsonduncan.cryptorouter.diagnostics;
+
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.slf4j.Logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+Asynchronous log for the ingest and routing hot paths, see LogSite for what callers use.
+A log call copies its fields (references and longs, nothing is formatted) into a pre-allocated
+ring slot and returns, one thread drains the ring, formats each line and hands it to the
+site's SLF4J logger, so Spring Boot's logging config (levels, appenders, files) applies to it
+like any other line. Everything after startup logs through it, the few startup lines (config,
+connectors starting) call SLF4J directly.
+
+Callers never wait on it: if the ring is full the line is dropped and counted, and the ring's
+wait strategy has producers touch no lock, so a slow appender can't push back on a socket
+or a book writer. The appender's timestamp is when the line was written, normally well under
+a millisecond after the call. Lines still in the ring when the JVM exits are lost.
+
+  2026-10-18T09:30:00.123Z ERROR 4242 --- [hot-path-log] connector.message.failed : exchange=KRAKEN seq=1041 detail="[336,{..." error=java.io.IOException: ... (12 suppressed)
+ */
+public final class HotPathLog {
+
+    private static final int RING_SIZE = 4096;
+    //raw messages are cut to this many chars
+    private static final int DETAIL_LIMIT = 200;
+
+    private static final HotPathLog INSTANCE = new HotPathLog();
+
+    private final RingBuffer<LogEvent> ring;
+    private final AtomicLong dropped = new AtomicLong();
+    private final LongAdder suppressed = new LongAdder();
+
+    private HotPathLog() {
+        //sleeping waits mean producers never signal a parked consumer
+        Disruptor<LogEvent> disruptor = new Disruptor<>(
+                LogEvent::new,
+                RING_SIZE,
+                runnable -> {
+                    Thread thread = new Thread(runnable, "hot-path-log");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                ProducerType.MULTI,
+                new SleepingWaitStrategy());
+        disruptor.handleEventsWith(new Writer());
+        this.ring = disruptor.start();
+    }
+
+    public static HotPathLog get() {
+        return INSTANCE;
+    }
+
+    //lines lost because the ring was full
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    //lines skipped by their site's rate limit or sampling
+    public long getSuppressed() {
+        return suppressed.sum();
+    }
+
+    void suppressed() {
+        suppressed.increment();
+    }
+
+    //queues one line, false if the ring was full
+    boolean offer(LogSite site, LogSite.Limiter limiter, long skipped, Exchange exchange, String instrument,
+                  long sequence, long first, long second, String detail, Throwable error) {
+        long slot;
+        try {
+            slot = ring.tryNext();
+        } catch (InsufficientCapacityException e) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        try {
+            LogEvent event = ring.get(slot);
+            event.site = site;
+            event.limiter = limiter;
+            event.skipped = skipped;
+            event.exchange = exchange;
+            event.instrument = instrument;
+            event.sequence = sequence;
+            event.first = first;
+            event.second = second;
+            event.detail = detail;
+            event.error = error;
+        } finally {
+            ring.publish(slot);
+        }
+        return true;
+    }
+
+    //one queued line, slots are reused so nothing is allocated per call
+    static final class LogEvent {
+        LogSite site;
+        LogSite.Limiter limiter;
+        long skipped;
+        Exchange exchange;
+        String instrument;
+        long sequence;
+        long first;
+        long second;
+        String detail;
+        Throwable error;
+    }
+
+    //the one thread that formats, formatting garbage stays off the hot path
+    static final class Writer implements EventHandler<LogEvent> {
+
+        private final StringBuilder line = new StringBuilder(256);
+
+        @Override
+        public void onEvent(LogEvent event, long sequence, boolean endOfBatch) {
+            line.setLength(0);
+            format(event, line);
+            //a site logs each error class's stack trace once, after that the one line is enough
+            Throwable trace = null;
+            if (event.error != null && event.limiter != null && !event.limiter.traced) {
+                event.limiter.traced = true;
+                trace = event.error;
+            }
+            write(event.site, line.toString(), trace);
+            //let go of the references, the slot may sit for a while
+            event.instrument = null;
+            event.detail = null;
+            event.error = null;
+            event.limiter = null;
+        }
+    }
+
+    //the level was checked when the line was logged, the logger checks it again in case it has changed since
+    private static void write(LogSite site, String line, Throwable trace) {
+        Logger logger = site.logger();
+        switch (site.level()) {
+            case DEBUG -> logger.debug(line, trace);
+            case INFO -> logger.info(line, trace);
+            case WARN -> logger.warn(line, trace);
+            case ERROR -> logger.error(line, trace);
+        }
+    }
+
+    //the line's fields, the logger's pattern adds the time, level and site name
+    static void format(LogEvent event, StringBuilder line) {
+        if (event.exchange != null) {
+            field(line, "exchange").append(event.exchange);
+        }
+        if (event.instrument != null) {
+            field(line, "instrument").append(event.instrument);
+        }
+        if (event.sequence != LogSite.NO_SEQUENCE) {
+            field(line, "seq").append(event.sequence);
+        }
+        String[] fields = event.site.fields();
+        if (fields.length > 0) {
+            field(line, fields[0]).append(event.first);
+        }
+        if (fields.length > 1) {
+            field(line, fields[1]).append(event.second);
+        }
+        if (event.detail != null) {
+            field(line, "detail").append('"');
+            if (event.detail.length() > DETAIL_LIMIT) {
+                line.append(event.detail, 0, DETAIL_LIMIT).append("...");
+            } else {
+                line.append(event.detail);
+            }
+            line.append('"');
+        }
+        if (event.error != null) {
+            field(line, "error").append(event.error.getClass().getName());
+            if (event.error.getMessage() != null) {
+                line.append(": ").append(event.error.getMessage());
+            }
+        }
+        if (event.skipped > 0) {
+            if (!line.isEmpty()) {
+                line.append(' ');
+            }
+            line.append('(').append(event.skipped).append(" suppressed)");
+        }
+    }
+
+    private static StringBuilder field(StringBuilder line, String name) {
+        if (!line.isEmpty()) {
+            line.append(' ');
+        }
+        return line.append(name).append('=');
+    }
+}
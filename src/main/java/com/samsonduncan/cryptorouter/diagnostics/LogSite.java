@@ -0,0 +1,178 @@
+package com.samsonduncan.cryptorouter.diagnostics;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/*
+One kind of hot path log line, held in a static field where it's logged from, eg
+  private static final LogSite RING_FULL = LogSite.warn("orderbook.ring.full", 1, "dropped");
+Lines are structured: exchange, instrument, seq, up to two named numbers, a detail string
+(eg the raw message) and an error, whichever were given. Each site writes through the SLF4J
+logger named after it, so logging.level.orderbook=DEBUG and the like apply as usual, and a
+site whose level is off returns before it touches its limiter.
+
+Warn and error sites are rate limited, at most perSecond lines per second, separately for
+each error class, the next line that gets through says how many were suppressed.
+Debug sites are sampled instead, one line in every so many calls, eg per book update.
+Either way a call that doesn't make it costs a couple of atomic ops, and one that does
+a ring slot in HotPathLog, neither allocates.
+ */
+public final class LogSite {
+
+    public enum Level {
+        DEBUG(org.slf4j.event.Level.DEBUG),
+        INFO(org.slf4j.event.Level.INFO),
+        WARN(org.slf4j.event.Level.WARN),
+        ERROR(org.slf4j.event.Level.ERROR);
+
+        private final org.slf4j.event.Level slf4j;
+
+        Level(org.slf4j.event.Level slf4j) {
+            this.slf4j = slf4j;
+        }
+    }
+
+    //pass as the sequence when there isn't one
+    public static final long NO_SEQUENCE = -1;
+
+    private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger;
+    private final Level level;
+    private final int limit;
+    private final String[] fields;
+    private final HotPathLog log;
+    private final LongSupplier nanoClock;
+
+    //lines without an error share one limiter, each error class gets its own
+    private final Limiter limiter = new Limiter();
+    private final ClassValue<Limiter> errorLimiters = new ClassValue<>() {
+        @Override
+        protected Limiter computeValue(Class<?> type) {
+            return new Limiter();
+        }
+    };
+
+    //nanoClock times the rate limit windows, tests pass their own
+    LogSite(Logger logger, Level level, int limit, String[] fields, HotPathLog log, LongSupplier nanoClock) {
+        if (fields.length > 2) {
+            throw new IllegalArgumentException("At most two fields per log site: " + logger.getName());
+        }
+        this.logger = logger;
+        this.level = level;
+        this.limit = Math.max(1, limit);
+        this.fields = fields;
+        this.log = log;
+        this.nanoClock = nanoClock;
+    }
+
+    private LogSite(String name, Level level, int limit, String[] fields) {
+        this(LoggerFactory.getLogger(name), level, limit, fields, HotPathLog.get(), System::nanoTime);
+    }
+
+    //one line in every everyN calls, fields name the two numbers passed to log
+    public static LogSite sampled(String name, int everyN, String... fields) {
+        return new LogSite(name, Level.DEBUG, everyN, fields);
+    }
+
+    public static LogSite info(String name, int perSecond, String... fields) {
+        return new LogSite(name, Level.INFO, perSecond, fields);
+    }
+
+    public static LogSite warn(String name, int perSecond, String... fields) {
+        return new LogSite(name, Level.WARN, perSecond, fields);
+    }
+
+    public static LogSite error(String name, int perSecond, String... fields) {
+        return new LogSite(name, Level.ERROR, perSecond, fields);
+    }
+
+    public String name() {
+        return logger.getName();
+    }
+
+    public Level level() {
+        return level;
+    }
+
+    String[] fields() {
+        return fields;
+    }
+
+    Logger logger() {
+        return logger;
+    }
+
+    /**
+     * Logs a line with numbers, safe from any thread, never blocks
+     * @param exchange null if not about one exchange
+     * @param instrument canonical symbol, null if none
+     * @param sequence eg the book version, NO_SEQUENCE if none
+     * @param first value of the site's first field, ignored if it has none
+     * @param second value of its second field
+     * @return true if the line was queued, false if its level is off, it was sampled out, rate limited or the ring was full
+     */
+    public boolean log(Exchange exchange, String instrument, long sequence, long first, long second) {
+        return log(exchange, instrument, sequence, first, second, null, null);
+    }
+
+    //logs a line about a failure, detail is eg the message that failed and is cut short when written
+    public boolean log(Exchange exchange, String instrument, long sequence, String detail, Throwable error) {
+        return log(exchange, instrument, sequence, 0, 0, detail, error);
+    }
+
+    public boolean log(Exchange exchange, String instrument, long sequence, long first, long second,
+                       String detail, Throwable error) {
+        //checked each call so a level changed at runtime, eg through actuator, takes effect
+        if (!logger.isEnabledForLevel(level.slf4j)) {
+            return false;
+        }
+        Limiter target = error == null ? limiter : errorLimiters.get(error.getClass());
+        long skipped;
+        if (level == Level.DEBUG) {
+            if (target.calls.incrementAndGet() % limit != 0) {
+                log.suppressed();
+                return false;
+            }
+            skipped = 0;
+        } else {
+            if (!target.tryAcquire(nanoClock.getAsLong(), limit)) {
+                log.suppressed();
+                return false;
+            }
+            skipped = target.skipped.getAndSet(0);
+        }
+        return log.offer(this, target, skipped, exchange, instrument, sequence, first, second, detail, error);
+    }
+
+    //a one second window of lines, lock free
+    static final class Limiter {
+
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong windowStart = new AtomicLong(Long.MIN_VALUE);
+        private final AtomicLong skipped = new AtomicLong();
+
+        //stack trace written for this error class yet, only touched by HotPathLog's writer thread
+        boolean traced = false;
+
+        private boolean tryAcquire(long now, int perSecond) {
+            long start = windowStart.get();
+            if (start == Long.MIN_VALUE || now - start >= SECOND_NANOS) {
+                //whoever moves the window resets the count, racing callers just land in the new one
+                if (windowStart.compareAndSet(start, now)) {
+                    calls.set(0);
+                }
+            }
+            if (calls.incrementAndGet() <= perSecond) {
+                return true;
+            }
+            skipped.incrementAndGet();
+            return false;
+        }
+    }
+}
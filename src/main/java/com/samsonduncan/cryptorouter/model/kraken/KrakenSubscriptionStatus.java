@@ -7,6 +7,10 @@ import lombok.ToString;
 @Data
 public class KrakenSubscriptionStatus {
 
+    //id used in place of the pair on this subscription's book messages
+    @JsonProperty("channelID")
+    private Long channelID;
+
     private String event;
     private String pair;
     private String status;
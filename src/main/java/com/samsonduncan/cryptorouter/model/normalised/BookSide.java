@@ -0,0 +1,6 @@
+package com.samsonduncan.cryptorouter.model.normalised;
+
+public enum BookSide {
+    BID,
+    ASK
+}
@@ -0,0 +1,141 @@
+package com.samsonduncan.cryptorouter.model.normalised;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/*
+Helpers for scaled-long fixed point values.
+A value v with scale s represents v / 10^s, eg 5000001 at scale 2 is 50000.01.
+Prices and quantities are held in this form from the connectors through to the router,
+BigDecimal is only used at the REST/JSON edge.
+ */
+public final class FixedPoint {
+
+    //powers of ten that fit in a long, index is the exponent
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Parses a plain decimal string (eg "50000.01000") into a scaled long without allocating.
+     * Digits past the scale are allowed only if they are zero, as exchanges pad their strings.
+     * @param text decimal string, optional leading '-', no exponent
+     * @param scale number of decimal places kept
+     * @return value multiplied by 10^scale
+     * @throws NumberFormatException if text is not a plain decimal
+     * @throws ArithmeticException if precision would be lost or the value overflows
+     */
+    public static long parse(CharSequence text, int scale) {
+        return parse(text, null, 0, text.length(), scale);
+    }
+
+    //same as parse(CharSequence, int) but reads straight from a char buffer, eg a streaming JSON parser's
+    public static long parse(char[] buffer, int offset, int length, int scale) {
+        return parse(null, buffer, offset, length, scale);
+    }
+
+    //reads from text if given, otherwise from buffer starting at offset
+    private static long parse(CharSequence text, char[] buffer, int offset, int length, int scale) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty decimal string");
+        }
+
+        int i = 0;
+        boolean negative = false;
+        if (charAt(text, buffer, offset, 0) == '-') {
+            negative = true;
+            i++;
+        }
+
+        long value = 0;
+        int fractionDigits = -1; //-1 until the decimal point is seen
+        boolean anyDigit = false;
+
+        for (; i < length; i++) {
+            char c = charAt(text, buffer, offset, i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    throw invalid(text, buffer, offset, length);
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                throw invalid(text, buffer, offset, length);
+            }
+            anyDigit = true;
+
+            if (fractionDigits >= scale) {
+                //past the scale, padding zeros only
+                if (c != '0') {
+                    throw new ArithmeticException("Value " + asString(text, buffer, offset, length)
+                            + " has more than " + scale + " decimal places");
+                }
+                continue;
+            }
+            value = Math.addExact(Math.multiplyExact(value, 10L), c - '0');
+            if (fractionDigits >= 0) {
+                fractionDigits++;
+            }
+        }
+
+        if (!anyDigit) {
+            throw invalid(text, buffer, offset, length);
+        }
+
+        //pad up to the scale if fewer decimal places were sent
+        int missing = scale - Math.max(fractionDigits, 0);
+        value = Math.multiplyExact(value, POW10[missing]);
+        return negative ? -value : value;
+    }
+
+    private static char charAt(CharSequence text, char[] buffer, int offset, int index) {
+        return text != null ? text.charAt(index) : buffer[offset + index];
+    }
+
+    //only called on the error path, so the allocation doesn't matter
+    private static String asString(CharSequence text, char[] buffer, int offset, int length) {
+        return text != null ? text.toString() : new String(buffer, offset, length);
+    }
+
+    private static NumberFormatException invalid(CharSequence text, char[] buffer, int offset, int length) {
+        return new NumberFormatException("Invalid decimal string: " + asString(text, buffer, offset, length));
+    }
+
+    //converts a scaled long back to BigDecimal, for the REST/JSON edge only
+    public static BigDecimal toBigDecimal(long value, int scale) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    //converts a BigDecimal from the REST edge into a scaled long
+    public static long fromBigDecimal(BigDecimal value, int scale, RoundingMode roundingMode) {
+        return value.setScale(scale, roundingMode).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Converts a 128 bit value held as two longs into a BigDecimal.
+     * Used for notionals (price * quantity) which can overflow a single long.
+     * @param high upper 64 bits (signed)
+     * @param low lower 64 bits (unsigned)
+     * @param scale scale of the combined value
+     */
+    public static BigDecimal toBigDecimal(long high, long low, int scale) {
+        BigInteger unscaled = BigInteger.valueOf(high).shiftLeft(64)
+                .add(new BigInteger(Long.toUnsignedString(low)));
+        return new BigDecimal(unscaled, scale);
+    }
+
+    //10^exponent as a long
+    public static long pow10(int exponent) {
+        return POW10[exponent];
+    }
+}
@@ -0,0 +1,56 @@
+package com.samsonduncan.cryptorouter.model.normalised;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+//Scales for one trading pair, prices and quantities are held as longs in these units
+public record InstrumentSpec(
+        String symbol, //canonical id used across the app, eg "BTC-USD"
+        int priceScale, //decimal places of one tick, eg 2 for 0.01
+        int quantityScale //decimal places of one lot, eg 8 for 0.00000001
+) {
+
+    public static final InstrumentSpec BTC_USD = new InstrumentSpec("BTC-USD", 2, 8);
+    public static final InstrumentSpec ETH_USD = new InstrumentSpec("ETH-USD", 2, 8);
+
+    //"BTC" for "BTC-USD"
+    public String baseCurrency() {
+        return symbol.substring(0, symbol.indexOf('-'));
+    }
+
+    //"USD" for "BTC-USD"
+    public String quoteCurrency() {
+        return symbol.substring(symbol.indexOf('-') + 1);
+    }
+
+    public long parsePrice(CharSequence price) {
+        return FixedPoint.parse(price, priceScale);
+    }
+
+    public long parseQuantity(CharSequence quantity) {
+        return FixedPoint.parse(quantity, quantityScale);
+    }
+
+    public BigDecimal priceToDecimal(long price) {
+        return FixedPoint.toBigDecimal(price, priceScale);
+    }
+
+    public BigDecimal quantityToDecimal(long quantity) {
+        return FixedPoint.toBigDecimal(quantity, quantityScale);
+    }
+
+    //quantities from the REST edge are rounded down to a whole lot
+    public long quantityFromDecimal(BigDecimal quantity) {
+        return FixedPoint.fromBigDecimal(quantity, quantityScale, RoundingMode.DOWN);
+    }
+
+    //prices coming back from our own legs are always on a tick
+    public long priceFromDecimal(BigDecimal price) {
+        return FixedPoint.fromBigDecimal(price, priceScale, RoundingMode.UNNECESSARY);
+    }
+
+    //notional is price * quantity, held as a 128 bit high/low pair
+    public BigDecimal notionalToDecimal(long high, long low) {
+        return FixedPoint.toBigDecimal(high, low, priceScale + quantityScale);
+    }
+}
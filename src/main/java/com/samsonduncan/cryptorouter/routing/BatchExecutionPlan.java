@@ -0,0 +1,10 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import java.util.List;
+
+//Plans for a batch of orders, all routed against the same book snapshot
+public record BatchExecutionPlan(
+        long bookVersion, //snapshot every plan was computed from
+        boolean consumeDepth,
+        List<ExecutionPlan> plans //in request order
+) {}
@@ -0,0 +1,10 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import java.util.List;
+
+//Body of POST /route/batch
+public record BatchRouteRequest(
+        String instrument, //defaults to BTC-USD
+        boolean consumeDepth, //later orders route against what earlier ones left
+        List<RouteRequest> orders
+) {}
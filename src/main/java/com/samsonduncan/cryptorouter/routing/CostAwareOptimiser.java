@@ -0,0 +1,375 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Splits an order to minimise all-in cost rather than quoted price.
+Each venue's prices are adjusted by its taker fee plus a slippage penalty for its latency,
+and the order is filled greedily from the best adjusted price across venues.
+Fees and the penalty are proportional to notional, so each venue's marginal cost only rises
+as its book is walked and the greedy split is optimal before the order size rules below.
+
+Then, per venue:
+- quantity is capped by the balance held there (quote currency for buys, base for sells)
+- the total sent is rounded down to a multiple of its lot size, the residual is topped up
+  in whole lots from whichever venue is then cheapest
+- a venue whose share ends up under its minimum notional is dropped and the split re-solved
+
+A venue's share is always a prefix of its levels, so the solve state is one quantity per venue
+and a cursor, held in small primitive arrays. Adjusted prices and balances use doubles
+as they only rank venues and bound quantities, the legs returned are priced exactly.
+ */
+public class CostAwareOptimiser implements RoutingOptimiser {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+    private static final int VENUES = EXCHANGES.length;
+
+    private final VenueProfile[] profiles; //by exchange ordinal, null if not routed to
+    private final VenueBalances balances;
+
+    //per venue, fixed for the life of the optimiser
+    private final double[] feeRate;
+    private final double[] costRate; //fee plus latency penalty
+    private final BigDecimal[] feeRateDecimal;
+    private final double[] minNotional;
+
+    //lot size in scaled quantity units per venue, depends on the instrument's scale
+    private final Map<InstrumentSpec, long[]> lotUnits = new ConcurrentHashMap<>();
+
+    /**
+     * @param venues Venues to route to, any exchange without a profile gets nothing
+     * @param balances Funds on each venue
+     * @param slippagePerMillisecond Expected adverse move per ms of latency, fraction of price
+     */
+    public CostAwareOptimiser(Collection<VenueProfile> venues, VenueBalances balances, BigDecimal slippagePerMillisecond) {
+        this.profiles = new VenueProfile[VENUES];
+        this.balances = balances;
+        this.feeRate = new double[VENUES];
+        this.costRate = new double[VENUES];
+        this.feeRateDecimal = new BigDecimal[VENUES];
+        this.minNotional = new double[VENUES];
+
+        for (VenueProfile venue : venues) {
+            int v = venue.exchange().ordinal();
+            profiles[v] = venue;
+            feeRateDecimal[v] = venue.takerFeeRate();
+            feeRate[v] = feeRateDecimal[v].doubleValue();
+            costRate[v] = feeRate[v] + slippagePerMillisecond.doubleValue() * venue.latencyMicros() / 1000.0;
+            minNotional[v] = venue.minNotional().doubleValue();
+        }
+    }
+
+    @Override
+    public ExecutionPlan route(BookSnapshot snapshot, OrderSide side, long quantity) {
+        InstrumentSpec instrument = snapshot.instrument();
+        boolean buy = side == OrderSide.BUY;
+        Solve solve = new Solve(
+                buy ? snapshot.asks() : snapshot.bids(),
+                buy,
+                instrument,
+                lotUnits.computeIfAbsent(instrument, this::lotUnits));
+
+        //each pass either succeeds or drops one venue, so at most one pass per venue plus one
+        List<Exchange> skipped = new ArrayList<>();
+        for (int pass = 0; pass <= VENUES; pass++) {
+            solve.run(quantity);
+            int failing = solve.belowMinNotional();
+            if (failing < 0) {
+                break;
+            }
+            solve.excluded[failing] = true;
+            skipped.add(EXCHANGES[failing]);
+        }
+
+        return plan(solve, side, quantity, skipped);
+    }
+
+    //builds the legs best level first, priced exactly
+    private ExecutionPlan plan(Solve solve, OrderSide side, long quantity, List<Exchange> skipped) {
+        InstrumentSpec instrument = solve.instrument;
+        BookSideSnapshot book = solve.book;
+        int notionalScale = instrument.priceScale() + instrument.quantityScale();
+
+        List<ExecutionLeg> legs = new ArrayList<>();
+        long[] left = solve.allocated.clone();
+        long total = Arrays.stream(left).sum();
+        long filled = 0;
+        BigDecimal totalNotional = BigDecimal.ZERO;
+        BigDecimal totalFees = BigDecimal.ZERO;
+
+        for (int level = 0; level < book.depth() && filled < total; level++) {
+            for (int v = 0; v < VENUES; v++) {
+                long take = Math.min(left[v], book.quantity(level, EXCHANGES[v]));
+                if (take <= 0) {
+                    continue;
+                }
+                BigDecimal price = instrument.priceToDecimal(book.price(level));
+                BigDecimal legQuantity = instrument.quantityToDecimal(take);
+                BigDecimal notional = price.multiply(legQuantity);
+                BigDecimal fee = notional.multiply(feeRateDecimal[v]).setScale(notionalScale, RoundingMode.HALF_UP);
+                legs.add(new ExecutionLeg(EXCHANGES[v], legQuantity, price, fee));
+
+                left[v] -= take;
+                filled += take;
+                totalNotional = totalNotional.add(notional);
+                totalFees = totalFees.add(fee);
+            }
+        }
+
+        //finalise and return plan
+        //handle insufficient liquidity
+        String notes = "Order filled successfully.";
+        if (filled < quantity) {
+            notes = "Could not fill full quantity. " + instrument.quantityToDecimal(quantity - filled) + " remaining.";
+        }
+        if (!skipped.isEmpty()) {
+            notes += " Skipped " + skipped + ", below minimum notional.";
+        }
+
+        BigDecimal vwap = BigDecimal.ZERO;
+        BigDecimal allInPrice = BigDecimal.ZERO;
+        if (filled > 0) {
+            BigDecimal filledDecimal = instrument.quantityToDecimal(filled);
+            BigDecimal allIn = side == OrderSide.BUY ? totalNotional.add(totalFees) : totalNotional.subtract(totalFees);
+            vwap = totalNotional.divide(filledDecimal, MathContext.DECIMAL64);
+            allInPrice = allIn.divide(filledDecimal, MathContext.DECIMAL64);
+        }
+        return new ExecutionPlan(legs, vwap, allInPrice, notes);
+    }
+
+    private long[] lotUnits(InstrumentSpec instrument) {
+        long[] lots = new long[VENUES];
+        for (int v = 0; v < VENUES; v++) {
+            lots[v] = 1;
+            if (profiles[v] != null) {
+                //a lot finer than the instrument's scale is just one unit
+                long units = profiles[v].lotSize().movePointRight(instrument.quantityScale())
+                        .setScale(0, RoundingMode.UP).longValueExact();
+                lots[v] = Math.max(units, 1);
+            }
+        }
+        return lots;
+    }
+
+    //State for one route call, venues indexed by exchange ordinal
+    private final class Solve {
+
+        private final BookSideSnapshot book;
+        private final boolean buy;
+        private final InstrumentSpec instrument;
+        private final long[] lots;
+
+        //quote currency per scaled price unit per scaled quantity unit
+        private final double unitNotional;
+
+        private final boolean[] excluded = new boolean[VENUES];
+        private final long[] allocated = new long[VENUES];
+
+        //the next unit each venue would fill from
+        private final int[] cursorLevel = new int[VENUES];
+        private final long[] cursorTaken = new long[VENUES];
+
+        //what each venue's balance still allows
+        private final long[] capLeft = new long[VENUES];
+        private final double[] budgetLeft = new double[VENUES];
+
+        private Solve(BookSideSnapshot book, boolean buy, InstrumentSpec instrument, long[] lots) {
+            this.book = book;
+            this.buy = buy;
+            this.instrument = instrument;
+            this.lots = lots;
+            this.unitNotional = Math.pow(10, -(instrument.priceScale() + instrument.quantityScale()));
+            for (int v = 0; v < VENUES; v++) {
+                excluded[v] = profiles[v] == null;
+            }
+        }
+
+        private void run(long quantity) {
+            resetBalances();
+            Arrays.fill(allocated, 0);
+            Arrays.fill(cursorLevel, 0);
+            Arrays.fill(cursorTaken, 0);
+
+            //greedy, a level at a time from whichever venue is cheapest all-in
+            long remaining = quantity;
+            while (remaining > 0) {
+                int v = cheapestVenue(Long.MAX_VALUE);
+                if (v < 0) {
+                    break;
+                }
+                long available = book.quantity(cursorLevel[v], EXCHANGES[v]) - cursorTaken[v];
+                long taken = take(v, Math.min(remaining, available));
+                if (taken == 0) {
+                    //balance spent
+                    capLeft[v] = 0;
+                }
+                remaining -= taken;
+            }
+
+            //round each venue down to whole lots
+            for (int v = 0; v < VENUES; v++) {
+                long trim = allocated[v] % lots[v];
+                allocated[v] -= trim;
+                remaining += trim;
+            }
+            if (remaining == 0) {
+                return;
+            }
+
+            //top the residual up in whole lots, cheapest venue first
+            resetBalances();
+            for (int v = 0; v < VENUES; v++) {
+                spend(v);
+            }
+            while (remaining > 0) {
+                int v = cheapestVenue(remaining);
+                if (v < 0) {
+                    break;
+                }
+                long wanted = remaining - remaining % lots[v];
+                long taken = take(v, wanted);
+                //a balance can stop the walk part way through a lot
+                long trim = taken % lots[v];
+                allocated[v] -= trim;
+                remaining -= taken - trim;
+                //one go per venue, whatever it couldn't take it never will
+                capLeft[v] = 0;
+            }
+        }
+
+        //balances as they are before anything is allocated
+        private void resetBalances() {
+            for (int v = 0; v < VENUES; v++) {
+                capLeft[v] = Long.MAX_VALUE;
+                budgetLeft[v] = Double.POSITIVE_INFINITY;
+                if (excluded[v]) {
+                    continue;
+                }
+                if (buy) {
+                    BigDecimal quote = balances.getAvailable(EXCHANGES[v], instrument.quoteCurrency());
+                    if (quote != null) {
+                        budgetLeft[v] = quote.doubleValue();
+                    }
+                } else {
+                    BigDecimal base = balances.getAvailable(EXCHANGES[v], instrument.baseCurrency());
+                    if (base != null) {
+                        capLeft[v] = instrument.quantityFromDecimal(base);
+                    }
+                }
+            }
+        }
+
+        //moves a venue's cursor and balances past what is already allocated to it
+        //replays the allocation without re-checking the balance, so rounding can't shrink it
+        private void spend(int v) {
+            long left = allocated[v];
+            cursorLevel[v] = 0;
+            cursorTaken[v] = 0;
+            while (left > 0 && advance(v)) {
+                long price = book.price(cursorLevel[v]);
+                long chunk = Math.min(left, book.quantity(cursorLevel[v], EXCHANGES[v]) - cursorTaken[v]);
+                if (budgetLeft[v] != Double.POSITIVE_INFINITY) {
+                    budgetLeft[v] -= chunk * price * unitNotional * (1 + feeRate[v]);
+                }
+                cursorTaken[v] += chunk;
+                capLeft[v] -= chunk;
+                left -= chunk;
+            }
+        }
+
+        //venue with the best adjusted price at its cursor, among those whose lot fits in maxQuantity
+        private int cheapestVenue(long maxQuantity) {
+            int best = -1;
+            double bestPrice = 0;
+            for (int v = 0; v < VENUES; v++) {
+                if (excluded[v] || capLeft[v] <= 0 || lots[v] > maxQuantity || !advance(v)) {
+                    continue;
+                }
+                double price = book.price(cursorLevel[v]) * (buy ? 1 + costRate[v] : 1 - costRate[v]);
+                if (best < 0 || (buy ? price < bestPrice : price > bestPrice)) {
+                    best = v;
+                    bestPrice = price;
+                }
+            }
+            return best;
+        }
+
+        //skips levels the venue has nothing left at, false if its side is used up
+        private boolean advance(int v) {
+            while (cursorLevel[v] < book.depth()
+                    && book.quantity(cursorLevel[v], EXCHANGES[v]) - cursorTaken[v] <= 0) {
+                cursorLevel[v]++;
+                cursorTaken[v] = 0;
+            }
+            return cursorLevel[v] < book.depth();
+        }
+
+        //walks a venue's levels taking up to quantity within its balance, returns the amount taken
+        private long take(int v, long quantity) {
+            long taken = 0;
+            while (taken < quantity && advance(v) && capLeft[v] > 0) {
+                long price = book.price(cursorLevel[v]);
+                long chunk = Math.min(quantity - taken, book.quantity(cursorLevel[v], EXCHANGES[v]) - cursorTaken[v]);
+                chunk = Math.min(chunk, capLeft[v]);
+
+                //buys spend the quote balance, fee included
+                double unitCost = price * unitNotional * (1 + feeRate[v]);
+                if (budgetLeft[v] != Double.POSITIVE_INFINITY) {
+                    chunk = Math.min(chunk, (long) Math.floor(budgetLeft[v] / unitCost));
+                    if (chunk <= 0) {
+                        break;
+                    }
+                    budgetLeft[v] -= chunk * unitCost;
+                }
+
+                cursorTaken[v] += chunk;
+                capLeft[v] -= chunk;
+                allocated[v] += chunk;
+                taken += chunk;
+            }
+            return taken;
+        }
+
+        //the venue furthest under its minimum notional, -1 if every venue used is above it
+        private int belowMinNotional() {
+            int worst = -1;
+            double worstShortfall = 0;
+            for (int v = 0; v < VENUES; v++) {
+                if (allocated[v] == 0) {
+                    continue;
+                }
+                double shortfall = minNotional[v] - notional(v);
+                if (shortfall > 0 && shortfall > worstShortfall) {
+                    worst = v;
+                    worstShortfall = shortfall;
+                }
+            }
+            return worst;
+        }
+
+        //quote currency value of a venue's share, walking its levels from the best
+        private double notional(int v) {
+            double notional = 0;
+            long left = allocated[v];
+            for (int level = 0; level < book.depth() && left > 0; level++) {
+                long take = Math.min(left, book.quantity(level, EXCHANGES[v]));
+                notional += take * (book.price(level) * unitNotional);
+                left -= take;
+            }
+            return notional;
+        }
+    }
+}
@@ -7,5 +7,6 @@ import java.math.BigDecimal;
 public record ExecutionLeg(
         Exchange exchange,
         BigDecimal quantity,
-        BigDecimal price
+        BigDecimal price,
+        BigDecimal fee //taker fee in the quote currency, 0 if the optimiser doesn't model fees
 ) {}
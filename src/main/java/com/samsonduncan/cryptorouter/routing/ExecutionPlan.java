@@ -9,5 +9,6 @@ import java.util.List;
 public record ExecutionPlan(
     List<ExecutionLeg> legs,
     BigDecimal vwap,
+    BigDecimal allInPrice, //vwap with fees, added for buys and taken off for sells
     String notes
 ) {}
@@ -0,0 +1,9 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import java.math.BigDecimal;
+
+//One step of a venue's taker fee schedule, applies from minVolume (30 day, quote currency) upwards
+public record FeeTier(
+        BigDecimal minVolume,
+        BigDecimal takerFeeRate //fraction of notional, eg 0.004 for 0.40%
+) {}
@@ -0,0 +1,71 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+/*
+Cost of filling a quantity straight down the consolidated book, ignoring venues.
+Read from the side's running totals, so O(log n) whatever the size.
+ */
+public record FillCost(
+        long quantity, //scaled quantity filled, less than wanted if the side is too thin
+        long costHigh, //price * quantity as 128 bits
+        long costLow,
+        int lastLevel //level the fill ends on, -1 if nothing filled
+) {
+
+    private static final FillCost NONE = new FillCost(0, 0, 0, -1);
+
+    //whole levels up to the boundary, then part of the boundary level
+    public static FillCost of(BookSideSnapshot book, long quantity) {
+        if (quantity <= 0 || book.depth() == 0) {
+            return NONE;
+        }
+
+        int boundary = book.levelForQuantity(quantity);
+        if (boundary == book.depth()) {
+            //not enough liquidity, take the whole side
+            int last = book.depth() - 1;
+            return new FillCost(
+                    book.cumulativeQuantity(last),
+                    book.cumulativeNotionalHigh(last),
+                    book.cumulativeNotionalLow(last),
+                    last);
+        }
+
+        long costHigh = 0;
+        long costLow = 0;
+        long before = 0;
+        if (boundary > 0) {
+            costHigh = book.cumulativeNotionalHigh(boundary - 1);
+            costLow = book.cumulativeNotionalLow(boundary - 1);
+            before = book.cumulativeQuantity(boundary - 1);
+        }
+
+        //add the part of the boundary level taken, carrying into the high word
+        long partial = quantity - before;
+        long price = book.price(boundary);
+        long partialLow = partial * price;
+        long partialHigh = Math.multiplyHigh(partial, price);
+        long sumLow = costLow + partialLow;
+        if (Long.compareUnsigned(sumLow, costLow) < 0) {
+            partialHigh++;
+        }
+        return new FillCost(quantity, costHigh + partialHigh, sumLow, boundary);
+    }
+
+    public BigDecimal notional(InstrumentSpec instrument) {
+        return instrument.notionalToDecimal(costHigh, costLow);
+    }
+
+    //volume weighted average price, 0 if nothing filled
+    public BigDecimal vwap(InstrumentSpec instrument) {
+        if (quantity <= 0) {
+            return BigDecimal.ZERO;
+        }
+        return notional(instrument).divide(instrument.quantityToDecimal(quantity), MathContext.DECIMAL64);
+    }
+}
@@ -0,0 +1,67 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Greedy walk down the consolidated book by price alone, exchanges in enum order at each level.
+Knows nothing about fees, balances or order size rules, so legs carry no fee.
+ */
+public class PriceOnlyOptimiser implements RoutingOptimiser {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+
+    @Override
+    public ExecutionPlan route(BookSnapshot snapshot, OrderSide side, long quantity) {
+        InstrumentSpec instrument = snapshot.instrument();
+        BookSideSnapshot bookToWalk = side == OrderSide.BUY ? snapshot.asks() : snapshot.bids();
+        FillCost fill = FillCost.of(bookToWalk, quantity);
+
+        //variables
+        List<ExecutionLeg> legs = new ArrayList<>();
+        long quantityLeft = fill.quantity();
+
+        //walk the levels the fill reaches, levels are best first
+        for (int level = 0; level < bookToWalk.depth() && quantityLeft > 0; level++) {
+            long price = bookToWalk.price(level);
+
+            //inner loop (exchanges at this price)
+            for (Exchange exchange : EXCHANGES) {
+                //determine how much to take; min of what's needed vs what's available
+                long quantityToTake = Math.min(quantityLeft, bookToWalk.quantity(level, exchange));
+
+                //if taking a non-zero amount, record it
+                if (quantityToTake > 0) {
+                    legs.add(new ExecutionLeg(
+                            exchange,
+                            instrument.quantityToDecimal(quantityToTake),
+                            instrument.priceToDecimal(price),
+                            BigDecimal.ZERO));
+                    quantityLeft -= quantityToTake;
+
+                    //if filled entire order, stop immediately
+                    if (quantityLeft <= 0) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        //finalise and return plan
+        //handle insufficient liquidity
+        String notes = "Order filled successfully.";
+        if (fill.quantity() < quantity) {
+            notes = "Could not fill full quantity. "
+                    + instrument.quantityToDecimal(quantity - fill.quantity()) + " remaining.";
+        }
+
+        BigDecimal vwap = fill.vwap(instrument);
+        return new ExecutionPlan(legs, vwap, vwap, notes);
+    }
+}
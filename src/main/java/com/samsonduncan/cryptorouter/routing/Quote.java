@@ -0,0 +1,11 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import java.math.BigDecimal;
+
+//Price of filling a quantity against the consolidated book, without the per venue legs
+public record Quote(
+        BigDecimal filledQuantity, //less than requested if the book is too thin
+        BigDecimal vwap,
+        BigDecimal worstPrice, //price of the last level the fill reaches
+        long bookVersion //snapshot the quote was priced from
+) {}
@@ -0,0 +1,9 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import java.math.BigDecimal;
+
+//One order in a batch, eg a child slice of a parent order
+public record RouteRequest(
+        OrderSide side,
+        BigDecimal quantity
+) {}
@@ -0,0 +1,7 @@
+package com.samsonduncan.cryptorouter.routing;
+
+//One event of a streamed route, sent when a book change alters the plan
+public record RouteUpdate(
+        long bookVersion, //snapshot the plan was computed from
+        ExecutionPlan plan
+) {}
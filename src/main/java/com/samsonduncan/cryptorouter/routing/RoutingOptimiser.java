@@ -0,0 +1,15 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+
+//Splits an order across venues from one snapshot of the consolidated book
+public interface RoutingOptimiser {
+
+    /**
+     * @param snapshot consistent view of the instrument's book
+     * @param side buy walks the asks, sell walks the bids
+     * @param quantity scaled quantity wanted
+     * @return legs best first, with prices and any fees
+     */
+    ExecutionPlan route(BookSnapshot snapshot, OrderSide side, long quantity);
+}
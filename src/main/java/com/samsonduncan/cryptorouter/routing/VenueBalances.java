@@ -0,0 +1,33 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+Funds available on each venue, per currency.
+Buys are capped by the quote currency held there, sells by the base currency.
+A currency that was never set is treated as unlimited.
+ */
+public class VenueBalances {
+
+    private final Map<Exchange, Map<String, BigDecimal>> balances = new EnumMap<>(Exchange.class);
+
+    public VenueBalances() {
+        for (Exchange exchange : Exchange.values()) {
+            balances.put(exchange, new ConcurrentHashMap<>());
+        }
+    }
+
+    public void setAvailable(Exchange exchange, String currency, BigDecimal amount) {
+        balances.get(exchange).put(currency, amount);
+    }
+
+    //null if unlimited
+    public BigDecimal getAvailable(Exchange exchange, String currency) {
+        return balances.get(exchange).get(currency);
+    }
+}
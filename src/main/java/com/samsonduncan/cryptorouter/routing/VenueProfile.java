@@ -0,0 +1,28 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+//What the optimiser needs to know about trading on one venue, beyond its book
+public record VenueProfile(
+        Exchange exchange,
+        List<FeeTier> feeTiers, //ascending by minVolume
+        BigDecimal thirtyDayVolume, //picks the fee tier
+        BigDecimal lotSize, //quantity sent to the venue must be a multiple of this
+        BigDecimal minNotional, //smallest order the venue accepts, quote currency
+        long latencyMicros //typical order round trip, slower venues see more slippage
+) {
+
+    //taker fee of the highest tier the 30 day volume reaches
+    public BigDecimal takerFeeRate() {
+        BigDecimal rate = BigDecimal.ZERO;
+        for (FeeTier tier : feeTiers) {
+            if (thirtyDayVolume.compareTo(tier.minVolume()) >= 0) {
+                rate = tier.takerFeeRate();
+            }
+        }
+        return rate;
+    }
+}
@@ -1,11 +1,17 @@
 package com.samsonduncan.cryptorouter.services;
 
+import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.JWSHeader;
 import com.nimbusds.jose.JWSSigner;
 import com.nimbusds.jose.crypto.ECDSASigner;
 import com.nimbusds.jwt.JWTClaimsSet;
 import com.nimbusds.jwt.SignedJWT;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.openssl.PEMKeyPair;
 import org.bouncycastle.openssl.PEMParser;
@@ -20,8 +26,29 @@ import java.security.Security;
 import java.security.interfaces.ECPrivateKey;
 import java.time.Instant;
 import java.util.Date;
+import java.util.Deque;
+import java.util.Map;
 import java.util.UUID;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+Signs the ES256 JWTs Coinbase wants on subscriptions and API calls.
+The PEM key is parsed and the signer built once, at startup, so a bad key fails the app
+rather than the first connect.
+
+Each JWT carries its own nonce and is handed out once, so tokens are pre-signed into a small
+pool per request URI and topped up in the background from start(), which Spring calls once
+the service is built. Taking one is normally a queue poll,
+a burst of reconnects only signs inline once its URI's pool has run dry.
+Tokens live for 2 minutes and are only handed out in their first minute,
+so whoever takes one has at least a minute to use it.
+ */
 @Service
 public class CoinbaseAuthService {
 
@@ -29,44 +56,157 @@ public class CoinbaseAuthService {
         Security.addProvider(new BouncyCastleProvider());
     }
 
-    @Value("${coinbase.advanced.api.key.name}")
-    private String apiKeyName;
+    //what the websocket subscription is signed for
+    public static final String WEBSOCKET_URI = "GET https://api.coinbase.com/api/v3/brokerage/products";
 
-    // inject the key as a single line string from application.properties
-    @Value("${coinbase.advanced.api.private.key}")
-    private String privateKeyString;
+    private static final long LIFETIME_SECONDS = 120;
+    private static final long HAND_OUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long REFILL_SECONDS = 15;
+    private static final LogSite REFILL_FAILED = LogSite.warn("coinbase.jwt.refill.failed", 1);
 
-    public String generateJwt() {
+    private final String apiKeyName;
+    private final JWSSigner signer;
+    private final int poolSize;
+    private final Executor executor;
+    private final ScheduledExecutorService timers;
+
+    //request URI to tokens, oldest first
+    private final Map<String, Deque<Token>> pools = new ConcurrentHashMap<>();
+    //background top-up, from start() until shutdown()
+    private ScheduledFuture<?> refill;
+
+    private final AtomicLong signed = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+
+    private record Token(String jwt, long handOutUntil) {
+    }
+
+    public CoinbaseAuthService(
+            @Value("${coinbase.advanced.api.key.name}") String apiKeyName,
+            // inject the key as a single line string from application.properties
+            @Value("${coinbase.advanced.api.private.key}") String privateKey,
+            @Value("${coinbase.jwt.pool-size:16}") int poolSize,
+            ExecutionModel executionModel) {
+        this.apiKeyName = apiKeyName;
+        this.poolSize = poolSize;
         try {
-            //Uses the official SDK's method.
-            PrivateKey privateKey = parsePrivateKeyFromString(privateKeyString);
-            String jwtId = UUID.randomUUID().toString();
+            this.signer = new ECDSASigner((ECPrivateKey) parsePrivateKeyFromString(privateKey));
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid Coinbase private key. Please verify the key content in application.properties.", e);
+        }
+
+        this.executor = executionModel.connectors();
+        this.timers = executionModel.connectorTimers();
+    }
 
+    //fills the websocket pool and starts topping every pool up, once the service is fully built
+    @PostConstruct
+    public synchronized void start() {
+        if (refill != null) {
+            return;
+        }
+        //signing is too slow for the timer thread, it only hands off
+        refill = timers.scheduleAtFixedRate(
+                () -> executor.execute(this::refillAll), REFILL_SECONDS, REFILL_SECONDS, TimeUnit.SECONDS);
+        executor.execute(() -> refill(WEBSOCKET_URI));
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (refill != null) {
+            refill.cancel(false);
+        }
+    }
+
+    //a JWT for the websocket subscription
+    public String generateJwt() {
+        return jwt(WEBSOCKET_URI);
+    }
+
+    /**
+     * A JWT for one request, from the pool if it has one
+     * @param uri method and URL, eg "GET https://api.coinbase.com/api/v3/brokerage/products"
+     * @return a token nobody else has been given, valid for at least another minute
+     */
+    public String jwt(String uri) {
+        Deque<Token> pool = pools.computeIfAbsent(uri, u -> new ConcurrentLinkedDeque<>());
+        long now = System.nanoTime();
+        Token token;
+        while ((token = pool.pollFirst()) != null) {
+            //too old to hand out are dropped, the refill replaces them
+            if (now < token.handOutUntil()) {
+                if (pool.size() < poolSize / 2) {
+                    executor.execute(() -> refill(uri));
+                }
+                return token.jwt();
+            }
+        }
+        poolMisses.incrementAndGet();
+        executor.execute(() -> refill(uri));
+        return signJwt(uri);
+    }
+
+    //tops a URI's pool up to its size now, eg before a burst of reconnects
+    public void refill(String uri) {
+        Deque<Token> pool = pools.computeIfAbsent(uri, u -> new ConcurrentLinkedDeque<>());
+        //one refill per pool at a time, takers never wait on this
+        synchronized (pool) {
+            long now = System.nanoTime();
+            Token oldest;
+            while ((oldest = pool.peekFirst()) != null && now >= oldest.handOutUntil()) {
+                pool.remove(oldest);
+            }
+            while (pool.size() < poolSize) {
+                pool.addLast(new Token(signJwt(uri), System.nanoTime() + HAND_OUT_NANOS));
+            }
+        }
+    }
+
+    //signs a new token every call, skipping the pool
+    public String signJwt(String uri) {
+        try {
             JWSHeader header = new JWSHeader.Builder(JWSAlgorithm.ES256)
                     .keyID(apiKeyName)
                     .customParam("nonce", UUID.randomUUID().toString())
                     .build();
 
-            // uri for WebSocket
-            String uri = "GET https://api.coinbase.com/api/v3/brokerage/products";
-
+            Instant now = Instant.now();
             JWTClaimsSet claimsSet = new JWTClaimsSet.Builder()
                     .subject(apiKeyName)
                     .issuer("cdp")
                     .claim("uri", uri)
-                    .expirationTime(new Date(Instant.now().plusSeconds(120).toEpochMilli()))
-                    .issueTime(new Date())
-                    .notBeforeTime(new Date())
+                    .expirationTime(Date.from(now.plusSeconds(LIFETIME_SECONDS)))
+                    .issueTime(Date.from(now))
+                    .notBeforeTime(Date.from(now))
                     .build();
 
             SignedJWT signedJWT = new SignedJWT(header, claimsSet);
-            JWSSigner signer = new ECDSASigner((ECPrivateKey) privateKey);
             signedJWT.sign(signer);
-
+            signed.incrementAndGet();
             return signedJWT.serialize();
 
-        } catch (Exception e) {
-            throw new RuntimeException("Fatal error during JWT generation. Please verify the key content in application.properties.", e);
+        } catch (JOSEException e) {
+            throw new IllegalStateException("Fatal error during JWT generation", e);
+        }
+    }
+
+    //tokens signed, pooled or not
+    public long getSignedTokens() {
+        return signed.get();
+    }
+
+    //takes that found their pool empty and signed inline
+    public long getPoolMisses() {
+        return poolMisses.get();
+    }
+
+    private void refillAll() {
+        for (String uri : pools.keySet()) {
+            try {
+                refill(uri);
+            } catch (RuntimeException e) {
+                REFILL_FAILED.log(Exchange.COINBASE, null, LogSite.NO_SEQUENCE, uri, e);
+            }
         }
     }
 
@@ -0,0 +1,82 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+Maps exchange specific symbols (eg Kraken "XBT/USD", Coinbase "BTC-USD")
+to one canonical instrument, so books only merge when they really are the same pair.
+Filled in once at startup (see InstrumentConfig) and read only after that.
+ */
+public class InstrumentRegistry {
+
+    //canonical symbol to spec, in registration order
+    private final Map<String, InstrumentSpec> instruments = new LinkedHashMap<>();
+
+    //per exchange, exchange symbol to spec and back
+    private final Map<Exchange, Map<String, InstrumentSpec>> bySymbol = new EnumMap<>(Exchange.class);
+    private final Map<Exchange, Map<String, String>> toSymbol = new EnumMap<>(Exchange.class);
+
+    /**
+     * Registers an instrument and the symbols it trades under
+     * @param instrument canonical instrument and its scales
+     * @param exchangeSymbols symbol on each exchange that lists it
+     */
+    public InstrumentRegistry register(InstrumentSpec instrument, Map<Exchange, String> exchangeSymbols) {
+        if (instruments.putIfAbsent(instrument.symbol(), instrument) != null) {
+            throw new IllegalArgumentException("Instrument already registered: " + instrument.symbol());
+        }
+        for (Map.Entry<Exchange, String> entry : exchangeSymbols.entrySet()) {
+            bySymbol.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(entry.getValue(), instrument);
+            toSymbol.computeIfAbsent(entry.getKey(), k -> new HashMap<>())
+                    .put(instrument.symbol(), entry.getValue());
+        }
+        return this;
+    }
+
+    //every registered instrument
+    public List<InstrumentSpec> getInstruments() {
+        return Collections.unmodifiableList(new ArrayList<>(instruments.values()));
+    }
+
+    //instruments listed on one exchange
+    public List<InstrumentSpec> getInstruments(Exchange exchange) {
+        Map<String, String> listed = toSymbol.getOrDefault(exchange, Map.of());
+        return instruments.values().stream()
+                .filter(instrument -> listed.containsKey(instrument.symbol()))
+                .toList();
+    }
+
+    //canonical lookup, null if unknown
+    public InstrumentSpec get(String symbol) {
+        return instruments.get(symbol);
+    }
+
+    //canonical lookup for request input
+    public InstrumentSpec require(String symbol) {
+        InstrumentSpec instrument = instruments.get(symbol);
+        if (instrument == null) {
+            throw new IllegalArgumentException("Unknown instrument: " + symbol);
+        }
+        return instrument;
+    }
+
+    //exchange symbol to canonical instrument, null if not registered
+    public InstrumentSpec forExchangeSymbol(Exchange exchange, String exchangeSymbol) {
+        return bySymbol.getOrDefault(exchange, Map.of()).get(exchangeSymbol);
+    }
+
+    //canonical instrument to the symbol an exchange uses, null if not listed there
+    public String exchangeSymbol(InstrumentSpec instrument, Exchange exchange) {
+        return toSymbol.getOrDefault(exchange, Map.of()).get(instrument.symbol());
+    }
+}
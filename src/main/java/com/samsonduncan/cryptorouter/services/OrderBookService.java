@@ -1,145 +1,477 @@
 package com.samsonduncan.cryptorouter.services;
 
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.InsufficientCapacityException;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.book.CoalescedDeltas;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
 import com.samsonduncan.cryptorouter.model.normalised.Exchange;
-import com.samsonduncan.cryptorouter.model.normalised.NormalisedOrderBook;
-import com.samsonduncan.cryptorouter.model.normalised.NormalisedOrderBookEntry;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.PipelineLatency.Stage;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
 
-import java.math.BigDecimal;
-import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 /*
 Central service subscribing to data streams from connectors.
 Maintains a live, in memory consolidated order book for each trading pair.
 When update arrives, performs core merging logic to update internal order book
-exposes reactive stream (Flux) of consolidated order book
+
+Ingest is sharded: instruments are spread over a few shards (at most one per core),
+each with a pre-allocated ring buffer and one pinned writer thread that owns its instruments' books.
+Connectors copy their update into a claimed ring slot, so publishing allocates nothing.
+After applying updates the writer publishes an immutable, versioned BookSnapshot through a volatile reference.
+
+With conflation on, the writer works a whole ring batch at a time: updates from an exchange
+followed by a newer snapshot from it are skipped, an exchange's remaining deltas to a book are
+folded per side and price (see CoalescedDeltas) and applied once after its snapshot, so a level
+changed many times in the batch is only set to its last quantity, and each touched book
+publishes one snapshot at the end of the batch.
+A writer that falls behind therefore catches up in one pass instead of merging a snapshot per update.
+Readers (router, broadcast) take the latest snapshot and never lock or see a half applied update.
+Streaming readers can watch an instrument instead, the writer only offers the new snapshot
+to them when someone is watching and never waits on them.
+
+Updates carry when they arrived (and the exchange's own time, where the feed gives one),
+publish records the venue and parse latency and the writer the apply latency (see PipelineLatency).
+Snapshots carry when they were published, so broadcast and routing can record how old a book was.
+Logging from publish and the writers goes through LogSite, so a busy feed never waits on the console.
  */
 @Service
 public class OrderBookService {
 
-    //Maps key is price, value is map showing exchange and quantity
-    //Field for bids map (sorted from highest to lowest)
-    private final ConcurrentSkipListMap<BigDecimal, Map<Exchange, BigDecimal>> bids =
-            new ConcurrentSkipListMap<>(Comparator.reverseOrder());
-    //Asks map (from lowest to highest)
-    private final ConcurrentSkipListMap<BigDecimal, Map<Exchange, BigDecimal>> asks =
-            new ConcurrentSkipListMap<>();
-
-    //Tracks specific price levels from each exchange, for when updates arrive
-    private final Map<Exchange, Set<BigDecimal>> bidsExchange = new ConcurrentHashMap<>();
-    private final Map<Exchange, Set<BigDecimal>> asksExchange = new ConcurrentHashMap<>();
-
-    //Reactive sink (entry point from connectors)
-    private final Sinks.Many<NormalisedOrderBook> orderBookSink =
-            Sinks.many().multicast().onBackpressureBuffer();
-
-    public OrderBookService() {
-        //access sink's data stream
-        this.orderBookSink.asFlux()
-            //define actions to take for each item (normalisedBook)
-            //by subscribing to stream to process each item as it arrives
-                .subscribe(normalisedBook -> {
-                    //if book update is not empty, ignore
-                    if (normalisedBook.getBids().isEmpty() && normalisedBook.getAsks().isEmpty()) {
-                        return;
-                    }
+    //What publish does when a shard's ring is full
+    public enum OverflowPolicy {
+        //wait for the writer to free a slot, backpressure lands on the connector's socket thread
+        BLOCK,
+        //drop the update and count it, the exchange's book is stale until its next snapshot
+        DROP
+    }
+
+    //snapshots are rare and worth seeing, deltas only a sample of
+    private static final LogSite SNAPSHOT_APPLIED = LogSite.info("orderbook.snapshot.applied", 20, "bids", "asks");
+    private static final LogSite DELTA_APPLIED = LogSite.sampled("orderbook.delta.applied", 10_000, "bids", "asks");
+    private static final LogSite UNKNOWN_INSTRUMENT = LogSite.warn("orderbook.instrument.unknown", 1);
+    private static final LogSite RING_FULL = LogSite.warn("orderbook.ring.full", 1, "dropped");
+    private static final LogSite APPLY_FAILED = LogSite.error("orderbook.apply.failed", 1);
+
+    private final InstrumentRegistry instrumentRegistry;
+    private final OverflowPolicy overflowPolicy;
+    private final boolean conflate;
+    private final PipelineLatency latency;
+
+    //One book per instrument, keyed by canonical symbol, fixed at startup
+    private final Map<String, InstrumentBook> books = new HashMap<>();
+
+    private final Shard[] shards;
+
+    public OrderBookService(
+            InstrumentRegistry instrumentRegistry,
+            @Value("${orderbook.ingest.ring-size:4096}") int ringSize,
+            @Value("${orderbook.ingest.overflow-policy:BLOCK}") OverflowPolicy overflowPolicy,
+            @Value("${orderbook.ingest.conflate:true}") boolean conflate,
+            PipelineLatency latency) {
+        this.instrumentRegistry = instrumentRegistry;
+        this.overflowPolicy = overflowPolicy;
+        this.conflate = conflate;
+        this.latency = latency;
+
+        List<InstrumentSpec> instruments = instrumentRegistry.getInstruments();
+        int shardCount = Math.max(1, Math.min(instruments.size(), Runtime.getRuntime().availableProcessors()));
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, ringSize);
+        }
+
+        //round robin, each instrument is only ever written by its shard's thread
+        for (int i = 0; i < instruments.size(); i++) {
+            InstrumentSpec instrument = instruments.get(i);
+            books.put(instrument.symbol(), new InstrumentBook(
+                    instrument, shards[i % shardCount], latency.instrument(instrument.symbol())));
+        }
+
+        for (Shard shard : shards) {
+            shard.disruptor.start();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Shard shard : shards) {
+            shard.disruptor.halt();
+        }
+    }
+
+    /**
+     * Hands an update to its instrument's writer, safe to call from any connector thread
+     * The update is copied into the ring, so the caller can reuse it straight away
+     * @param instrument Instrument the levels belong to
+     * @param update Snapshot or delta from one exchange
+     * @return false if the ring was full and the update was dropped
+     */
+    public boolean publish(InstrumentSpec instrument, BookUpdate update) {
+        InstrumentBook book = books.get(instrument.symbol());
+        if (book == null) {
+            UNKNOWN_INSTRUMENT.log(update.getExchange(), instrument.symbol(), LogSite.NO_SEQUENCE, 0, 0);
+            return false;
+        }
 
-                    //determine source exchange from first entry
-                    //all entries in one update are from same exchange
-                    Exchange sourceExchange = normalisedBook.getBids().isEmpty() ?
-                            normalisedBook.getAsks().get(0).exchange() :
-                            normalisedBook.getBids().get(0).exchange();
+        //updates that didn't come off a socket, eg evictions, aren't timed and skip the clock read
+        long parsed = 0;
+        long received = update.getReceivedNanos();
+        if (received != 0) {
+            parsed = System.nanoTime();
+            book.latency.record(Stage.PARSE, update.getExchange(), parsed - received);
+            if (update.getEventMicros() != 0) {
+                long venueMicros = latency.epochMicros(received) - update.getEventMicros();
+                book.latency.record(Stage.VENUE, update.getExchange(), venueMicros * 1_000);
+            }
+        }
+
+        RingBuffer<IngestEvent> ring = book.shard.ring;
+        long sequence;
+        if (overflowPolicy == OverflowPolicy.BLOCK) {
+            sequence = ring.next();
+        } else {
+            try {
+                sequence = ring.tryNext();
+            } catch (InsufficientCapacityException e) {
+                long dropped = book.shard.dropped.incrementAndGet();
+                RING_FULL.log(update.getExchange(), instrument.symbol(), LogSite.NO_SEQUENCE, dropped, 0);
+                return false;
+            }
+        }
+
+        //the claimed slot must always be published, or the writer stalls on it
+        try {
+            IngestEvent event = ring.get(sequence);
+            event.book = book;
+            event.update.copyFrom(update);
+            event.parsedNanos = parsed;
+        } finally {
+            ring.publish(sequence);
+        }
+        return true;
+    }
+
+    //Latest consistent view of an instrument's book, no locking
+    public BookSnapshot getSnapshot(String instrument) {
+        return requireBook(instrument).snapshot;
+    }
+
+    /**
+     * The current snapshot, then each newer one as it is published
+     * Delivered off the writer thread, a subscriber that falls behind only gets the latest
+     * @param instrument Canonical symbol
+     * @return snapshots in version order, never completes
+     */
+    public Flux<BookSnapshot> watch(String instrument) {
+        InstrumentBook book = requireBook(instrument);
+        return Flux.defer(() -> {
+            //the current snapshot can race the first live one, so anything not newer is dropped
+            long[] lastVersion = {-1};
+            return Flux.merge(book.published.asFlux(), Mono.fromSupplier(() -> book.snapshot))
+                    .onBackpressureLatest()
+                    .publishOn(Schedulers.parallel(), 1)
+                    .filter(snapshot -> {
+                        if (snapshot.version() <= lastVersion[0]) {
+                            return false;
+                        }
+                        lastVersion[0] = snapshot.version();
+                        return true;
+                    });
+        });
+    }
 
-                    //call helper to apply update
-                    updateBook(normalisedBook, sourceExchange);
-                });
+    //Scales needed to convert book prices and quantities at the REST/JSON edge
+    public InstrumentSpec getInstrument(String instrument) {
+        return instrumentRegistry.require(instrument);
     }
 
-    //Method for updating books
-    public void processUpdate(NormalisedOrderBook bookUpdate) {
-        orderBookSink.tryEmitNext(bookUpdate);
+    public InstrumentRegistry getInstrumentRegistry() {
+        return instrumentRegistry;
     }
 
-    //Getters, returns immutable copy of current order books
-    public Map<BigDecimal, Map<Exchange, BigDecimal>> getBids() {
-        return Collections.unmodifiableMap(bids);
+    //where readers record how old the snapshots they used were
+    public PipelineLatency getLatency() {
+        return latency;
     }
 
-    public Map<BigDecimal, Map<Exchange, BigDecimal>> getAsks() {
-        return Collections.unmodifiableMap(asks);
+    //Updates dropped because a ring was full, only grows under OverflowPolicy.DROP
+    public long getDroppedUpdates() {
+        long dropped = 0;
+        for (Shard shard : shards) {
+            dropped += shard.dropped.get();
+        }
+        return dropped;
     }
 
+    //Updates that didn't get a snapshot of their own, skipped or folded into a later one by conflation
+    public long getConflatedUpdates() {
+        long conflated = 0;
+        for (Shard shard : shards) {
+            conflated += shard.conflated.get();
+        }
+        return conflated;
+    }
 
     /**
-     * Helper to update consolidated order book
-     * Removes all previous entries from a given exchange before adding new ones
-     * Synchronised to ensure only one thread can execute at a time
-     * @param newBook The new order book snapshot from a single exchange
-     * @param sourceExchange The exchange that sent this update
+     * Applies one update to its instrument's book and publishes a new snapshot
+     * Must only run on that instrument's writer thread, public so benchmarks can drive the writer directly
+     * @param instrument Instrument the levels belong to
+     * @param update Snapshot or delta update from one exchange
      */
-    private synchronized void updateBook(NormalisedOrderBook newBook, Exchange sourceExchange) {
-        //Bids update:
-        //remove all old bids from this exchange
-        Set<BigDecimal> oldBids = bidsExchange.getOrDefault(
-                sourceExchange,
-                new HashSet<>());
-
-        for (BigDecimal price : oldBids) {
-            //get inner map for price, from bids map
-            Map<Exchange, BigDecimal> innerMap = bids.get(price);
-            if (innerMap != null) {
-                innerMap.remove(sourceExchange);
-                //if innerMap now empty, remove entire price level
-                if (innerMap.isEmpty()) {
-                    bids.remove(price);
+    public void apply(InstrumentSpec instrument, BookUpdate update) {
+        InstrumentBook target = requireBook(instrument.symbol());
+        if (applyUpdate(target, update)) {
+            publishSnapshot(target);
+        }
+    }
+
+    //applies without publishing
+    private boolean applyUpdate(InstrumentBook target, BookUpdate update) {
+        //a snapshot replaces this exchange's levels, deltas only touch the levels they carry
+        //an empty snapshot takes the exchange out of the book, eg when its feed drops (see LocalBook.evict)
+        target.book.apply(update);
+        Exchange exchange = update.getExchange();
+        target.source = exchange;
+        //seq is the version of the snapshot the update goes into, levels are this exchange's
+        (update.isSnapshot() ? SNAPSHOT_APPLIED : DELTA_APPLIED).log(
+                exchange,
+                target.book.getInstrument().symbol(),
+                target.version + 1,
+                target.book.depth(exchange, BookSide.BID),
+                target.book.depth(exchange, BookSide.ASK));
+        return true;
+    }
+
+    //publish, readers pick this up on their next getSnapshot
+    private void publishSnapshot(InstrumentBook target) {
+        BookSnapshot snapshot = target.book.snapshot(++target.version, target.source, System.nanoTime());
+        target.snapshot = snapshot;
+        //only this writer emits, and best effort never blocks it
+        if (target.published.currentSubscriberCount() > 0) {
+            target.published.tryEmitNext(snapshot);
+        }
+    }
+
+    private InstrumentBook requireBook(String instrument) {
+        InstrumentBook book = books.get(instrument);
+        if (book == null) {
+            throw new IllegalArgumentException("Unknown instrument: " + instrument);
+        }
+        return book;
+    }
+
+    //One ring slot, pre-allocated and reused for the life of the ring
+    private static final class IngestEvent {
+        private InstrumentBook book;
+        private final BookUpdate update = new BookUpdate();
+        //System.nanoTime it was handed to the ring
+        private long parsedNanos;
+        //applied in the current conflated batch rather than skipped for a later snapshot
+        private boolean applied;
+        //a delta folded into its book's CoalescedDeltas, applied or not along with them
+        private boolean coalesced;
+    }
+
+    //A ring buffer and the one thread that drains it into its instruments' books
+    private final class Shard implements EventHandler<IngestEvent> {
+
+        private final Disruptor<IngestEvent> disruptor;
+        private final RingBuffer<IngestEvent> ring;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong conflated = new AtomicLong();
+
+        //events of the current batch, only used when conflating
+        //the ring doesn't reuse their slots until the batch has been handled
+        private final IngestEvent[] batch;
+        private int batchSize = 0;
+
+        private Shard(int index, int ringSize) {
+            //several connectors publish to the same ring, so multi producer
+            this.disruptor = new Disruptor<>(
+                    IngestEvent::new,
+                    ringSize,
+                    writerThreads(index),
+                    ProducerType.MULTI,
+                    new BlockingWaitStrategy());
+            this.disruptor.handleEventsWith(this);
+            this.ring = disruptor.getRingBuffer();
+            this.batch = new IngestEvent[conflate ? ringSize : 0];
+        }
+
+        @Override
+        public void onEvent(IngestEvent event, long sequence, boolean endOfBatch) {
+            if (!conflate) {
+                if (tryApply(event.book, event.update)) {
+                    publishSnapshot(event.book);
+                    recordApplied(event);
                 }
+                return;
+            }
+
+            batch[batchSize++] = event;
+            if (endOfBatch) {
+                drainBatch();
             }
         }
-        //reset tracking set for this exchange
-        bidsExchange.put(sourceExchange, new HashSet<>());
-
-
-        //add new bids to consolidated order book and track prices
-        for (NormalisedOrderBookEntry bid : newBook.getBids()) {
-            //get/create inner map for this price level
-            Map<Exchange, BigDecimal> innerMap = bids.computeIfAbsent(
-                    bid.price(),
-                    k -> new ConcurrentHashMap<>()
-            );
-            //add this exchanges quantity to inner map
-            innerMap.put(sourceExchange, bid.quantity());
-            //track contribution from exchange
-            bidsExchange.get(sourceExchange).add(bid.price());
-        }
-
-
-        //Asks update
-        //First remove old asks from this exchange
-        Set<BigDecimal> oldAsks = asksExchange.getOrDefault(
-                sourceExchange, new HashSet<>());
-        for (BigDecimal price : oldAsks) {
-            Map<Exchange, BigDecimal> innerMap = asks.get(price);
-            if (innerMap != null) {
-                innerMap.remove(sourceExchange);
-                if (innerMap.isEmpty()) {
-                    asks.remove(price);
+
+        private void drainBatch() {
+            //last snapshot in the batch from each exchange, per book
+            for (int i = 0; i < batchSize; i++) {
+                IngestEvent event = batch[i];
+                if (event.update.isSnapshot()) {
+                    event.book.lastSnapshot[event.update.getExchange().ordinal()] = i;
+                }
+            }
+
+            //anything replaced by a later snapshot is skipped, the last snapshot is applied
+            //and the deltas after it are folded per exchange, side and price
+            for (int i = 0; i < batchSize; i++) {
+                IngestEvent event = batch[i];
+                InstrumentBook book = event.book;
+                int exchange = event.update.getExchange().ordinal();
+                event.applied = false;
+                event.coalesced = false;
+                if (book.lastSnapshot[exchange] > i) {
+                    continue;
+                }
+                book.batchSource = event.update.getExchange();
+                if (event.update.isSnapshot()) {
+                    event.applied = tryApply(book, event.update);
+                    book.dirty |= event.applied;
+                } else {
+                    book.deltas[exchange].add(event.update);
+                    event.coalesced = true;
                 }
             }
+
+            //each exchange's folded deltas go in once, after its snapshot
+            for (int i = 0; i < batchSize; i++) {
+                InstrumentBook book = batch[i].book;
+                for (int exchange = 0; exchange < book.deltas.length; exchange++) {
+                    CoalescedDeltas deltas = book.deltas[exchange];
+                    if (deltas.size() > 0) {
+                        book.deltasApplied[exchange] = tryApply(book, deltas.update());
+                        book.dirty |= book.deltasApplied[exchange];
+                        deltas.clear();
+                    }
+                }
+            }
+
+            //one snapshot per touched book, carrying the exchange of its last update in the batch
+            int published = 0;
+            for (int i = 0; i < batchSize; i++) {
+                InstrumentBook book = batch[i].book;
+                book.lastSnapshot[batch[i].update.getExchange().ordinal()] = -1;
+                if (book.dirty) {
+                    book.source = book.batchSource;
+                    publishSnapshot(book);
+                    book.dirty = false;
+                    published++;
+                }
+            }
+
+            //timed once every touched book is out
+            for (int i = 0; i < batchSize; i++) {
+                IngestEvent event = batch[i];
+                if (event.coalesced) {
+                    event.applied = event.book.deltasApplied[event.update.getExchange().ordinal()];
+                }
+                if (event.applied) {
+                    recordApplied(event);
+                }
+                batch[i] = null;
+            }
+
+            if (batchSize > published) {
+                conflated.addAndGet(batchSize - published);
+            }
+            batchSize = 0;
+        }
+
+        //ring to the snapshot holding the update, skipped for updates that weren't timed on publish
+        private void recordApplied(IngestEvent event) {
+            if (event.update.getReceivedNanos() != 0) {
+                event.book.latency.record(Stage.APPLY, event.update.getExchange(),
+                        event.book.snapshot.publishedNanos() - event.parsedNanos);
+            }
         }
-        asksExchange.put(sourceExchange, new HashSet<>());
 
-        //add new asks
-        for (NormalisedOrderBookEntry ask : newBook.getAsks()) {
-            Map<Exchange, BigDecimal> innerMap = asks.computeIfAbsent(
-                    ask.price(), k -> new ConcurrentHashMap<>());
-            innerMap.put(sourceExchange, ask.quantity());
-            asksExchange.get(sourceExchange).add(ask.price());
+        private boolean tryApply(InstrumentBook book, BookUpdate update) {
+            try {
+                return applyUpdate(book, update);
+            } catch (RuntimeException e) {
+                //one bad update must not stop the shard
+                APPLY_FAILED.log(update.getExchange(), book.book.getInstrument().symbol(),
+                        book.version + 1, null, e);
+                return false;
+            }
         }
-        System.out.println("Book updated [" + sourceExchange + "]: " + bids.size() + " Bid Levels, " + asks.size() + " Ask Levels");
     }
 
-}
+    //the disruptor asks for one thread per handler, so one per shard
+    private static ThreadFactory writerThreads(int shard) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, "order-book-writer-" + shard);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //State for one instrument, book and version are only touched by its shard's writer
+    private static final class InstrumentBook {
+
+        private final ConsolidatedBook book;
+        private final Shard shard;
+        private final PipelineLatency.InstrumentLatency latency;
+
+        //exchange of the last update applied, carried on the next snapshot
+        private Exchange source;
+
+        //Latest published snapshot, replaced after every applied update or batch
+        private volatile BookSnapshot snapshot;
+        private long version = 0;
+
+        //the same snapshots pushed to watchers
+        private final Sinks.Many<BookSnapshot> published = Sinks.many().multicast().directBestEffort();
 
+        //conflation state for the batch being drained, per exchange ordinal: index of its last snapshot,
+        //its deltas after that folded together and whether they went in
+        private final int[] lastSnapshot = new int[Exchange.values().length];
+        private final CoalescedDeltas[] deltas = new CoalescedDeltas[Exchange.values().length];
+        private final boolean[] deltasApplied = new boolean[Exchange.values().length];
+        private Exchange batchSource;
+        private boolean dirty = false;
+
+        private InstrumentBook(InstrumentSpec instrument, Shard shard, PipelineLatency.InstrumentLatency latency) {
+            this.book = new ConsolidatedBook(instrument);
+            this.shard = shard;
+            this.latency = latency;
+            this.snapshot = BookSnapshot.empty(instrument);
+            Arrays.fill(lastSnapshot, -1);
+            for (Exchange exchange : Exchange.values()) {
+                deltas[exchange.ordinal()] = new CoalescedDeltas(exchange);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+Latency of each stage a book update goes through, per stage, exchange and instrument:
+VENUE      exchange's event time to the message arriving on our socket (wall clocks, so includes skew)
+PARSE      socket receipt to the update being handed to its ingest ring
+APPLY      handed to the ring to the book's next snapshot being published
+BROADCAST  snapshot published to the feed message that carries it being queued for sessions
+ROUTE      snapshot published to a route or quote being priced against it, ie how old the book was
+
+Each series is an HdrHistogram Recorder, recording is wait free and allocates nothing,
+so the connector, writer and sender threads only pay a nanoTime and an array increment.
+Every window the recorders are swapped for interval histograms and their percentiles kept,
+MetricsConfig reads those when scraped. Values are nanoseconds at 2 significant digits,
+anything over a minute is recorded as a minute and clock skew putting a venue's event
+time after our receipt records 1ns.
+ */
+@Service
+public class PipelineLatency {
+
+    public enum Stage {
+        VENUE,
+        PARSE,
+        APPLY,
+        BROADCAST,
+        ROUTE
+    }
+
+    //percentiles kept from each window, 100 is the max
+    public static final double[] PERCENTILES = {50, 99, 99.9, 100};
+
+    private static final long HIGHEST_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    //canonical symbol to its series
+    private final Map<String, InstrumentLatency> instruments = new HashMap<>();
+    private final List<Series> series = new ArrayList<>();
+
+    //wall clock minus nanoTime, nanoTime stamps are turned into epoch time with it, reset every window
+    private volatile long epochOffsetNanos;
+
+    public PipelineLatency(InstrumentRegistry instrumentRegistry) {
+        for (InstrumentSpec instrument : instrumentRegistry.getInstruments()) {
+            InstrumentLatency latency = new InstrumentLatency(instrument.symbol());
+            for (Exchange exchange : Exchange.values()) {
+                if (instrumentRegistry.getInstruments(exchange).contains(instrument)) {
+                    for (Stage stage : Stage.values()) {
+                        Series s = new Series(stage, exchange, instrument.symbol());
+                        latency.series[stage.ordinal()][exchange.ordinal()] = s;
+                        series.add(s);
+                    }
+                }
+            }
+            instruments.put(instrument.symbol(), latency);
+        }
+        calibrate();
+    }
+
+    //the series of one instrument, callers on a hot path keep hold of it rather than look it up each time
+    public InstrumentLatency instrument(String symbol) {
+        InstrumentLatency latency = instruments.get(symbol);
+        if (latency == null) {
+            throw new IllegalArgumentException("Unknown instrument: " + symbol);
+        }
+        return latency;
+    }
+
+    //every stage, exchange and instrument, fixed at startup
+    public List<Series> series() {
+        return series;
+    }
+
+    //epoch microseconds at a System.nanoTime stamp
+    public long epochMicros(long nanoTime) {
+        return (nanoTime + epochOffsetNanos) / 1_000;
+    }
+
+    //ends the window: recorders start afresh and the window's percentiles become what is reported
+    @Scheduled(fixedRateString = "${latency.window-ms:10000}")
+    public void roll() {
+        for (Series s : series) {
+            s.roll();
+        }
+        calibrate();
+    }
+
+    private void calibrate() {
+        Instant now = Instant.now();
+        epochOffsetNanos = now.getEpochSecond() * 1_000_000_000L + now.getNano() - System.nanoTime();
+    }
+
+    //One instrument's series, indexed by stage then exchange
+    public static final class InstrumentLatency {
+
+        private final String symbol;
+        private final Series[][] series = new Series[Stage.values().length][Exchange.values().length];
+
+        private InstrumentLatency(String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+
+        //safe from any thread, dropped if the exchange doesn't list the instrument
+        public void record(Stage stage, Exchange exchange, long nanos) {
+            if (exchange == null) {
+                return;
+            }
+            Series s = series[stage.ordinal()][exchange.ordinal()];
+            if (s != null) {
+                s.record(nanos);
+            }
+        }
+    }
+
+    //One stage for one exchange and instrument
+    public static final class Series {
+
+        private final Stage stage;
+        private final Exchange exchange;
+        private final String instrument;
+        private final Recorder recorder = new Recorder(1, HIGHEST_NANOS, 2);
+
+        //only the timer thread touches this, handed back to the recorder every window
+        private Histogram interval;
+
+        //PERCENTILES then the count, from the last full window
+        private volatile long[] last = new long[PERCENTILES.length + 1];
+
+        private Series(Stage stage, Exchange exchange, String instrument) {
+            this.stage = stage;
+            this.exchange = exchange;
+            this.instrument = instrument;
+        }
+
+        public Stage stage() {
+            return stage;
+        }
+
+        public Exchange exchange() {
+            return exchange;
+        }
+
+        public String instrument() {
+            return instrument;
+        }
+
+        void record(long nanos) {
+            recorder.recordValue(Math.max(1, Math.min(nanos, HIGHEST_NANOS)));
+        }
+
+        private void roll() {
+            interval = recorder.getIntervalHistogram(interval);
+            long[] values = new long[PERCENTILES.length + 1];
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                values[i] = interval.getValueAtPercentile(PERCENTILES[i]);
+            }
+            values[PERCENTILES.length] = interval.getTotalCount();
+            last = values;
+        }
+
+        //nanoseconds at PERCENTILES[index] over the last window, 0 if nothing was recorded
+        public long percentile(int index) {
+            return last[index];
+        }
+
+        //samples in the last window
+        public long count() {
+            return last[PERCENTILES.length];
+        }
+    }
+}
@@ -1,109 +1,161 @@
 package com.samsonduncan.cryptorouter.services;
 
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
 import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
 import com.samsonduncan.cryptorouter.routing.ExecutionLeg;
 import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.FillCost;
 import com.samsonduncan.cryptorouter.routing.OrderSide;
+import com.samsonduncan.cryptorouter.routing.Quote;
+import com.samsonduncan.cryptorouter.routing.RouteRequest;
+import com.samsonduncan.cryptorouter.routing.RouteUpdate;
+import com.samsonduncan.cryptorouter.routing.RoutingOptimiser;
+import com.samsonduncan.cryptorouter.services.PipelineLatency.Stage;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.math.BigDecimal;
-import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 
 /*
 Core routing logic
 Responsible for taking consolidated data from OrderBookService and using
 it to calculate the most optimal trade execution plan
+
+How an order is split across venues is up to the RoutingOptimiser (see RoutingConfig).
+Quotes are priced straight from the book's running totals, O(log n) whatever the size.
+Batches route every order against one snapshot, optionally taking each plan's legs
+out of the book before the next order is routed.
+Streamed routes are recomputed for each new snapshot and only sent on when the plan changes.
+Every route and quote records how old its snapshot was once priced (PipelineLatency ROUTE).
  */
 @Service
 public class RoutingEngine {
 
+    private static final int EXCHANGES = Exchange.values().length;
+
     private final OrderBookService orderBookService;
+    private final RoutingOptimiser optimiser;
 
-    public RoutingEngine(OrderBookService orderBookService) {
+    public RoutingEngine(OrderBookService orderBookService, RoutingOptimiser optimiser) {
         this.orderBookService = orderBookService;
+        this.optimiser = optimiser;
+    }
+
+    //Scales of an instrument routes can be asked for, throws IllegalArgumentException for an unknown one
+    public InstrumentSpec getInstrument(String instrumentSymbol) {
+        return orderBookService.getInstrument(instrumentSymbol);
     }
 
     //Main algorithm for finding routing positions
     public ExecutionPlan calculateRoute(
-            OrderSide side, BigDecimal totalQuantity) {
-
-        //variables
-        List<ExecutionLeg> legs = new ArrayList<>();
-        BigDecimal quantityLeft = totalQuantity;
-        //used to calculate final VWAP:
-        BigDecimal totalCost = BigDecimal.ZERO;
-        BigDecimal totalQuantityFilled = BigDecimal.ZERO;
-
-        Map<BigDecimal, Map<Exchange, BigDecimal>> bookToWalk;
-
-        //select the correct book
-        if (side.equals(OrderSide.BUY)) {
-            //assign asks map to bookToWalk
-            bookToWalk = orderBookService.getAsks();
-        } else {
-            //assign bids map to bookToWalk
-            bookToWalk = orderBookService.getBids();
-        }
+            String instrumentSymbol, OrderSide side, BigDecimal totalQuantity) {
+
+        //one consistent view of the instrument's book for the whole solve
+        BookSnapshot snapshot = orderBookService.getSnapshot(instrumentSymbol);
+        long quantity = snapshot.instrument().quantityFromDecimal(totalQuantity);
+        ExecutionPlan plan = optimiser.route(snapshot, side, quantity);
+        recordRouted(snapshot);
+        return plan;
+    }
 
-        //walk the book loop
-        //outer loop starts here
-        for (Map.Entry<BigDecimal, Map<Exchange, BigDecimal>> priceLevelEntry : bookToWalk.entrySet()) {
-            BigDecimal price = priceLevelEntry.getKey();
-            Map<Exchange, BigDecimal> liquidityAtPrice = priceLevelEntry.getValue();
-
-            //inner loop (exchanges at this price)
-            for (Map.Entry<Exchange, BigDecimal> exchangeEntry : liquidityAtPrice.entrySet()) {
-                Exchange exchange = exchangeEntry.getKey();
-                BigDecimal availableQuantity = exchangeEntry.getValue();
-
-                //fill logic
-                //determine how much to take; min of what's needed vs what's available
-                BigDecimal quantityToTake = quantityLeft.min(availableQuantity);
-
-                //if taking a non-zero amount, record it
-                if (quantityToTake.compareTo(BigDecimal.ZERO) > 0) {
-                    //create new leg for execution plan
-                    ExecutionLeg leg = new ExecutionLeg(exchange, quantityToTake, price);
-                    legs.add(leg); //add to list of legs
-
-                    //update tracked vars
-                    quantityLeft = quantityLeft.subtract(quantityToTake); //decrease remaining quantity
-                    totalQuantityFilled = totalQuantityFilled.add(quantityToTake); //increase total filled
-                    totalCost = totalCost.add(quantityToTake.multiply(price)); //add cost of this leg
-
-                    //check for completion inside inner loop
-                    //if filled entire order, stop immediately
-                    if (quantityLeft.compareTo(BigDecimal.ZERO) <= 0) {
-                        break; //exit inner exchange loop
-                    }
-                }
-            }
-            //end of inner loop
-            //now check for completion of outer loop
-            //after checking all exchanges at price level, check again if done
-            if (quantityLeft.compareTo(BigDecimal.ZERO) <= 0) {
-                break;
+    /**
+     * Keeps a route up to date as the book moves
+     * @return the plan against the current book, then a new one each time a book change alters it
+     */
+    public Flux<RouteUpdate> streamRoute(String instrumentSymbol, OrderSide side, BigDecimal totalQuantity) {
+        long quantity = orderBookService.getInstrument(instrumentSymbol).quantityFromDecimal(totalQuantity);
+        return orderBookService.watch(instrumentSymbol)
+                .map(snapshot -> {
+                    ExecutionPlan plan = optimiser.route(snapshot, side, quantity);
+                    recordRouted(snapshot);
+                    return new RouteUpdate(snapshot.version(), plan);
+                })
+                //most book changes are away from the levels the order reaches
+                .distinctUntilChanged(RouteUpdate::plan);
+    }
+
+    /**
+     * Routes many orders against a single snapshot of the instrument's book
+     * @param consumeDepth if true each order sees the book less the legs of the orders before it
+     * @return one plan per order, in order, with the version of the snapshot used
+     */
+    public BatchExecutionPlan calculateRoutes(
+            String instrumentSymbol, List<RouteRequest> orders, boolean consumeDepth) {
+
+        BookSnapshot snapshot = orderBookService.getSnapshot(instrumentSymbol);
+        InstrumentSpec instrument = snapshot.instrument();
+        BookSnapshot remaining = snapshot;
+
+        List<ExecutionPlan> plans = new ArrayList<>(orders.size());
+        for (int i = 0; i < orders.size(); i++) {
+            RouteRequest order = orders.get(i);
+            long quantity = instrument.quantityFromDecimal(order.quantity());
+            ExecutionPlan plan = optimiser.route(remaining, order.side(), quantity);
+            plans.add(plan);
+            //nothing after the last order needs what it left
+            if (consumeDepth && !plan.legs().isEmpty() && i < orders.size() - 1) {
+                remaining = consume(remaining, order.side(), plan);
             }
         }
-        //end of outer loop
-        //finalise and return plan
-        //handle insufficient liquidity
-        String notes = "Order filled successfully.";
-        if (quantityLeft.compareTo(BigDecimal.ZERO) > 0) {
-            notes = "Could not fill full quantity. " + quantityLeft + "remaining.";
+        recordRouted(snapshot);
+        return new BatchExecutionPlan(snapshot.version(), consumeDepth, plans);
+    }
+
+    //published to priced, the empty book before any update isn't timed
+    private void recordRouted(BookSnapshot snapshot) {
+        if (snapshot.publishedNanos() != 0) {
+            orderBookService.getLatency().instrument(snapshot.instrument().symbol())
+                    .record(Stage.ROUTE, snapshot.source(), System.nanoTime() - snapshot.publishedNanos());
         }
+    }
 
-        //calculate VWAP
-        BigDecimal vwap = BigDecimal.ZERO;
-        if (totalQuantityFilled.compareTo(BigDecimal.ZERO) > 0) {
-            vwap = totalCost.divide(totalQuantityFilled, MathContext.DECIMAL64);
+    //the book with a plan's legs taken off the side it walked, version unchanged
+    private static BookSnapshot consume(BookSnapshot snapshot, OrderSide side, ExecutionPlan plan) {
+        InstrumentSpec instrument = snapshot.instrument();
+        BookSideSnapshot walked = side == OrderSide.BUY ? snapshot.asks() : snapshot.bids();
+
+        //an optimiser may list legs by venue rather than by price, and several legs can share a level,
+        //so find each leg's level and take from as deep as the deepest one reached
+        List<ExecutionLeg> legs = plan.legs();
+        int[] legLevels = new int[legs.size()];
+        int levels = 0;
+        for (int i = 0; i < legs.size(); i++) {
+            int level = walked.levelOf(instrument.priceFromDecimal(legs.get(i).price()));
+            if (level < 0) {
+                throw new IllegalStateException("Leg at " + legs.get(i).price() + " isn't a level of the book it was routed on");
+            }
+            legLevels[i] = level;
+            levels = Math.max(levels, level + 1);
+        }
+        long[] taken = new long[levels * EXCHANGES];
+        for (int i = 0; i < legs.size(); i++) {
+            ExecutionLeg leg = legs.get(i);
+            taken[legLevels[i] * EXCHANGES + leg.exchange().ordinal()] += instrument.quantityFromDecimal(leg.quantity());
         }
 
-        //return the plan
-        return new ExecutionPlan(legs, vwap, notes);
+        BookSideSnapshot left = walked.minus(taken, levels);
+        return side == OrderSide.BUY
+                ? new BookSnapshot(snapshot.version(), instrument, snapshot.bids(), left, snapshot.source(), snapshot.publishedNanos())
+                : new BookSnapshot(snapshot.version(), instrument, left, snapshot.asks(), snapshot.source(), snapshot.publishedNanos());
+    }
+
+    //Prices a fill without building legs, O(log n) in the depth of the book
+    public Quote quote(String instrumentSymbol, OrderSide side, BigDecimal totalQuantity) {
+        BookSnapshot snapshot = orderBookService.getSnapshot(instrumentSymbol);
+        InstrumentSpec instrument = snapshot.instrument();
+        BookSideSnapshot bookToWalk = side == OrderSide.BUY ? snapshot.asks() : snapshot.bids();
+
+        FillCost fill = FillCost.of(bookToWalk, instrument.quantityFromDecimal(totalQuantity));
+        BigDecimal worstPrice = fill.quantity() > 0
+                ? instrument.priceToDecimal(bookToWalk.price(fill.lastLevel()))
+                : BigDecimal.ZERO;
+        recordRouted(snapshot);
+        return new Quote(instrument.quantityToDecimal(fill.quantity()), fill.vwap(instrument), worstPrice, snapshot.version());
     }
 }
@@ -0,0 +1,92 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Level changes between two snapshots of one side, what the feed sends as a delta
+final class BookDiff {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+
+    //quantity is the exchange's new quantity at the price, 0 if it left the level
+    //exchange is null for aggregated changes, quantity is then the level's total
+    record LevelChange(long price, Exchange exchange, long quantity) {}
+
+    private BookDiff() {
+    }
+
+    //every level, each exchange's quantity
+    static List<LevelChange> changes(BookSideSnapshot previous, BookSideSnapshot current) {
+        return changes(previous, current, Integer.MAX_VALUE, false);
+    }
+
+    /**
+     * Walks both sides best first in one pass, O(depth)
+     * A level pushed out of the top depth by a better one counts as removed
+     * @param depth levels from the best to compare
+     * @param aggregated compare each level's total rather than each exchange's quantity
+     * @return changes best price first, empty if the side looks the same
+     */
+    static List<LevelChange> changes(BookSideSnapshot previous, BookSideSnapshot current, int depth, boolean aggregated) {
+        List<LevelChange> changes = new ArrayList<>();
+        boolean bids = current.getSide() == BookSide.BID;
+        int previousDepth = Math.min(depth, previous.depth());
+        int currentDepth = Math.min(depth, current.depth());
+        int i = 0;
+        int j = 0;
+        while (i < previousDepth || j < currentDepth) {
+            if (j == currentDepth || (i < previousDepth
+                    && isBetter(bids, previous.price(i), current.price(j)))) {
+                //level gone
+                if (aggregated) {
+                    changes.add(new LevelChange(previous.price(i), null, 0));
+                } else {
+                    for (Exchange exchange : EXCHANGES) {
+                        if (previous.quantity(i, exchange) > 0) {
+                            changes.add(new LevelChange(previous.price(i), exchange, 0));
+                        }
+                    }
+                }
+                i++;
+            } else if (i == previousDepth || previous.price(i) != current.price(j)) {
+                //new level
+                if (aggregated) {
+                    changes.add(new LevelChange(current.price(j), null, current.totalQuantity(j)));
+                } else {
+                    for (Exchange exchange : EXCHANGES) {
+                        if (current.quantity(j, exchange) > 0) {
+                            changes.add(new LevelChange(current.price(j), exchange, current.quantity(j, exchange)));
+                        }
+                    }
+                }
+                j++;
+            } else {
+                //same price, compare the total or each exchange's share
+                if (aggregated) {
+                    long total = current.totalQuantity(j);
+                    if (previous.totalQuantity(i) != total) {
+                        changes.add(new LevelChange(current.price(j), null, total));
+                    }
+                } else {
+                    for (Exchange exchange : EXCHANGES) {
+                        long quantity = current.quantity(j, exchange);
+                        if (previous.quantity(i, exchange) != quantity) {
+                            changes.add(new LevelChange(current.price(j), exchange, quantity));
+                        }
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+        return changes;
+    }
+
+    private static boolean isBetter(boolean bids, long price, long than) {
+        return bids ? price > than : price < than;
+    }
+}
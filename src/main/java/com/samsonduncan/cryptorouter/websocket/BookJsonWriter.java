@@ -0,0 +1,122 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.model.normalised.FixedPoint;
+import org.springframework.web.socket.TextMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+Builds feed JSON straight from scaled longs into a byte buffer that is kept between messages.
+Only the finished payload is allocated, no maps, BigDecimals or Jackson tree in between.
+Everything written is ASCII (field names, symbols, exchange names and digits), so no escaping is done.
+Not thread safe, each writer belongs to one thread or is used under a lock.
+ */
+final class BookJsonWriter {
+
+    private byte[] bytes;
+    private int length;
+
+    BookJsonWriter(int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    BookJsonWriter reset() {
+        length = 0;
+        return this;
+    }
+
+    //literal JSON, eg "{\"type\":"
+    BookJsonWriter raw(String ascii) {
+        int size = ascii.length();
+        ensure(size);
+        for (int i = 0; i < size; i++) {
+            bytes[length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    BookJsonWriter raw(char c) {
+        ensure(1);
+        bytes[length++] = (byte) c;
+        return this;
+    }
+
+    //"text", for symbols and enum names that never need escaping
+    BookJsonWriter string(String ascii) {
+        return raw('"').raw(ascii).raw('"');
+    }
+
+    BookJsonWriter number(long value) {
+        //19 digits and a sign
+        ensure(20);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        digits(value);
+        return this;
+    }
+
+    //a scaled long as a plain decimal with all its places, eg 5000001 at scale 2 is 50000.01
+    BookJsonWriter decimal(long value, int scale) {
+        //19 digits, a sign, a point and a leading zero
+        ensure(22);
+        if (value < 0) {
+            bytes[length++] = '-';
+            value = -value;
+        }
+        long unit = FixedPoint.pow10(scale);
+        digits(value / unit);
+        if (scale > 0) {
+            bytes[length++] = '.';
+            long fraction = value % unit;
+            for (int i = length + scale - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += scale;
+        }
+        return this;
+    }
+
+    //drops a trailing comma left by the last element of an array or object, if there is one
+    BookJsonWriter endElements() {
+        if (length > 0 && bytes[length - 1] == ',') {
+            length--;
+        }
+        return this;
+    }
+
+    int length() {
+        return length;
+    }
+
+    //copies what's been written into a message, the buffer can then be reused
+    TextMessage toMessage() {
+        return new TextMessage(new String(bytes, 0, length, StandardCharsets.US_ASCII));
+    }
+
+    private void digits(long value) {
+        int end = length + digitCount(value);
+        for (int i = end - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < 19 && value >= FixedPoint.pow10(count)) {
+            count++;
+        }
+        return count;
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
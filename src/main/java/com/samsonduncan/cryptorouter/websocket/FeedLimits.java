@@ -0,0 +1,8 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+//Per session limits on the order book feed, see SessionSender
+record FeedLimits(
+        long sendTimeLimitNanos, //one send taking longer closes the session
+        long bufferSizeLimit, //bytes queued before the backlog is dropped for fresh snapshots
+        int maxOverflows //backlogs dropped without catching up before the session is closed
+) {}
@@ -0,0 +1,23 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+
+//What a subscriber wants of one instrument's book, sessions with equal shapes share one encoded feed
+record FeedShape(
+        String instrument,
+        int depth, //levels per side, Integer.MAX_VALUE for the whole book
+        BookSide side, //null for both sides
+        boolean aggregated, //one total per price instead of each exchange's quantity
+        int everyTicks, //broadcast intervals between deltas, 1 for every one
+        boolean binary //WireFormat messages instead of JSON, fixed by the session's subprotocol
+) {
+
+    //what a client gets until it subscribes to something narrower
+    static FeedShape full(String instrument, boolean binary) {
+        return new FeedShape(instrument, Integer.MAX_VALUE, null, false, 1, binary);
+    }
+
+    boolean includes(BookSide bookSide) {
+        return side == null || side == bookSide;
+    }
+}
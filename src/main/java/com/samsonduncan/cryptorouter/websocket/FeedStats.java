@@ -0,0 +1,13 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import java.util.concurrent.atomic.LongAdder;
+
+//Counters shared by every session's sender, read by the metrics binder
+final class FeedStats {
+
+    final LongAdder sent = new LongAdder();
+    final LongAdder sendNanos = new LongAdder();
+    final LongAdder dropped = new LongAdder(); //messages thrown away with a backlog
+    final LongAdder overflows = new LongAdder();
+    final LongAdder evicted = new LongAdder();
+}
@@ -1,74 +1,328 @@
 package com.samsonduncan.cryptorouter.websocket;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
 import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency.Stage;
+import com.samsonduncan.cryptorouter.wire.WireFormat;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/*
+Order book feed on /ws/orderbook, JSON text.
+
+On connect a client is subscribed to the whole book of every instrument and gets a snapshot of each,
+then deltas of only the levels that changed:
+  {"type":"snapshot","instrument":"BTC-USD","seq":41,"bids":{price:{exchange:qty}},"asks":{...}}
+  {"type":"delta","instrument":"BTC-USD","seq":42,"bids":[[price,exchange,qty]],"asks":[...]}
+A delta's quantity replaces that exchange's quantity at the price, 0 removes it.
+Deltas that arrive before a client's first snapshot of the instrument are ignored.
+
+A client can narrow what it gets per instrument, replacing its current subscription to it:
+  {"type":"subscribe","instrument":"BTC-USD","depth":10,"side":"bid","aggregation":"total","intervalMs":500}
+depth, side (bid, ask or both), aggregation (exchange or total) and intervalMs are all optional.
+Aggregated levels are {price:qty} in snapshots and [price,qty] in deltas. A level pushed out of
+the top depth is sent as removed. {"type":"unsubscribe","instrument":"BTC-USD"} stops an instrument.
+Each subscribe is answered with a snapshot, bad requests (malformed JSON included) with
+{"type":"error","message":...}, and the session stays open.
+
+seq counts deltas per subscription. A client applies a delta whose seq is one more than the last
+it applied, ignores any at or below its snapshot's seq, and on a gap sends
+  {"type":"resync","instrument":"BTC-USD"}
+to get a fresh snapshot. Snapshots are of the book the last delta left, so they line up with seq.
+
+Deltas go out at most once per orderbook.broadcast.interval-ms (or the subscription's intervalMs,
+rounded to a whole number of those), everything that changed within the window is conflated into one,
+and nothing is sent when what a subscription shows hasn't changed.
+Sessions subscribed with the same shape share one feed, encoded once per tick.
+Each feed message records how old its snapshot was when queued (PipelineLatency BROADCAST).
+
+A client that asks for the WireFormat.BINARY_SUBPROTOCOL gets its snapshots and deltas as binary
+messages in WireFormat's fixed layout instead, with the same seq rules. Its requests and any
+error replies stay JSON text.
+
+Nothing here sends directly, messages are queued on each session's SessionSender and sent
+from ExecutionModel's feed sender threads, so a slow client only delays itself. Its limits come from
+orderbook.broadcast.send-time-limit-ms, buffer-size-limit and max-overflows. Sends still blocked past
+the time limit are found every broadcast interval and their sessions closed.
+ */
 @Component
-public class OrderBookWebSocketHandler extends TextWebSocketHandler {
+public class OrderBookWebSocketHandler extends TextWebSocketHandler implements SubProtocolCapable {
+
+    private static final LogSite SESSION_OPENED = LogSite.info("orderbook.feed.session.opened", 20, "sessions");
+    private static final LogSite SESSION_CLOSED = LogSite.info("orderbook.feed.session.closed", 20, "sessions");
 
     private final OrderBookService orderBookService;
-    private final List<WebSocketSession> sessionList = new CopyOnWriteArrayList<>();
     private final ObjectMapper objectMapper;
+    private final long intervalMs;
+    private final FeedLimits limits;
+    private final FeedStats stats = new FeedStats();
+    private final ExecutorService senderExecutor;
+
+    //one feed per distinct shape with at least one session, changed under its own lock
+    private final Map<FeedShape, ShapeFeed> feeds = new ConcurrentHashMap<>();
+
+    //session id -> instrument -> the feed it gets
+    private final Map<String, Map<String, ShapeFeed>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<String, SessionSender> senders = new ConcurrentHashMap<>();
 
-    public OrderBookWebSocketHandler(OrderBookService orderBookService, ObjectMapper objectMapper) {
+    public OrderBookWebSocketHandler(
+            OrderBookService orderBookService,
+            ObjectMapper objectMapper,
+            ExecutionModel executionModel,
+            @Value("${orderbook.broadcast.interval-ms:100}") long intervalMs,
+            @Value("${orderbook.broadcast.send-time-limit-ms:5000}") long sendTimeLimitMs,
+            @Value("${orderbook.broadcast.buffer-size-limit:1048576}") long bufferSizeLimit,
+            @Value("${orderbook.broadcast.max-overflows:5}") int maxOverflows) {
         this.orderBookService = orderBookService;
         this.objectMapper = objectMapper;
+        this.senderExecutor = executionModel.feedSenders();
+        this.intervalMs = intervalMs;
+        this.limits = new FeedLimits(TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs), bufferSizeLimit, maxOverflows);
+    }
+
+    //a client without a subprotocol gets JSON
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(WireFormat.JSON_SUBPROTOCOL, WireFormat.BINARY_SUBPROTOCOL);
     }
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
         super.afterConnectionEstablished(session);
-        sessionList.add(session);
-        System.out.println("New client connected.");
+        Map<String, ShapeFeed> subscribed = new ConcurrentHashMap<>();
+        SessionSender sender = new SessionSender(
+                session, senderExecutor, () -> snapshots(subscribed), limits, stats);
+        subscriptions.put(session.getId(), subscribed);
+        senders.put(session.getId(), sender);
+        boolean binary = isBinary(session);
+        for (InstrumentSpec instrument : orderBookService.getInstrumentRegistry().getInstruments()) {
+            subscribe(sender, FeedShape.full(instrument.symbol(), binary));
+        }
+        SESSION_OPENED.log(null, null, LogSite.NO_SEQUENCE, senders.size(), 0, session.getId(), null);
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
         super.afterConnectionClosed(session, status);
-        sessionList.remove(session);
-        System.out.println("Client disconnected.");
+        SessionSender sender = senders.remove(session.getId());
+        Map<String, ShapeFeed> subscribed = subscriptions.remove(session.getId());
+        if (sender != null) {
+            sender.close();
+            for (String instrument : subscribed.keySet()) {
+                unsubscribe(sender, subscribed, instrument);
+            }
+        }
+        SESSION_CLOSED.log(null, null, LogSite.NO_SEQUENCE, senders.size(), 0, session.getId() + " " + status, null);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        SessionSender sender = senders.get(session.getId());
+        Map<String, ShapeFeed> subscribed = subscriptions.get(session.getId());
+        if (sender == null || subscribed == null) {
+            return;
+        }
+        //a bad request is answered, thrown it would close the session and drop its subscriptions
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(message.getPayload());
+        } catch (JsonProcessingException e) {
+            sendError(sender, "Malformed request");
+            return;
+        }
+        String type = request.path("type").asText();
+        if (!type.equals("subscribe") && !type.equals("unsubscribe") && !type.equals("resync")) {
+            sendError(sender, "Unknown request type: " + type);
+            return;
+        }
+        String instrument = request.path("instrument").asText();
+        if (orderBookService.getInstrumentRegistry().get(instrument) == null) {
+            sendError(sender, "Unknown instrument: " + instrument);
+            return;
+        }
+
+        switch (type) {
+            case "subscribe" -> {
+                FeedShape shape = parseShape(instrument, request, isBinary(session));
+                if (shape != null) {
+                    subscribe(sender, shape);
+                } else {
+                    sendError(sender, "Bad subscription: " + message.getPayload());
+                }
+            }
+            case "unsubscribe" -> unsubscribe(sender, subscribed, instrument);
+            case "resync" -> {
+                ShapeFeed feed = subscribed.get(instrument);
+                if (feed != null) {
+                    sender.offerSnapshot(feed);
+                } else {
+                    sendError(sender, "Not subscribed to " + instrument);
+                }
+            }
+        }
+    }
+
+    //Feed sessions currently open
+    public int getSessionCount() {
+        return senders.size();
+    }
+
+    //Messages handed to clients, and the total time spent sending them
+    public long getSentMessages() {
+        return stats.sent.sum();
+    }
+
+    public long getSendNanos() {
+        return stats.sendNanos.sum();
     }
 
-    //Spring calls every second
-    @Scheduled(fixedRate = 1000)
+    //Queued messages thrown away because a client fell too far behind
+    public long getDroppedMessages() {
+        return stats.dropped.sum();
+    }
+
+    //Times a client's backlog was dropped in favour of fresh snapshots
+    public long getOverflows() {
+        return stats.overflows.sum();
+    }
+
+    //Sessions closed for being too slow or failing to send
+    public long getEvictedSessions() {
+        return stats.evicted.sum();
+    }
+
+    //Bytes waiting to be sent across every session
+    public long getQueuedBytes() {
+        long queued = 0;
+        for (SessionSender sender : senders.values()) {
+            queued += sender.queuedSize();
+        }
+        return queued;
+    }
+
+    //Spring calls every broadcast interval
+    @Scheduled(fixedRateString = "${orderbook.broadcast.interval-ms:100}")
     public void broadcastOrderBookUpdate() {
 
-        //get data
-        Map<BigDecimal, Map<Exchange, BigDecimal>> currentBids = orderBookService.getBids();
-        Map<BigDecimal, Map<Exchange, BigDecimal>> currentAsks = orderBookService.getAsks();
+        //one message per feed, clients tell instruments apart by the "instrument" field
+        for (ShapeFeed feed : feeds.values()) {
+            BookSnapshot snapshot = orderBookService.getSnapshot(feed.shape().instrument());
+            WebSocketMessage<?> message = feed.tick(snapshot);
+            if (message == null) {
+                continue;
+            }
+            if (snapshot.publishedNanos() != 0) {
+                orderBookService.getLatency().instrument(snapshot.instrument().symbol())
+                        .record(Stage.BROADCAST, snapshot.source(), System.nanoTime() - snapshot.publishedNanos());
+            }
+            //one message shared by every subscriber, queued without waiting on any of them
+            for (SessionSender sender : feed.subscribers()) {
+                sender.offer(message);
+            }
+        }
+    }
 
-        //package data
-        Map<String, Object> data = Map.of("bids", currentBids, "asks", currentAsks);
+    //closes sessions stuck in a send for longer than the limit, the send can't time itself out
+    @Scheduled(fixedRateString = "${orderbook.broadcast.interval-ms:100}")
+    public void checkSendTimes() {
+        long now = System.nanoTime();
+        for (SessionSender sender : senders.values()) {
+            sender.checkSendTime(now);
+        }
+    }
 
-        //convert to JSON
-        //get JSON payload
-        try {
-            String jsonPayload = objectMapper.writeValueAsString(data);
+    //moves the session's subscription to the instrument onto this shape's feed and sends its snapshot
+    private void subscribe(SessionSender sender, FeedShape shape) throws IOException {
+        Map<String, ShapeFeed> subscribed = subscriptions.get(sender.session().getId());
+        ShapeFeed feed;
+        synchronized (feeds) {
+            unsubscribe(sender, subscribed, shape.instrument());
+            feed = feeds.computeIfAbsent(shape,
+                    s -> new ShapeFeed(s, orderBookService.getSnapshot(s.instrument())));
+            //added before the snapshot so no delta after it can be missed, earlier ones are ignored by seq
+            feed.subscribers().add(sender);
+            subscribed.put(shape.instrument(), feed);
+        }
+        sender.offerSnapshot(feed);
+    }
 
-            //send the data
-            for (WebSocketSession session : sessionList) {
-                if (session.isOpen()) {
-                    //if session is open, send the payload
-                    session.sendMessage(new TextMessage(jsonPayload));
+    //a feed nobody gets any more is dropped, a later subscriber starts a new one
+    private void unsubscribe(SessionSender sender, Map<String, ShapeFeed> subscribed, String instrument) {
+        synchronized (feeds) {
+            ShapeFeed feed = subscribed.remove(instrument);
+            if (feed != null) {
+                feed.subscribers().remove(sender);
+                if (feed.subscribers().isEmpty()) {
+                    feeds.remove(feed.shape());
                 }
             }
-        } catch (IOException e) {
-            System.err.print("Error broadcasting order book update " + e.getMessage());
         }
     }
+
+    //what a sender resends after dropping a backlog, runs on the sender's thread
+    private List<WebSocketMessage<?>> snapshots(Map<String, ShapeFeed> subscribed) {
+        List<WebSocketMessage<?>> snapshots = new ArrayList<>(subscribed.size());
+        for (ShapeFeed feed : subscribed.values()) {
+            snapshots.add(feed.snapshotMessage());
+        }
+        return snapshots;
+    }
+
+    //null if any field is invalid
+    private FeedShape parseShape(String instrument, JsonNode request, boolean binary) {
+        int depth = request.path("depth").asInt(Integer.MAX_VALUE);
+        long interval = request.path("intervalMs").asLong(intervalMs);
+        String side = request.path("side").asText("both");
+        String aggregation = request.path("aggregation").asText("exchange");
+        if (depth <= 0 || interval <= 0) {
+            return null;
+        }
+
+        BookSide bookSide;
+        switch (side) {
+            case "bid" -> bookSide = BookSide.BID;
+            case "ask" -> bookSide = BookSide.ASK;
+            case "both" -> bookSide = null;
+            default -> {
+                return null;
+            }
+        }
+        if (!aggregation.equals("exchange") && !aggregation.equals("total")) {
+            return null;
+        }
+
+        //rounded to whole broadcast intervals so nearby rates share a feed
+        int everyTicks = (int) Math.max(1, Math.round((double) interval / intervalMs));
+        return new FeedShape(instrument, depth, bookSide, aggregation.equals("total"), everyTicks, binary);
+    }
+
+    private static boolean isBinary(WebSocketSession session) {
+        return WireFormat.BINARY_SUBPROTOCOL.equals(session.getAcceptedProtocol());
+    }
+
+    private void sendError(SessionSender sender, String error) throws IOException {
+        sender.offer(new TextMessage(objectMapper.writeValueAsString(Map.of("type", "error", "message", error))));
+    }
 }
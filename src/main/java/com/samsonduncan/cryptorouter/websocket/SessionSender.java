@@ -0,0 +1,249 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.diagnostics.LogSite;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/*
+Outbound side of one feed session. Whoever has a message for the session only queues it,
+a drain task on the handler's executor does the blocking sends one at a time, so a slow or
+stalled client never holds up the broadcast or any other client.
+
+When more than the buffer limit is waiting the backlog is thrown away and the next drain sends
+fresh snapshots of the session's feeds before carrying on with deltas, so a slow client skips
+to the latest book rather than falling further behind. Any delta queued after the backlog was
+dropped is at or after those snapshots' seq, so the stream stays consistent.
+Messages are shared between sessions, a binary one's buffer is duplicated for each send.
+A session that overflows too many times without ever catching up, or whose send takes longer
+than the send time limit, is closed. A send is timed while it's still blocked: the handler's
+watchdog calls checkSendTime, so a stalled client is closed at the limit rather than whenever
+(if ever) its send returns.
+ */
+final class SessionSender implements Runnable {
+
+    private static final LogSite SEND_FAILED = LogSite.warn("orderbook.feed.send.failed", 1);
+    private static final LogSite EVICTED = LogSite.warn("orderbook.feed.evicted", 10);
+    private static final LogSite CLOSE_FAILED = LogSite.warn("orderbook.feed.close.failed", 1);
+
+    private final WebSocketSession session;
+    private final Executor executor;
+    private final Supplier<List<WebSocketMessage<?>>> snapshots;
+    private final FeedLimits limits;
+    private final FeedStats stats;
+
+    //guarded by this
+    private final ArrayDeque<WebSocketMessage<?>> queue = new ArrayDeque<>();
+    private long queuedSize = 0; //chars of text, bytes of binary
+    private boolean resync = false;
+    private boolean draining = false;
+    private int overflows = 0; //since the queue was last empty
+
+    private volatile boolean closed = false;
+    //System.nanoTime() the send in progress started, 0 between sends
+    private volatile long sendStarted = 0;
+
+    /**
+     * @param snapshots snapshots of every feed the session is subscribed to, used after an overflow
+     */
+    SessionSender(WebSocketSession session, Executor executor, Supplier<List<WebSocketMessage<?>>> snapshots,
+                  FeedLimits limits, FeedStats stats) {
+        this.session = session;
+        this.executor = executor;
+        this.snapshots = snapshots;
+        this.limits = limits;
+        this.stats = stats;
+    }
+
+    WebSocketSession session() {
+        return session;
+    }
+
+    //queues a message, never blocks on the network
+    void offer(WebSocketMessage<?> message) {
+        boolean start;
+        synchronized (this) {
+            if (!enqueue(message)) {
+                return;
+            }
+            start = startDrain();
+        }
+        if (start) {
+            drain();
+        }
+    }
+
+    //the snapshot is read and queued in one step, so no delta after it can be queued ahead of it
+    void offerSnapshot(ShapeFeed feed) {
+        boolean start;
+        synchronized (this) {
+            if (!enqueue(feed.snapshotMessage())) {
+                return;
+            }
+            start = startDrain();
+        }
+        if (start) {
+            drain();
+        }
+    }
+
+    synchronized long queuedSize() {
+        return queuedSize;
+    }
+
+    //stops sending, anything still queued is dropped
+    void close() {
+        closed = true;
+        synchronized (this) {
+            queue.clear();
+            queuedSize = 0;
+        }
+    }
+
+    //closes the session if a send has been blocked longer than the limit, called from the handler's timer
+    void checkSendTime(long now) {
+        long started = sendStarted;
+        if (started != 0 && now - started > limits.sendTimeLimitNanos()) {
+            evict(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send blocked " + (now - started) / 1_000_000 + "ms"));
+        }
+    }
+
+    //drain loop, only one runs per session at a time
+    @Override
+    public void run() {
+        while (!closed) {
+            WebSocketMessage<?> next = null;
+            boolean sendSnapshots;
+            synchronized (this) {
+                sendSnapshots = resync;
+                resync = false;
+                if (!sendSnapshots) {
+                    next = queue.poll();
+                    if (next == null) {
+                        //caught up
+                        draining = false;
+                        overflows = 0;
+                        return;
+                    }
+                    queuedSize -= size(next);
+                }
+            }
+
+            if (sendSnapshots) {
+                for (WebSocketMessage<?> snapshot : snapshots.get()) {
+                    send(snapshot);
+                }
+            } else {
+                send(next);
+            }
+        }
+    }
+
+    //false if the message was dropped, called holding the lock
+    private boolean enqueue(WebSocketMessage<?> message) {
+        if (closed) {
+            return false;
+        }
+        queue.add(message);
+        queuedSize += size(message);
+        if (queuedSize <= limits.bufferSizeLimit()) {
+            return true;
+        }
+
+        //too far behind, skip to fresh snapshots
+        stats.dropped.add(queue.size());
+        stats.overflows.increment();
+        queue.clear();
+        queuedSize = 0;
+        resync = true;
+        if (++overflows >= limits.maxOverflows()) {
+            evict(CloseStatus.SESSION_NOT_RELIABLE.withReason("Too slow, " + overflows + " overflows"));
+            return false;
+        }
+        return true;
+    }
+
+    //called holding the lock, true if the caller must start a drain
+    private boolean startDrain() {
+        if (draining) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    private void drain() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            //shutting down
+            closed = true;
+        }
+    }
+
+    private void send(WebSocketMessage<?> message) {
+        if (closed || !session.isOpen()) {
+            return;
+        }
+        //sending consumes a ByteBuffer, so each session gets its own view of the shared one
+        if (message instanceof BinaryMessage binary) {
+            message = new BinaryMessage(binary.getPayload().duplicate(), binary.isLast());
+        }
+        long start = System.nanoTime();
+        sendStarted = start;
+        try {
+            session.sendMessage(message);
+        } catch (IOException | IllegalStateException e) {
+            SEND_FAILED.log(null, null, LogSite.NO_SEQUENCE, session.getId(), e);
+            evict(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send failed"));
+            return;
+        } finally {
+            sendStarted = 0;
+        }
+        long elapsed = System.nanoTime() - start;
+        stats.sendNanos.add(elapsed);
+        stats.sent.increment();
+        //the watchdog only looks every so often, a send that ran over in between is caught here
+        if (elapsed > limits.sendTimeLimitNanos()) {
+            evict(CloseStatus.SESSION_NOT_RELIABLE.withReason("Send took " + elapsed / 1_000_000 + "ms"));
+        }
+    }
+
+    //text is counted in chars, the feed's JSON is ASCII so that's its size in bytes
+    private static long size(WebSocketMessage<?> message) {
+        return message instanceof TextMessage text ? text.getPayload().length() : message.getPayloadLength();
+    }
+
+    //the close itself can block on the network, so it runs on the executor
+    //the watchdog and the drain can both get here, only the first closes
+    private void evict(CloseStatus status) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        stats.evicted.increment();
+        EVICTED.log(null, null, LogSite.NO_SEQUENCE, session.getId() + " " + status.getReason(), null);
+        try {
+            executor.execute(() -> {
+                try {
+                    session.close(status);
+                } catch (IOException e) {
+                    CLOSE_FAILED.log(null, null, LogSite.NO_SEQUENCE, session.getId(), e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //shutting down, the session goes with the server
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.wire.BookMessageWriter;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/*
+The snapshot and delta stream for one FeedShape, encoded once per tick (JSON or WireFormat binary)
+and sent as is to every session subscribed with that shape. seq and the book it describes are only
+moved on by the broadcast thread, snapshots for new or resyncing sessions read them from any thread.
+JSON is written by BookJsonWriter straight from the book, and a snapshot is only encoded again
+once seq has moved, so sessions joining or resyncing between deltas share one payload.
+ */
+final class ShapeFeed {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+
+    private record State(long seq, BookSnapshot book) {}
+
+    private record Snapshot(long seq, WebSocketMessage<?> message) {}
+
+    private final FeedShape shape;
+    private final Set<SessionSender> subscribers = new CopyOnWriteArraySet<>();
+    //reused between messages, deltas only on the broadcast thread, snapshots under their own lock
+    private final BookJsonWriter deltaJson = new BookJsonWriter(8192);
+    private final BookJsonWriter snapshotJson = new BookJsonWriter(8192);
+
+    private volatile State state;
+    private volatile Snapshot snapshot;
+    private long ticks = 0;
+
+    ShapeFeed(FeedShape shape, BookSnapshot book) {
+        this.shape = shape;
+        this.state = new State(0, book);
+    }
+
+    FeedShape shape() {
+        return shape;
+    }
+
+    Set<SessionSender> subscribers() {
+        return subscribers;
+    }
+
+    //snapshot of the book as of the last delta sent, encoded once per seq and shared
+    WebSocketMessage<?> snapshotMessage() {
+        State current = state;
+        Snapshot cached = snapshot;
+        if (cached != null && cached.seq() == current.seq()) {
+            return cached.message();
+        }
+        synchronized (snapshotJson) {
+            cached = snapshot;
+            if (cached == null || cached.seq() != current.seq()) {
+                WebSocketMessage<?> message = shape.binary()
+                        ? new BinaryMessage(binarySnapshot(current.seq(), current.book()))
+                        : jsonSnapshot(current.seq(), current.book());
+                cached = new Snapshot(current.seq(), message);
+                snapshot = cached;
+            }
+            return cached.message();
+        }
+    }
+
+    //called every broadcast interval, null if this shape isn't due or nothing it shows changed
+    WebSocketMessage<?> tick(BookSnapshot current) {
+        if (ticks++ % shape.everyTicks() != 0) {
+            return null;
+        }
+        return deltaMessage(current);
+    }
+
+    //moves the feed on to the given book, null if there's nothing to send
+    WebSocketMessage<?> deltaMessage(BookSnapshot current) {
+        State last = state;
+        if (current.version() == last.book().version()) {
+            return null;
+        }
+
+        List<BookDiff.LevelChange> bids = shape.includes(BookSide.BID)
+                ? BookDiff.changes(last.book().bids(), current.bids(), shape.depth(), shape.aggregated())
+                : List.of();
+        List<BookDiff.LevelChange> asks = shape.includes(BookSide.ASK)
+                ? BookDiff.changes(last.book().asks(), current.asks(), shape.depth(), shape.aggregated())
+                : List.of();
+        if (bids.isEmpty() && asks.isEmpty()) {
+            //eg a change below this shape's depth, seq only moves when a delta is sent
+            state = new State(last.seq(), current);
+            return null;
+        }
+
+        long seq = last.seq() + 1;
+        WebSocketMessage<?> message = shape.binary()
+                ? new BinaryMessage(binaryDelta(seq, current, bids, asks))
+                : jsonDelta(seq, current.instrument(), bids, asks);
+        state = new State(seq, current);
+        return message;
+    }
+
+    //{"type":"snapshot","instrument":..,"seq":..,"bids":{..},"asks":{..}}
+    private TextMessage jsonSnapshot(long seq, BookSnapshot book) {
+        BookJsonWriter json = snapshotJson.reset();
+        header(json, "snapshot", seq);
+        if (shape.includes(BookSide.BID)) {
+            json.raw(",\"bids\":");
+            levels(json, book.bids(), book.instrument());
+        }
+        if (shape.includes(BookSide.ASK)) {
+            json.raw(",\"asks\":");
+            levels(json, book.asks(), book.instrument());
+        }
+        return json.raw('}').toMessage();
+    }
+
+    //{"type":"delta","instrument":..,"seq":..,"bids":[..],"asks":[..]}, only on the broadcast thread
+    private TextMessage jsonDelta(long seq, InstrumentSpec instrument,
+                                  List<BookDiff.LevelChange> bids, List<BookDiff.LevelChange> asks) {
+        BookJsonWriter json = deltaJson.reset();
+        header(json, "delta", seq);
+        if (shape.includes(BookSide.BID)) {
+            json.raw(",\"bids\":");
+            changes(json, bids, instrument);
+        }
+        if (shape.includes(BookSide.ASK)) {
+            json.raw(",\"asks\":");
+            changes(json, asks, instrument);
+        }
+        return json.raw('}').toMessage();
+    }
+
+    private void header(BookJsonWriter json, String type, long seq) {
+        json.raw("{\"type\":").string(type)
+                .raw(",\"instrument\":").string(shape.instrument())
+                .raw(",\"seq\":").number(seq);
+    }
+
+    //in book order, per exchange {"price":{"exchange":qty}}, aggregated {"price":qty}
+    private void levels(BookJsonWriter json, BookSideSnapshot side, InstrumentSpec instrument) {
+        json.raw('{');
+        int depth = Math.min(shape.depth(), side.depth());
+        for (int level = 0; level < depth; level++) {
+            json.raw('"').decimal(side.price(level), instrument.priceScale()).raw("\":");
+            if (shape.aggregated()) {
+                json.decimal(side.totalQuantity(level), instrument.quantityScale()).raw(',');
+                continue;
+            }
+            json.raw('{');
+            for (Exchange exchange : EXCHANGES) {
+                long quantity = side.quantity(level, exchange);
+                //only exchanges with liquidity at this level
+                if (quantity > 0) {
+                    json.string(exchange.name()).raw(':').decimal(quantity, instrument.quantityScale()).raw(',');
+                }
+            }
+            json.endElements().raw("},");
+        }
+        json.endElements().raw('}');
+    }
+
+    //[price, "exchange", quantity] per exchange, [price, quantity] aggregated
+    private void changes(BookJsonWriter json, List<BookDiff.LevelChange> changes, InstrumentSpec instrument) {
+        json.raw('[');
+        for (BookDiff.LevelChange change : changes) {
+            json.raw('[').decimal(change.price(), instrument.priceScale()).raw(',');
+            if (!shape.aggregated()) {
+                json.string(change.exchange().name()).raw(',');
+            }
+            json.decimal(change.quantity(), instrument.quantityScale()).raw("],");
+        }
+        json.endElements().raw(']');
+    }
+
+    private ByteBuffer binarySnapshot(long seq, BookSnapshot book) {
+        int bidLevels = shape.includes(BookSide.BID) ? Math.min(shape.depth(), book.bids().depth()) : 0;
+        int askLevels = shape.includes(BookSide.ASK) ? Math.min(shape.depth(), book.asks().depth()) : 0;
+        BookMessageWriter writer = BookMessageWriter.snapshot(book.instrument(), seq, book.version(), shape.aggregated(),
+                shape.includes(BookSide.BID), shape.includes(BookSide.ASK), bidLevels, askLevels);
+        for (int level = 0; level < bidLevels; level++) {
+            writer.level(book.bids(), level);
+        }
+        for (int level = 0; level < askLevels; level++) {
+            writer.level(book.asks(), level);
+        }
+        return writer.finish();
+    }
+
+    private ByteBuffer binaryDelta(long seq, BookSnapshot book,
+                                   List<BookDiff.LevelChange> bids, List<BookDiff.LevelChange> asks) {
+        BookMessageWriter writer = BookMessageWriter.delta(book.instrument(), seq, book.version(), shape.aggregated(),
+                shape.includes(BookSide.BID), shape.includes(BookSide.ASK), bids.size(), asks.size());
+        for (BookDiff.LevelChange change : bids) {
+            writer.change(change.price(), change.exchange(), change.quantity());
+        }
+        for (BookDiff.LevelChange change : asks) {
+            writer.change(change.price(), change.exchange(), change.quantity());
+        }
+        return writer.finish();
+    }
+}
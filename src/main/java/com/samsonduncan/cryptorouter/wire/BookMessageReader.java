@@ -0,0 +1,105 @@
+package com.samsonduncan.cryptorouter.wire;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/*
+Flyweight over a binary book message (see WireFormat), every accessor reads the buffer in place.
+One reader can be re-pointed at each message as it arrives with wrap, nothing is copied or allocated
+apart from instrument(), which decodes the symbol.
+ */
+public final class BookMessageReader {
+
+    private ByteBuffer buffer;
+    private int levelsStart;
+    private int levelSize;
+
+    public BookMessageReader wrap(ByteBuffer message) {
+        this.buffer = message.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.get(WireFormat.FORMAT_VERSION) != WireFormat.VERSION) {
+            throw new IllegalArgumentException("Unsupported book message version " + buffer.get(WireFormat.FORMAT_VERSION));
+        }
+        this.levelsStart = WireFormat.SYMBOL + WireFormat.paddedLength(buffer.getShort(WireFormat.SYMBOL_LENGTH));
+        this.levelSize = WireFormat.levelSize(type(), aggregated(), exchanges());
+        return this;
+    }
+
+    //WireFormat.SNAPSHOT or DELTA
+    public byte type() {
+        return buffer.get(WireFormat.TYPE);
+    }
+
+    public boolean aggregated() {
+        return (buffer.get(WireFormat.FLAGS) & WireFormat.AGGREGATED) != 0;
+    }
+
+    public boolean hasSide(BookSide side) {
+        byte flag = side == BookSide.BID ? WireFormat.HAS_BIDS : WireFormat.HAS_ASKS;
+        return (buffer.get(WireFormat.FLAGS) & flag) != 0;
+    }
+
+    public int priceScale() {
+        return buffer.get(WireFormat.PRICE_SCALE);
+    }
+
+    public int quantityScale() {
+        return buffer.get(WireFormat.QUANTITY_SCALE);
+    }
+
+    public int exchanges() {
+        return buffer.get(WireFormat.EXCHANGES);
+    }
+
+    public String instrument() {
+        byte[] symbol = new byte[buffer.getShort(WireFormat.SYMBOL_LENGTH)];
+        buffer.get(WireFormat.SYMBOL, symbol);
+        return new String(symbol, StandardCharsets.US_ASCII);
+    }
+
+    public long seq() {
+        return buffer.getLong(WireFormat.SEQ);
+    }
+
+    public long bookVersion() {
+        return buffer.getLong(WireFormat.BOOK_VERSION);
+    }
+
+    public int levels(BookSide side) {
+        return buffer.getInt(side == BookSide.BID ? WireFormat.BID_LEVELS : WireFormat.ASK_LEVELS);
+    }
+
+    //scaled price of a level, or of a change in a delta
+    public long price(BookSide side, int level) {
+        return buffer.getLong(offset(side, level));
+    }
+
+    //total at a level when aggregated, else a delta's quantity
+    public long quantity(BookSide side, int level) {
+        if (type() == WireFormat.SNAPSHOT && !aggregated()) {
+            long total = 0;
+            for (int exchange = 0; exchange < exchanges(); exchange++) {
+                total += quantity(side, level, exchange);
+            }
+            return total;
+        }
+        return buffer.getLong(offset(side, level) + 8);
+    }
+
+    //one exchange's quantity at a snapshot level, by Exchange ordinal
+    public long quantity(BookSide side, int level, int exchange) {
+        return buffer.getLong(offset(side, level) + 8 + 8 * exchange);
+    }
+
+    //Exchange ordinal a per exchange delta change belongs to
+    public int exchange(BookSide side, int level) {
+        return buffer.getInt(offset(side, level) + 16);
+    }
+
+    private int offset(BookSide side, int level) {
+        int index = side == BookSide.BID ? level : levels(BookSide.BID) + level;
+        return levelsStart + index * levelSize;
+    }
+}
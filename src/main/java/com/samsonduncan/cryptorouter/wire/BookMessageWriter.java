@@ -0,0 +1,93 @@
+package com.samsonduncan.cryptorouter.wire;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/*
+Writes one binary book message (see WireFormat) straight from the book.
+The level counts are known up front, so the buffer is sized exactly once and
+levels are written in order, bids then asks, with no intermediate objects.
+ */
+public final class BookMessageWriter {
+
+    private static final Exchange[] EXCHANGE_VALUES = Exchange.values();
+
+    private final ByteBuffer buffer;
+    private final boolean aggregated;
+
+    private BookMessageWriter(byte type, InstrumentSpec instrument, long seq, long bookVersion,
+                              boolean aggregated, boolean hasBids, boolean hasAsks, int bidLevels, int askLevels) {
+        this.aggregated = aggregated;
+        byte[] symbol = instrument.symbol().getBytes(StandardCharsets.US_ASCII);
+        int levelSize = WireFormat.levelSize(type, aggregated, EXCHANGE_VALUES.length);
+        int size = WireFormat.SYMBOL + WireFormat.paddedLength(symbol.length) + (bidLevels + askLevels) * levelSize;
+
+        byte flags = (byte) ((aggregated ? WireFormat.AGGREGATED : 0)
+                | (hasBids ? WireFormat.HAS_BIDS : 0)
+                | (hasAsks ? WireFormat.HAS_ASKS : 0));
+        this.buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(type)
+                .put(WireFormat.VERSION)
+                .put(flags)
+                .put((byte) instrument.priceScale())
+                .put((byte) instrument.quantityScale())
+                .put((byte) EXCHANGE_VALUES.length)
+                .putShort((short) symbol.length)
+                .putLong(seq)
+                .putLong(bookVersion)
+                .putInt(bidLevels)
+                .putInt(askLevels)
+                .put(symbol);
+        buffer.position(WireFormat.SYMBOL + WireFormat.paddedLength(symbol.length));
+    }
+
+    /**
+     * @param bidLevels levels that will be written for the bids, 0 if hasBids is false
+     */
+    public static BookMessageWriter snapshot(InstrumentSpec instrument, long seq, long bookVersion, boolean aggregated,
+                                             boolean hasBids, boolean hasAsks, int bidLevels, int askLevels) {
+        return new BookMessageWriter(WireFormat.SNAPSHOT, instrument, seq, bookVersion,
+                aggregated, hasBids, hasAsks, bidLevels, askLevels);
+    }
+
+    public static BookMessageWriter delta(InstrumentSpec instrument, long seq, long bookVersion, boolean aggregated,
+                                          boolean hasBids, boolean hasAsks, int bidLevels, int askLevels) {
+        return new BookMessageWriter(WireFormat.DELTA, instrument, seq, bookVersion,
+                aggregated, hasBids, hasAsks, bidLevels, askLevels);
+    }
+
+    //next snapshot level, copied from the book
+    public BookMessageWriter level(BookSideSnapshot side, int level) {
+        buffer.putLong(side.price(level));
+        if (aggregated) {
+            buffer.putLong(side.totalQuantity(level));
+        } else {
+            for (Exchange exchange : EXCHANGE_VALUES) {
+                buffer.putLong(side.quantity(level, exchange));
+            }
+        }
+        return this;
+    }
+
+    //next delta level, exchange is ignored when aggregated
+    public BookMessageWriter change(long price, Exchange exchange, long quantity) {
+        buffer.putLong(price).putLong(quantity);
+        if (!aggregated) {
+            buffer.putInt(exchange.ordinal()).putInt(0);
+        }
+        return this;
+    }
+
+    //the finished message, read only so it can be shared
+    public ByteBuffer finish() {
+        if (buffer.hasRemaining()) {
+            throw new IllegalStateException("Book message has " + buffer.remaining() + " bytes of levels missing");
+        }
+        return buffer.flip().asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
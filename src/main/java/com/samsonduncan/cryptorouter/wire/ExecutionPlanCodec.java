@@ -0,0 +1,151 @@
+package com.samsonduncan.cryptorouter.wire;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.ExecutionLeg;
+import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+Binary execution plan, or a batch of them, layouts in WireFormat.
+Leg prices and quantities come from the book so they are exact at the instrument's scales,
+which are taken from the legs themselves. vwap and all in price are averages, carried
+AVERAGE_EXTRA_DIGITS past the price scale and rounded half up.
+ */
+public final class ExecutionPlanCodec {
+
+    private static final Exchange[] EXCHANGES = Exchange.values();
+    private static final int AVERAGE_EXTRA_DIGITS = 8;
+    private static final int HEADER = 32;
+    private static final int LEG = 32;
+    private static final int BATCH_HEADER = 16;
+
+    private ExecutionPlanCodec() {
+    }
+
+    public static byte[] encode(ExecutionPlan plan) {
+        int priceScale = 0;
+        int quantityScale = 0;
+        for (ExecutionLeg leg : plan.legs()) {
+            priceScale = Math.max(priceScale, leg.price().scale());
+            quantityScale = Math.max(quantityScale, leg.quantity().scale());
+        }
+        int averageScale = priceScale + AVERAGE_EXTRA_DIGITS;
+        int feeScale = priceScale + quantityScale;
+        byte[] notes = plan.notes() == null ? new byte[0] : plan.notes().getBytes(StandardCharsets.UTF_8);
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + plan.legs().size() * LEG + notes.length)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(WireFormat.PLAN)
+                .put(WireFormat.VERSION)
+                .put((byte) priceScale)
+                .put((byte) quantityScale)
+                .put((byte) averageScale)
+                .put((byte) 0)
+                .putShort((short) notes.length)
+                .putInt(plan.legs().size())
+                .putInt(0)
+                .putLong(unscaled(plan.vwap(), averageScale))
+                .putLong(unscaled(plan.allInPrice(), averageScale));
+        for (ExecutionLeg leg : plan.legs()) {
+            buffer.putInt(leg.exchange().ordinal())
+                    .putInt(0)
+                    .putLong(unscaled(leg.price(), priceScale))
+                    .putLong(unscaled(leg.quantity(), quantityScale))
+                    .putLong(unscaled(leg.fee(), feeScale));
+        }
+        buffer.put(notes);
+        return buffer.array();
+    }
+
+    //back to the plan, for Java consumers and tests
+    public static ExecutionPlan decode(ByteBuffer message) {
+        ByteBuffer buffer = message.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = buffer.position();
+        if (buffer.get(start) != WireFormat.PLAN || buffer.get(start + 1) != WireFormat.VERSION) {
+            throw new IllegalArgumentException("Not a version " + WireFormat.VERSION + " execution plan");
+        }
+        int priceScale = buffer.get(start + 2);
+        int quantityScale = buffer.get(start + 3);
+        int averageScale = buffer.get(start + 4);
+        int notesLength = Short.toUnsignedInt(buffer.getShort(start + 6));
+        int legCount = buffer.getInt(start + 8);
+
+        List<ExecutionLeg> legs = new ArrayList<>(legCount);
+        for (int i = 0; i < legCount; i++) {
+            int offset = start + HEADER + i * LEG;
+            legs.add(new ExecutionLeg(
+                    EXCHANGES[buffer.getInt(offset)],
+                    BigDecimal.valueOf(buffer.getLong(offset + 16), quantityScale),
+                    BigDecimal.valueOf(buffer.getLong(offset + 8), priceScale),
+                    BigDecimal.valueOf(buffer.getLong(offset + 24), priceScale + quantityScale)));
+        }
+
+        byte[] notes = new byte[notesLength];
+        buffer.get(start + HEADER + legCount * LEG, notes);
+        return new ExecutionPlan(
+                legs,
+                BigDecimal.valueOf(buffer.getLong(start + 16), averageScale),
+                BigDecimal.valueOf(buffer.getLong(start + 24), averageScale),
+                new String(notes, StandardCharsets.UTF_8));
+    }
+
+    //plans in request order after a table of their lengths, each starting 8 byte aligned
+    public static byte[] encode(BatchExecutionPlan batch) {
+        List<ExecutionPlan> plans = batch.plans();
+        byte[][] encoded = new byte[plans.size()][];
+        int table = WireFormat.paddedLength(plans.size() * 4);
+        int length = BATCH_HEADER + table;
+        for (int i = 0; i < plans.size(); i++) {
+            encoded[i] = encode(plans.get(i));
+            length += WireFormat.paddedLength(encoded[i].length);
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(WireFormat.BATCH_PLAN)
+                .put(WireFormat.VERSION)
+                .put(batch.consumeDepth() ? WireFormat.CONSUME_DEPTH : 0)
+                .put((byte) 0)
+                .putInt(plans.size())
+                .putLong(batch.bookVersion());
+        for (byte[] plan : encoded) {
+            buffer.putInt(plan.length);
+        }
+        buffer.position(BATCH_HEADER + table);
+        for (byte[] plan : encoded) {
+            buffer.put(plan);
+            buffer.position(WireFormat.paddedLength(buffer.position()));
+        }
+        return buffer.array();
+    }
+
+    public static BatchExecutionPlan decodeBatch(ByteBuffer message) {
+        ByteBuffer buffer = message.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        int start = buffer.position();
+        if (buffer.get(start) != WireFormat.BATCH_PLAN || buffer.get(start + 1) != WireFormat.VERSION) {
+            throw new IllegalArgumentException("Not a version " + WireFormat.VERSION + " batch of execution plans");
+        }
+        boolean consumeDepth = (buffer.get(start + 2) & WireFormat.CONSUME_DEPTH) != 0;
+        int count = buffer.getInt(start + 4);
+        long bookVersion = buffer.getLong(start + 8);
+
+        List<ExecutionPlan> plans = new ArrayList<>(count);
+        int offset = start + BATCH_HEADER + WireFormat.paddedLength(count * 4);
+        for (int i = 0; i < count; i++) {
+            plans.add(decode(buffer.duplicate().position(offset)));
+            offset += WireFormat.paddedLength(buffer.getInt(start + BATCH_HEADER + i * 4));
+        }
+        return new BatchExecutionPlan(bookVersion, consumeDepth, plans);
+    }
+
+    private static long unscaled(BigDecimal value, int scale) {
+        return value.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
@@ -0,0 +1,43 @@
+package com.samsonduncan.cryptorouter.wire;
+
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//Serves ExecutionPlans and BatchExecutionPlans as WireFormat binary to clients that Accept PLAN_MEDIA_TYPE,
+//JSON stays the default. The first byte (PLAN or BATCH_PLAN) tells the two apart
+public class ExecutionPlanMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public ExecutionPlanMessageConverter() {
+        super(MediaType.parseMediaType(WireFormat.PLAN_MEDIA_TYPE));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ExecutionPlan.class.isAssignableFrom(clazz) || BatchExecutionPlan.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        ByteBuffer body = ByteBuffer.wrap(inputMessage.getBody().readAllBytes());
+        return BatchExecutionPlan.class.isAssignableFrom(clazz)
+                ? ExecutionPlanCodec.decodeBatch(body)
+                : ExecutionPlanCodec.decode(body);
+    }
+
+    @Override
+    protected void writeInternal(Object plan, HttpOutputMessage outputMessage) throws IOException {
+        byte[] encoded = plan instanceof BatchExecutionPlan batch
+                ? ExecutionPlanCodec.encode(batch)
+                : ExecutionPlanCodec.encode((ExecutionPlan) plan);
+        outputMessage.getBody().write(encoded);
+    }
+}
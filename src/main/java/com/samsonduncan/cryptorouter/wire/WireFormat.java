@@ -0,0 +1,108 @@
+package com.samsonduncan.cryptorouter.wire;
+
+/*
+Binary encoding of book snapshots, book deltas, execution plans and batches of plans, the alternative to JSON
+for consumers that care about decode cost. Every message is little endian with a fixed layout,
+prices and quantities are scaled longs, so a reader pulls any field straight out of the buffer
+by offset (see BookMessageReader) without parsing or allocating.
+
+Book message, header then levels:
+  0  u8   type, SNAPSHOT or DELTA
+  1  u8   VERSION
+  2  u8   flags, AGGREGATED | HAS_BIDS | HAS_ASKS
+  3  u8   price scale
+  4  u8   quantity scale
+  5  u8   exchange count E, by Exchange ordinal
+  6  u16  instrument symbol length n
+  8  i64  seq
+  16 i64  book version
+  24 i32  bid levels
+  28 i32  ask levels
+  32      instrument symbol, ASCII, padded with zeros to a multiple of 8
+then the bid levels and then the ask levels, best first, each:
+  snapshot             i64 price, E x i64 quantity per exchange
+  snapshot aggregated  i64 price, i64 total quantity
+  delta                i64 price, i64 quantity, i32 exchange ordinal, i32 padding
+  delta aggregated     i64 price, i64 total quantity
+A delta's quantity replaces the one at that price, 0 removes it, as in the JSON feed.
+
+Execution plan, see ExecutionPlanCodec:
+  0  u8   PLAN
+  1  u8   VERSION
+  2  u8   price scale
+  3  u8   quantity scale
+  4  u8   average price scale, of vwap and all in price
+  5  u8   padding
+  6  u16  notes length n, UTF-8 bytes
+  8  i32  legs
+  12 i32  padding
+  16 i64  vwap
+  24 i64  all in price
+  32      legs, each i32 exchange ordinal, i32 padding, i64 price, i64 quantity,
+          i64 fee at price scale + quantity scale
+  then the notes
+
+Batch of execution plans, see ExecutionPlanCodec:
+  0  u8   BATCH_PLAN
+  1  u8   VERSION
+  2  u8   flags, CONSUME_DEPTH
+  3  u8   padding
+  4  i32  plans N
+  8  i64  book version every plan was routed on
+  16      N x i32 plan length in bytes, then padding to a multiple of 8
+then each plan as above, in request order, padded with zeros to a multiple of 8,
+so a reader can skip straight to plan i by adding up the lengths before it.
+ */
+public final class WireFormat {
+
+    //WebSocket subprotocols for /ws/orderbook, JSON unless the client asks for binary
+    public static final String JSON_SUBPROTOCOL = "orderbook.json.v1";
+    public static final String BINARY_SUBPROTOCOL = "orderbook.binary.v1";
+
+    //Accept header for a binary execution plan from /route, or a batch of them from /route/batch
+    public static final String PLAN_MEDIA_TYPE = "application/vnd.cryptorouter.plan.v1+binary";
+
+    public static final byte VERSION = 1;
+
+    public static final byte SNAPSHOT = 1;
+    public static final byte DELTA = 2;
+    public static final byte PLAN = 3;
+    public static final byte BATCH_PLAN = 4;
+
+    public static final byte AGGREGATED = 1;
+    public static final byte HAS_BIDS = 2;
+    public static final byte HAS_ASKS = 4;
+
+    //batch flags
+    public static final byte CONSUME_DEPTH = 1;
+
+    //book header offsets
+    static final int TYPE = 0;
+    static final int FORMAT_VERSION = 1;
+    static final int FLAGS = 2;
+    static final int PRICE_SCALE = 3;
+    static final int QUANTITY_SCALE = 4;
+    static final int EXCHANGES = 5;
+    static final int SYMBOL_LENGTH = 6;
+    static final int SEQ = 8;
+    static final int BOOK_VERSION = 16;
+    static final int BID_LEVELS = 24;
+    static final int ASK_LEVELS = 28;
+    static final int SYMBOL = 32;
+
+    private WireFormat() {
+    }
+
+    //bytes per level for a book message
+    static int levelSize(byte type, boolean aggregated, int exchanges) {
+        if (aggregated) {
+            return 16;
+        }
+        return type == SNAPSHOT ? 8 + 8 * exchanges : 24;
+    }
+
+    //symbol padded so the levels start 8 byte aligned
+    static int paddedLength(int length) {
+        return (length + 7) & ~7;
+    }
+}
@@ -0,0 +1,64 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class CoalescedDeltasTests {
+
+	@Test
+	void keepsTheLastQuantityOfEachLevel() {
+		CoalescedDeltas deltas = new CoalescedDeltas(Exchange.KRAKEN);
+		BookUpdate delta = new BookUpdate();
+
+		delta.reset(Exchange.KRAKEN, false);
+		delta.add(BookSide.ASK, 101, 1);
+		delta.add(BookSide.BID, 101, 7);
+		deltas.add(delta);
+		delta.reset(Exchange.KRAKEN, false);
+		delta.add(BookSide.ASK, 102, 2);
+		delta.add(BookSide.ASK, 101, 0);
+		deltas.add(delta);
+		delta.reset(Exchange.KRAKEN, false);
+		delta.add(BookSide.ASK, 101, 3);
+		deltas.add(delta);
+
+		BookUpdate folded = deltas.update();
+		assertEquals(3, deltas.size());
+		assertFalse(folded.isSnapshot());
+		assertEquals(Exchange.KRAKEN, folded.getExchange());
+		//the same price on the other side is a different level
+		assertEquals(1, folded.count(BookSide.BID));
+		assertEquals(7, folded.quantity(BookSide.BID, 0));
+		//first seen order, last quantity
+		assertEquals(2, folded.count(BookSide.ASK));
+		assertEquals(101, folded.price(BookSide.ASK, 0));
+		assertEquals(3, folded.quantity(BookSide.ASK, 0));
+		assertEquals(102, folded.price(BookSide.ASK, 1));
+
+		deltas.clear();
+		assertEquals(0, deltas.size());
+		assertEquals(0, deltas.update().count(BookSide.ASK));
+	}
+
+	@Test
+	void foldsBatchesWiderThanItsIndex() {
+		CoalescedDeltas deltas = new CoalescedDeltas(Exchange.COINBASE);
+		BookUpdate delta = new BookUpdate();
+		for (int batch = 0; batch < 3; batch++) {
+			for (int round = 0; round < 2; round++) {
+				delta.reset(Exchange.COINBASE, false);
+				for (int price = 0; price < 1_000; price++) {
+					delta.add(BookSide.ASK, 10_000 + price, round + 1);
+				}
+				deltas.add(delta);
+			}
+			assertEquals(1_000, deltas.update().count(BookSide.ASK));
+			assertEquals(2, deltas.update().quantity(BookSide.ASK, 999));
+			deltas.clear();
+		}
+	}
+}
@@ -0,0 +1,224 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ConsolidatedBookTests {
+
+	@Test
+	void mergesExchangesIntoBestFirstLevels() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		BookUpdate update = new BookUpdate();
+		update.reset(Exchange.KRAKEN, true);
+		update.add(BookSide.BID, 101, 1);
+		update.add(BookSide.BID, 99, 2);
+		update.add(BookSide.ASK, 103, 3);
+		book.apply(update);
+		update.reset(Exchange.COINBASE, true);
+		update.add(BookSide.BID, 101, 4);
+		update.add(BookSide.BID, 100, 5);
+		update.add(BookSide.ASK, 102, 6);
+		update.add(BookSide.ASK, 103, 7);
+		book.apply(update);
+
+		BookSnapshot snapshot = book.snapshot(1);
+
+		BookSideSnapshot bids = snapshot.bids();
+		assertEquals(3, bids.depth());
+		assertEquals(101, bids.price(0));
+		assertEquals(1, bids.quantity(0, Exchange.KRAKEN));
+		assertEquals(4, bids.quantity(0, Exchange.COINBASE));
+		assertEquals(5, bids.totalQuantity(0));
+		assertEquals(100, bids.price(1));
+		assertEquals(99, bids.price(2));
+
+		BookSideSnapshot asks = snapshot.asks();
+		assertEquals(2, asks.depth());
+		assertEquals(102, asks.price(0));
+		assertEquals(0, asks.quantity(0, Exchange.KRAKEN));
+		assertEquals(10, asks.totalQuantity(1));
+	}
+
+	@Test
+	void snapshotsAreNotChangedByLaterUpdates() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 100, 1);
+		BookSnapshot before = book.snapshot(1);
+
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 100, 0);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 99, 2);
+		BookSnapshot after = book.snapshot(2);
+
+		assertEquals(1, before.asks().depth());
+		assertEquals(100, before.asks().price(0));
+		assertEquals(1, after.asks().depth());
+		assertEquals(99, after.asks().price(0));
+	}
+
+	@Test
+	void appliesBookUpdateSnapshotsAndDeltas() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		BookUpdate update = new BookUpdate(1);
+		update.reset(Exchange.KRAKEN, true);
+		update.add(BookSide.BID, 101, 1);
+		update.add(BookSide.BID, 100, 2);
+		update.add(BookSide.ASK, 102, 3);
+		book.apply(update);
+
+		update.reset(Exchange.KRAKEN, false);
+		update.add(BookSide.BID, 101, 0);
+		update.add(BookSide.ASK, 103, 4);
+		book.apply(update);
+
+		BookSnapshot snapshot = book.snapshot(1);
+		assertEquals(1, snapshot.bids().depth());
+		assertEquals(100, snapshot.bids().price(0));
+		assertEquals(2, snapshot.asks().depth());
+		assertEquals(4, snapshot.asks().quantity(1, Exchange.KRAKEN));
+	}
+
+	@Test
+	void keepsRunningTotalsForFillSearch() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 100, 2);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 100, 1);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 105, 4);
+
+		BookSideSnapshot asks = book.snapshot(1).asks();
+		assertEquals(3, asks.cumulativeQuantity(0));
+		assertEquals(7, asks.cumulativeQuantity(1));
+		assertEquals(0, asks.cumulativeNotionalHigh(1));
+		assertEquals(3 * 100 + 4 * 105, asks.cumulativeNotionalLow(1));
+
+		assertEquals(0, asks.levelForQuantity(3));
+		assertEquals(1, asks.levelForQuantity(4));
+		assertEquals(2, asks.levelForQuantity(8));
+	}
+
+	@Test
+	void subtractsTakenQuantityAndDropsEmptyLevels() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 100, 2);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 100, 1);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 105, 4);
+		BookSideSnapshot asks = book.snapshot(1).asks();
+		assertEquals(1, asks.levelOf(105));
+		assertEquals(-1, asks.levelOf(101));
+
+		int exchanges = Exchange.values().length;
+		long[] taken = new long[asks.depth() * exchanges];
+		taken[Exchange.KRAKEN.ordinal()] = 2;
+		taken[Exchange.COINBASE.ordinal()] = 1;
+		taken[exchanges + Exchange.COINBASE.ordinal()] = 1;
+		BookSideSnapshot left = asks.minus(taken, 2);
+
+		assertEquals(1, left.depth());
+		assertEquals(105, left.price(0));
+		assertEquals(3, left.cumulativeQuantity(0));
+		assertEquals(3 * 105, left.cumulativeNotionalLow(0));
+		assertEquals(7, asks.cumulativeQuantity(1));
+
+		//only the first level taken from, the second keeps its quantity with shifted totals
+		left = asks.minus(taken, 1);
+		assertEquals(1, left.depth());
+		assertEquals(4, left.cumulativeQuantity(0));
+		assertEquals(4 * 105, left.cumulativeNotionalLow(0));
+	}
+
+	@Test
+	void patchesOnlyTheChangedLevelAndTheTotalsBehindIt() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		for (int i = 0; i < 500; i++) {
+			book.apply(Exchange.KRAKEN, BookSide.ASK, 1000 + i, 1 + i % 7);
+			book.apply(Exchange.COINBASE, BookSide.ASK, 1000 + 2 * i, 2);
+			book.apply(Exchange.KRAKEN, BookSide.BID, 999 - i, 1);
+		}
+		BookSnapshot first = book.snapshot(1);
+		BookSideSnapshot before = first.asks();
+
+		//kraken has 7 at 1300, coinbase goes from 2 to 5
+		book.apply(Exchange.COINBASE, BookSide.ASK, 1300, 5);
+		BookSnapshot second = book.snapshot(2);
+		BookSideSnapshot after = second.asks();
+
+		//bids weren't touched, so they aren't rebuilt
+		assertSame(first.bids(), second.bids());
+
+		int changed = before.levelOf(1300);
+		assertEquals(before.depth(), after.depth());
+		for (int level = 0; level < before.depth(); level++) {
+			assertEquals(before.price(level), after.price(level));
+			assertEquals(before.quantity(level, Exchange.KRAKEN), after.quantity(level, Exchange.KRAKEN));
+			long added = level < changed ? 0 : 3;
+			if (level == changed) {
+				assertEquals(5, after.quantity(level, Exchange.COINBASE));
+			} else {
+				assertEquals(before.quantity(level, Exchange.COINBASE), after.quantity(level, Exchange.COINBASE));
+			}
+			assertEquals(before.cumulativeQuantity(level) + added, after.cumulativeQuantity(level));
+			assertEquals(before.cumulativeNotionalLow(level) + added * 1300, after.cumulativeNotionalLow(level));
+		}
+	}
+
+	@Test
+	void incrementalLevelsMatchAFreshMerge() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		//expected ask levels per exchange ordinal
+		List<Map<Long, Long>> asks = new ArrayList<>();
+		for (Exchange exchange : Exchange.values()) {
+			asks.add(new TreeMap<>());
+		}
+		Random random = new Random(7);
+		for (int i = 0; i < 5_000; i++) {
+			Exchange exchange = Exchange.values()[random.nextInt(Exchange.values().length)];
+			long price = 100 + random.nextInt(200);
+			long quantity = random.nextInt(4);
+			book.apply(exchange, BookSide.ASK, price, quantity);
+			if (quantity == 0) {
+				asks.get(exchange.ordinal()).remove(price);
+			} else {
+				asks.get(exchange.ordinal()).put(price, quantity);
+			}
+
+			if (i % 97 == 0) {
+				//a snapshot replace merges the ladders again, later deltas patch that
+				book.apply(askSnapshot(asks.get(exchange.ordinal()), exchange));
+			}
+			if (i % 13 == 0) {
+				ConsolidatedBook fresh = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+				for (Exchange each : Exchange.values()) {
+					fresh.apply(askSnapshot(asks.get(each.ordinal()), each));
+				}
+				BookSideSnapshot expected = fresh.snapshot(i).asks();
+				BookSideSnapshot actual = book.snapshot(i).asks();
+				assertEquals(expected.depth(), actual.depth());
+				for (int level = 0; level < expected.depth(); level++) {
+					assertEquals(expected.price(level), actual.price(level));
+					assertEquals(expected.totalQuantity(level), actual.totalQuantity(level));
+					assertEquals(expected.cumulativeQuantity(level), actual.cumulativeQuantity(level));
+					assertEquals(expected.cumulativeNotionalLow(level), actual.cumulativeNotionalLow(level));
+				}
+			}
+		}
+	}
+
+	//snapshot holding only the given asks, best first
+	private static BookUpdate askSnapshot(Map<Long, Long> levels, Exchange exchange) {
+		BookUpdate update = new BookUpdate();
+		update.reset(exchange, true);
+		levels.forEach((price, quantity) -> update.add(BookSide.ASK, price, quantity));
+		return update;
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.samsonduncan.cryptorouter.book;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PriceLadderTests {
+
+	@Test
+	void bidsIterateHighestFirst() {
+		PriceLadder ladder = new PriceLadder(BookSide.BID, 2);
+		ladder.set(100, 1);
+		ladder.set(102, 2);
+		ladder.set(101, 3);
+
+		assertEquals(3, ladder.size());
+		assertEquals(102, ladder.price(0));
+		assertEquals(101, ladder.price(1));
+		assertEquals(100, ladder.price(2));
+	}
+
+	@Test
+	void asksIterateLowestFirst() {
+		PriceLadder ladder = new PriceLadder(BookSide.ASK);
+		ladder.set(102, 1);
+		ladder.set(100, 2);
+		ladder.set(101, 3);
+
+		List<Long> prices = new ArrayList<>();
+		ladder.forEach((price, quantity) -> prices.add(price));
+		assertEquals(List.of(100L, 101L, 102L), prices);
+	}
+
+	@Test
+	void updatesAndRemovesLevels() {
+		PriceLadder ladder = new PriceLadder(BookSide.ASK);
+		ladder.set(100, 2);
+		ladder.set(101, 3);
+
+		assertEquals(2, ladder.set(100, 5));
+		assertEquals(5, ladder.quantityAt(100));
+		assertEquals(5, ladder.set(100, 0));
+		assertEquals(0, ladder.quantityAt(100));
+		assertEquals(1, ladder.size());
+		assertEquals(101, ladder.price(0));
+	}
+
+	@Test
+	void truncateDropsWorstLevels() {
+		PriceLadder ladder = new PriceLadder(BookSide.BID);
+		for (long price = 100; price < 105; price++) {
+			ladder.set(price, 1);
+		}
+
+		List<Long> dropped = new ArrayList<>();
+		assertEquals(2, ladder.truncate(3, (price, quantity) -> dropped.add(price)));
+		assertEquals(List.of(100L, 101L), dropped);
+		assertEquals(3, ladder.size());
+		assertEquals(104, ladder.price(0));
+		assertEquals(102, ladder.price(2));
+	}
+
+}
@@ -0,0 +1,174 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.CoinbaseAuthService;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BookIntegrityTests {
+
+	private static final String KRAKEN_SUBSCRIBED = "{\"channelID\":336,\"channelName\":\"book-10\",\"event\":\"subscriptionStatus\","
+			+ "\"pair\":\"XBT/USD\",\"status\":\"subscribed\",\"subscription\":{\"depth\":10,\"name\":\"book\"}}";
+	private static final String KRAKEN_SNAPSHOT = "[336,{\"as\":[[\"100.10000\",\"1.00000000\",\"1.1\"]],"
+			+ "\"bs\":[[\"99.90000\",\"0.50000000\",\"1.1\"]]},\"book-10\",\"XBT/USD\"]";
+
+	private final InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+	private final OrderBookService orderBook = mock(OrderBookService.class);
+	//what each publish carried, the update itself is reused
+	private final List<String> published = new ArrayList<>();
+	private final List<String> sent = new ArrayList<>();
+
+	@BeforeEach
+	void setUp() {
+		doAnswer(invocation -> {
+			BookUpdate update = invocation.getArgument(1);
+			published.add((update.isSnapshot() ? "snapshot " : "delta ")
+					+ update.count(BookSide.BID) + "/" + update.count(BookSide.ASK));
+			return true;
+		}).when(orderBook).publish(any(InstrumentSpec.class), any(BookUpdate.class));
+	}
+
+	@Test
+	void resubscribesAKrakenPairWhoseChecksumFails() throws Exception {
+		KrakenAdapter adapter = new KrakenAdapter(instruments, orderBook, 10);
+		adapter.onConnect(sent::add);
+		adapter.onMessage(KRAKEN_SUBSCRIBED);
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+
+		//kraken's checksum, levels as written with the '.' and leading zeros dropped, asks then bids
+		long good = crc32("10010000" + "100000000" + "10020000" + "200000000" + "9990000" + "50000000");
+		adapter.onMessage("[336,{\"a\":[[\"100.20000\",\"2.00000000\",\"1.2\"]],\"c\":\"" + good + "\"},\"book-10\",\"XBT/USD\"]");
+		assertEquals(0, adapter.integrity().getChecksumFailures());
+		assertEquals(List.of("snapshot 1/1", "delta 0/1"), published);
+
+		//the same change again leaves the book as it was, but say one before it went missing
+		adapter.onMessage("[336,{\"a\":[[\"100.20000\",\"2.00000000\",\"1.3\"]],\"c\":\"1\"},\"book-10\",\"XBT/USD\"]");
+		assertEquals(1, adapter.integrity().getChecksumFailures());
+		assertEquals(1, adapter.integrity().getResyncs());
+		//the pair's kraken levels are cleared instead of publishing the bad delta
+		assertEquals("snapshot 0/0", published.getLast());
+		assertEquals(2, sent.size());
+		assertTrue(sent.get(0).contains("\"unsubscribe\"") && sent.get(0).contains("[\"XBT/USD\"]"));
+		assertTrue(sent.get(1).contains("\"subscribe\"") && sent.get(1).contains("[\"XBT/USD\"]"));
+
+		//deltas wait for the new snapshot
+		adapter.onMessage("[336,{\"b\":[[\"99.80000\",\"1.00000000\",\"1.4\"]],\"c\":\"2\"},\"book-10\",\"XBT/USD\"]");
+		assertEquals(1, adapter.integrity().getSkippedUpdates());
+		assertEquals(1, adapter.integrity().getChecksumFailures());
+
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		assertEquals("snapshot 1/1", published.getLast());
+		assertEquals(4, published.size());
+	}
+
+	@Test
+	void evictsWhenTheSocketGoesUnlessStandingBy() throws Exception {
+		KrakenAdapter adapter = new KrakenAdapter(instruments, orderBook, 10);
+		adapter.onMessage(KRAKEN_SUBSCRIBED);
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		adapter.onDisconnect();
+		//one empty snapshot per kraken instrument
+		assertEquals(List.of("snapshot 1/1", "snapshot 0/0", "snapshot 0/0"), published);
+
+		published.clear();
+		adapter.setActive(false);
+		adapter.onMessage(KRAKEN_SUBSCRIBED);
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		adapter.onDisconnect();
+		assertEquals(List.of(), published);
+
+		//a promoted standby republishes its local book before its next message
+		adapter.onMessage(KRAKEN_SUBSCRIBED);
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		adapter.setActive(true);
+		adapter.onMessage("{\"event\":\"heartbeat\"}");
+		assertEquals(List.of("snapshot 1/1"), published);
+	}
+
+	@Test
+	void resubscribesACrossedCoinbaseProduct() throws Exception {
+		CoinbaseAuthService authService = mock(CoinbaseAuthService.class);
+		when(authService.generateJwt()).thenReturn("jwt");
+		CoinbaseAdapter adapter = new CoinbaseAdapter(authService, instruments, orderBook);
+		adapter.onConnect(sent::add);
+
+		adapter.onMessage("{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\","
+				+ "\"bids\":[[\"99.90\",\"0.5\"]],\"asks\":[[\"100.10\",\"1.0\"]]}");
+		adapter.onMessage("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"buy\",\"100.00\",\"1.0\"]]}");
+		assertEquals(0, adapter.integrity().getCrossedBooks());
+
+		//a missed ask removal would leave the book crossed like this
+		adapter.onMessage("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"buy\",\"100.20\",\"1.0\"]]}");
+		assertEquals(1, adapter.integrity().getCrossedBooks());
+		assertEquals(List.of("snapshot 1/1", "delta 1/0", "snapshot 0/0"), published);
+		assertEquals(2, sent.size());
+		assertTrue(sent.get(0).contains("\"unsubscribe\"") && sent.get(0).contains("[\"BTC-USD\"]"));
+		assertTrue(sent.get(1).contains("\"subscribe\"") && sent.get(1).contains("\"jwt\":\"jwt\""));
+
+		adapter.onMessage("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\",\"changes\":[[\"sell\",\"100.10\",\"0\"]]}");
+		assertEquals(1, adapter.integrity().getSkippedUpdates());
+		assertEquals(3, published.size());
+	}
+
+	@Test
+	void resyncsAProductWhoseMessageFailsToParse() throws Exception {
+		CoinbaseAuthService authService = mock(CoinbaseAuthService.class);
+		when(authService.generateJwt()).thenReturn("jwt");
+		CoinbaseAdapter adapter = new CoinbaseAdapter(authService, instruments, orderBook);
+		adapter.onConnect(sent::add);
+		adapter.onMessage("{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\","
+				+ "\"bids\":[[\"99.90\",\"0.5\"]],\"asks\":[[\"100.10\",\"1.0\"]]}");
+
+		//the first change parses, the second has a price off the tick
+		assertThrows(ArithmeticException.class, () -> adapter.onMessage("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\","
+				+ "\"changes\":[[\"sell\",\"100.10\",\"0\"],[\"buy\",\"99.955\",\"1.0\"]]}"));
+
+		//nothing of it was published, the product is pulled and resubscribed
+		assertEquals(List.of("snapshot 1/1", "snapshot 0/0"), published);
+		assertEquals(1, adapter.integrity().getResyncs());
+		assertEquals(2, sent.size());
+		assertTrue(sent.get(1).contains("\"subscribe\"") && sent.get(1).contains("[\"BTC-USD\"]"));
+	}
+
+	@Test
+	void resyncsAKrakenPairWhoseMessageFailsToParse() throws Exception {
+		KrakenAdapter adapter = new KrakenAdapter(instruments, orderBook, 10);
+		adapter.onMessage(KRAKEN_SUBSCRIBED);
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		assertThrows(ArithmeticException.class, () -> adapter.onMessage(
+				"[336,{\"a\":[[\"100.10000\",\"0.00000000\",\"1.2\"],[\"100.20500\",\"1.00000000\",\"1.2\"]]},\"book-10\",\"XBT/USD\"]"));
+
+		assertEquals(1, adapter.integrity().getResyncs());
+
+		//deltas carry on once the resync's snapshot lands
+		adapter.onMessage(KRAKEN_SNAPSHOT);
+		long good = crc32("10010000" + "100000000" + "9990000" + "50000000");
+		adapter.onMessage("[336,{\"b\":[[\"99.90000\",\"0.50000000\",\"1.3\"]],\"c\":\"" + good + "\"},\"book-10\",\"XBT/USD\"]");
+		assertEquals(0, adapter.integrity().getChecksumFailures());
+		assertEquals(List.of("snapshot 1/1", "snapshot 0/0", "snapshot 1/1", "delta 1/0"), published);
+	}
+
+	private static long crc32(String text) {
+		CRC32 crc = new CRC32();
+		crc.update(text.getBytes(StandardCharsets.US_ASCII));
+		return crc.getValue();
+	}
+}
@@ -0,0 +1,86 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.samsonduncan.cryptorouter.connectors.RecordingListener.fixture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CoinbaseMessageParserTests {
+
+	private final CoinbaseMessageParser parser = new CoinbaseMessageParser(
+			new JsonFactory(),
+			productId -> productId.equals("BTC-USD") ? InstrumentSpec.BTC_USD : null);
+	private final RecordingListener listener = new RecordingListener();
+
+	@Test
+	void readsASnapshot() throws Exception {
+		assertEquals(CoinbaseMessageParser.MessageType.SNAPSHOT, parser.parse(fixture("coinbase/snapshot.json"), listener));
+
+		assertEquals(List.of(
+				"snapshot BTC-USD",
+				"BID 9990 50000000",
+				"BID 9980 125000000",
+				"ASK 10010 100000000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void readsAnUpdateAndItsTime() throws Exception {
+		assertEquals(CoinbaseMessageParser.MessageType.L2UPDATE, parser.parse(fixture("coinbase/l2update.json"), listener));
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"BID 9995 30000000",
+				"ASK 10010 200000000",
+				"time 1718000000250000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void passesZeroSizesOnAsDeletes() throws Exception {
+		parser.parse(fixture("coinbase/delete.json"), listener);
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"ASK 10010 0",
+				"time 1718000000500000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void skipsFieldsItDoesNotKnowWhereverTypeComes() throws Exception {
+		assertEquals(CoinbaseMessageParser.MessageType.L2UPDATE,
+				parser.parse(fixture("coinbase/extra-fields.json"), listener));
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"BID 9970 10000000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void reportsOtherMessagesWithoutBookEvents() throws Exception {
+		assertEquals(CoinbaseMessageParser.MessageType.HEARTBEAT,
+				parser.parse("{\"type\":\"heartbeat\",\"last_trade_id\":1,\"product_id\":\"BTC-USD\"}", listener));
+		assertEquals(CoinbaseMessageParser.MessageType.UNKNOWN,
+				parser.parse("{\"type\":\"ticker\",\"price\":\"100.00\"}", listener));
+		assertEquals(CoinbaseMessageParser.MessageType.UNKNOWN, parser.parse("[]", listener));
+		assertEquals(List.of(), listener.events);
+	}
+
+	@Test
+	void rejectsLevelsItCannotScale() {
+		//no product to take scales from
+		assertThrows(IOException.class, () -> parser.parse(
+				fixture("coinbase/l2update.json").replace("BTC-USD", "DOGE-USD"), listener));
+		//more decimals than the instrument's tick
+		assertThrows(ArithmeticException.class, () -> parser.parse(
+				fixture("coinbase/l2update.json").replace("99.95", "99.955"), listener));
+	}
+}
@@ -0,0 +1,166 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.WebSocket;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FeedConnectionTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor();
+	private final FeedTransport transport = new FeedTransport(executor, timers,
+			Duration.ofSeconds(1), Duration.ofHours(1), Duration.ofHours(2), new Backoff(Duration.ofHours(1), Duration.ofHours(1)));
+	private final RecordingAdapter adapter = new RecordingAdapter();
+
+	@AfterEach
+	void tearDown() {
+		transport.close();
+		timers.shutdownNow();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void subscribesAndJoinsFramesIntoMessages() {
+		FeedConnection connection = transport.connection("test", URI.create("ws://localhost:1"), adapter);
+		WebSocket socket = socket();
+
+		connection.onOpen(socket);
+		verify(socket).sendText("subscribe", true);
+		assertTrue(connection.isOpen());
+
+		connection.onText(socket, "[1,", false);
+		connection.onText(socket, "2]", true);
+		connection.onText(socket, "{}", true);
+		assertEquals(List.of("[1,2]", "{}"), adapter.messages);
+	}
+
+	@Test
+	void tellsTheAdapterOnceWhenTheSocketGoesAndAbortsSilentSockets() {
+		FeedConnection connection = transport.connection("test", URI.create("ws://localhost:1"), adapter);
+		WebSocket socket = socket();
+		connection.onOpen(socket);
+
+		connection.onClose(socket, WebSocket.NORMAL_CLOSURE, "bye");
+		connection.onError(socket, new IOException("reset"));
+		assertEquals(1, adapter.disconnects);
+		assertFalse(connection.isOpen());
+
+		WebSocket silent = socket();
+		connection.onOpen(silent);
+		connection.heartbeat(System.nanoTime(), Duration.ofHours(1).toNanos());
+		verify(silent).sendPing(ByteBuffer.allocate(0));
+		connection.heartbeat(System.nanoTime() + Duration.ofHours(2).toNanos(), Duration.ofHours(1).toNanos());
+		verify(silent).abort();
+		assertEquals(2, adapter.disconnects);
+	}
+
+	@Test
+	void handsOverToAnOpenStandbyOnly() {
+		RecordingAdapter standbyAdapter = new RecordingAdapter();
+		FeedConnection primary = transport.connection("test", URI.create("ws://localhost:1"), adapter);
+		FeedConnection standby = transport.connection("test-standby", URI.create("ws://localhost:1"), standbyAdapter);
+		VenueFailover failover = new VenueFailover(primary, standby);
+		assertTrue(adapter.active);
+		assertFalse(standbyAdapter.active);
+
+		//nothing to hand to while the standby is down
+		WebSocket first = socket();
+		primary.onOpen(first);
+		primary.onError(first, new IOException("reset"));
+		assertTrue(adapter.active);
+
+		//standby up and primary down, the standby takes over as soon as it opens
+		standby.onOpen(socket());
+		assertFalse(adapter.active);
+		assertTrue(standbyAdapter.active);
+		assertEquals(1, failover.getFailovers());
+
+		//the old primary comes back as the standby
+		WebSocket second = socket();
+		primary.onOpen(second);
+		assertFalse(adapter.active);
+		assertEquals(1, failover.getFailovers());
+	}
+
+	@Test
+	void backsOffWithJitterUpToTheMax() {
+		Backoff backoff = new Backoff(Duration.ofMillis(100), Duration.ofSeconds(1));
+		for (int i = 0; i < 100; i++) {
+			long first = backoff.delayMillis(0);
+			assertTrue(first >= 50 && first <= 100, "first " + first);
+			long third = backoff.delayMillis(2);
+			assertTrue(third >= 200 && third <= 400, "third " + third);
+			long capped = backoff.delayMillis(50);
+			assertTrue(capped >= 500 && capped <= 1000, "capped " + capped);
+		}
+	}
+
+	private static WebSocket socket() {
+		WebSocket socket = mock(WebSocket.class);
+		when(socket.sendText(anyString(), anyBoolean())).thenReturn(CompletableFuture.completedFuture(socket));
+		when(socket.sendPing(any())).thenReturn(CompletableFuture.completedFuture(socket));
+		when(socket.sendClose(anyInt(), anyString())).thenReturn(CompletableFuture.completedFuture(socket));
+		return socket;
+	}
+
+	private static final class RecordingAdapter implements ExchangeAdapter {
+
+		private final List<String> messages = new ArrayList<>();
+		private final BookIntegrity integrity = new BookIntegrity();
+		private int disconnects = 0;
+		private boolean active = true;
+
+		@Override
+		public Exchange exchange() {
+			return Exchange.KRAKEN;
+		}
+
+		@Override
+		public BookIntegrity integrity() {
+			return integrity;
+		}
+
+		@Override
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		@Override
+		public List<String> subscribeMessages() {
+			return List.of("subscribe");
+		}
+
+		@Override
+		public void onMessage(String message) {
+			messages.add(message);
+		}
+
+		@Override
+		public void onDisconnect() {
+			disconnects++;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.samsonduncan.cryptorouter.connectors.RecordingListener.fixture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KrakenMessageParserTests {
+
+	private final KrakenMessageParser parser = new KrakenMessageParser(
+			new JsonFactory(),
+			channel -> channel == 336 ? InstrumentSpec.BTC_USD : null);
+	private final RecordingListener listener = new RecordingListener();
+
+	@Test
+	void readsASnapshotWithoutEventTime() throws Exception {
+		assertEquals(KrakenMessageParser.MessageType.BOOK, parser.parse(fixture("kraken/snapshot.json"), listener));
+
+		//scaled to 2 price and 8 quantity decimals, level timestamps on a snapshot aren't an event time
+		assertEquals(List.of(
+				"snapshot BTC-USD",
+				"ASK 10010 100000000",
+				"ASK 10020 200000000",
+				"BID 9990 50000000",
+				"end"), listener.events);
+		assertEquals(5, parser.priceDecimals());
+		assertEquals(8, parser.volumeDecimals());
+	}
+
+	@Test
+	void readsADeltaSplitOverTwoObjects() throws Exception {
+		assertEquals(KrakenMessageParser.MessageType.BOOK, parser.parse(fixture("kraken/delta.json"), listener));
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"ASK 10010 150000000",
+				"BID 9990 70000000",
+				"checksum 3478429510",
+				"time 1718000000500000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void passesZeroQuantitiesOnAsDeletes() throws Exception {
+		parser.parse(fixture("kraken/delete.json"), listener);
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"BID 9990 0",
+				"BID 9980 10000000",
+				"checksum 12",
+				"time 1718000000700000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void skipsFieldsItDoesNotKnow() throws Exception {
+		parser.parse(fixture("kraken/extra-fields.json"), listener);
+
+		assertEquals(List.of(
+				"delta BTC-USD",
+				"ASK 10030 300000000",
+				"time 1718000000800000",
+				"end"), listener.events);
+	}
+
+	@Test
+	void dispatchesEventsAndIgnoresUnknownChannels() throws Exception {
+		assertEquals(KrakenMessageParser.MessageType.HEARTBEAT,
+				parser.parse("{\"connectionID\":1,\"extra\":{\"a\":[1]},\"event\":\"heartbeat\"}", listener));
+		assertEquals(KrakenMessageParser.MessageType.SUBSCRIPTION_STATUS,
+				parser.parse("{\"event\":\"subscriptionStatus\",\"channelID\":336}", listener));
+		assertEquals(KrakenMessageParser.MessageType.OTHER,
+				parser.parse("{\"event\":\"systemStatus\",\"status\":\"online\"}", listener));
+		assertEquals(KrakenMessageParser.MessageType.OTHER,
+				parser.parse(fixture("kraken/delta.json").replace("[336,", "[999,"), listener));
+		assertEquals(List.of(), listener.events);
+	}
+
+	@Test
+	void rejectsPricesFinerThanTheInstrumentsTick() {
+		String message = fixture("kraken/delta.json").replace("99.90000", "99.90500");
+		assertThrows(ArithmeticException.class, () -> parser.parse(message, listener));
+	}
+}
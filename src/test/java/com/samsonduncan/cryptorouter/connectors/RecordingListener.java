@@ -0,0 +1,54 @@
+package com.samsonduncan.cryptorouter.connectors;
+
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+//Writes down every book event a parser delivers, for the parser tests
+class RecordingListener implements BookEventListener {
+
+	final List<String> events = new ArrayList<>();
+
+	@Override
+	public void onBookStart(InstrumentSpec instrument, boolean snapshot) {
+		events.add((snapshot ? "snapshot " : "delta ") + instrument.symbol());
+	}
+
+	@Override
+	public void onLevel(BookSide side, long price, long quantity) {
+		events.add(side + " " + price + " " + quantity);
+	}
+
+	@Override
+	public void onChecksum(long checksum) {
+		events.add("checksum " + checksum);
+	}
+
+	@Override
+	public void onEventTime(long epochMicros) {
+		events.add("time " + epochMicros);
+	}
+
+	@Override
+	public void onBookEnd() {
+		events.add("end");
+	}
+
+	//one recorded message from src/test/resources/fixtures
+	static String fixture(String name) {
+		try (InputStream in = RecordingListener.class.getClassLoader().getResourceAsStream("fixtures/" + name)) {
+			if (in == null) {
+				throw new IllegalArgumentException("Fixture not found: " + name);
+			}
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8).strip();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
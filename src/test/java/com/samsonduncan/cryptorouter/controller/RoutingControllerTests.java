@@ -0,0 +1,191 @@
+package com.samsonduncan.cryptorouter.controller;
+
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.config.WireFormatConfig;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.PriceOnlyOptimiser;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import com.samsonduncan.cryptorouter.services.RoutingEngine;
+import com.samsonduncan.cryptorouter.wire.ExecutionPlanCodec;
+import com.samsonduncan.cryptorouter.wire.WireFormat;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class RoutingControllerTests {
+
+	private OrderBookService orderBookService;
+	private RoutingController controller;
+	private MockMvc mvc;
+
+	@BeforeEach
+	void setUp() {
+		InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+		orderBookService = new OrderBookService(
+				instruments, 64, OrderBookService.OverflowPolicy.BLOCK, false, new PipelineLatency(instruments));
+		RoutingEngine routingEngine = new RoutingEngine(orderBookService, new PriceOnlyOptimiser());
+		controller = new RoutingController(routingEngine, 2);
+		//JSON as the default, then whatever WireFormatConfig adds after it, as in the app
+		List<HttpMessageConverter<?>> converters = new ArrayList<>(List.of(new MappingJackson2HttpMessageConverter()));
+		new WireFormatConfig().extendMessageConverters(converters);
+		mvc = MockMvcBuilders.standaloneSetup(controller)
+				.setMessageConverters(converters.toArray(HttpMessageConverter[]::new))
+				.build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		orderBookService.shutdown();
+	}
+
+	@Test
+	void routesOffTheRequestThread() {
+		StepVerifier.create(controller.getExecutionPlan("buy", "0.5", "BTC-USD")
+						.map(plan -> Thread.currentThread().getName()))
+				.expectNextMatches(thread -> thread.startsWith("parallel-"))
+				.verifyComplete();
+	}
+
+	@Test
+	void refusesAnUnknownSideAsABadRequest() throws Exception {
+		mvc.perform(post("/route").param("side", "sideways").param("quantity", "1"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void refusesAnEmptyBatchAsABadRequest() throws Exception {
+		mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"BTC-USD\",\"orders\":[]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void refusesABatchOverTheLimitAsABadRequest() throws Exception {
+		mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"BTC-USD\",\"orders\":["
+								+ "{\"side\":\"BUY\",\"quantity\":1},"
+								+ "{\"side\":\"BUY\",\"quantity\":1},"
+								+ "{\"side\":\"BUY\",\"quantity\":1}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void refusesABatchForAnUnknownInstrumentAsABadRequest() throws Exception {
+		mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"DOGE-USD\",\"orders\":[{\"side\":\"BUY\",\"quantity\":1}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void refusesQuantitiesThatWouldRouteNothing() throws Exception {
+		//zero, negative, under one lot, and too many lots for a long
+		for (String quantity : new String[] {"0", "-1", "0.000000001", "1e30", "lots"}) {
+			mvc.perform(post("/route").param("side", "buy").param("quantity", quantity))
+					.andExpect(status().isBadRequest());
+			mvc.perform(get("/quote").param("side", "buy").param("quantity", quantity))
+					.andExpect(status().isBadRequest());
+			mvc.perform(get("/route/stream").param("side", "buy").param("quantity", quantity))
+					.andExpect(status().isBadRequest());
+		}
+	}
+
+	@Test
+	void refusesABatchOrderWithNoSide() throws Exception {
+		mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"BTC-USD\",\"orders\":["
+								+ "{\"side\":\"BUY\",\"quantity\":1},"
+								+ "{\"quantity\":1}]}"))
+				.andExpect(status().isBadRequest());
+		mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"BTC-USD\",\"orders\":[{\"side\":\"SELL\",\"quantity\":0}]}"))
+				.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void routesAValidBatch() throws Exception {
+		MvcResult started = mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"instrument\":\"BTC-USD\",\"orders\":[{\"side\":\"BUY\",\"quantity\":0.5}]}"))
+				.andReturn();
+		//routed inside the Mono, so the result comes back on the async dispatch
+		mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void servesABinaryPlanToClientsThatAcceptOne() throws Exception {
+		publishAsk(10_000, 100_000_000L);
+
+		MvcResult started = mvc.perform(post("/route").param("side", "buy").param("quantity", "0.5")
+						.accept(WireFormat.PLAN_MEDIA_TYPE))
+				.andReturn();
+		byte[] body = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(WireFormat.PLAN_MEDIA_TYPE))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		ExecutionPlan plan = ExecutionPlanCodec.decode(ByteBuffer.wrap(body));
+		assertEquals(1, plan.legs().size());
+		assertEquals(0, new BigDecimal("100").compareTo(plan.vwap()));
+	}
+
+	@Test
+	void servesABinaryBatchToClientsThatAcceptOne() throws Exception {
+		publishAsk(10_000, 100_000_000L);
+
+		MvcResult started = mvc.perform(post("/route/batch").contentType(MediaType.APPLICATION_JSON)
+						.accept(WireFormat.PLAN_MEDIA_TYPE)
+						.content("{\"instrument\":\"BTC-USD\",\"consumeDepth\":true,\"orders\":["
+								+ "{\"side\":\"BUY\",\"quantity\":0.5},"
+								+ "{\"side\":\"BUY\",\"quantity\":0.5}]}"))
+				.andReturn();
+		byte[] body = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andExpect(content().contentType(WireFormat.PLAN_MEDIA_TYPE))
+				.andReturn().getResponse().getContentAsByteArray();
+
+		BatchExecutionPlan batch = ExecutionPlanCodec.decodeBatch(ByteBuffer.wrap(body));
+		assertTrue(batch.consumeDepth());
+		assertEquals(1, batch.bookVersion());
+		assertEquals(2, batch.plans().size());
+		assertEquals(0, new BigDecimal("0.5").compareTo(batch.plans().get(1).legs().get(0).quantity()));
+	}
+
+	//one ask on kraken, waits for the writer to publish it
+	private void publishAsk(long price, long quantity) throws InterruptedException {
+		BookUpdate update = new BookUpdate();
+		update.reset(Exchange.KRAKEN, true);
+		update.add(BookSide.ASK, price, quantity);
+		orderBookService.publish(InstrumentSpec.BTC_USD, update);
+		while (orderBookService.getSnapshot("BTC-USD").version() < 1) {
+			Thread.sleep(1);
+		}
+	}
+}
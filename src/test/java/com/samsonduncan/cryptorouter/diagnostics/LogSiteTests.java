@@ -0,0 +1,118 @@
+package com.samsonduncan.cryptorouter.diagnostics;
+
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LogSiteTests {
+
+	private final AtomicLong nanos = new AtomicLong();
+
+	@Test
+	void rateLimitsEachErrorClassSeparately() {
+		LogSite site = site(enabledLogger("test.limited"), LogSite.Level.WARN, 2);
+
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 1, "first", null));
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 2, "second", null));
+		assertFalse(site.log(Exchange.KRAKEN, "BTC-USD", 3, "third", null));
+
+		//a different failure isn't held back by the lines before it
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 4, "failed", new IOException("closed")));
+
+		//the next second lets lines through again
+		nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 5, "fourth", null));
+	}
+
+	@Test
+	void samplesDebugLines() {
+		LogSite site = site(enabledLogger("test.sampled"), LogSite.Level.DEBUG, 3, "bids", "asks");
+		int queued = 0;
+		for (int i = 0; i < 9; i++) {
+			if (site.log(Exchange.COINBASE, "ETH-USD", i, 10, 10)) {
+				queued++;
+			}
+		}
+		assertEquals(3, queued);
+	}
+
+	@Test
+	void skipsSitesWhoseLevelIsOffWithoutCountingThem() {
+		Logger logger = mock(Logger.class);
+		when(logger.getName()).thenReturn("test.off");
+		LogSite site = site(logger, LogSite.Level.DEBUG, 3);
+
+		assertFalse(site.log(Exchange.KRAKEN, "BTC-USD", 1, 0, 0));
+		assertFalse(site.log(Exchange.KRAKEN, "BTC-USD", 2, 0, 0));
+
+		//the calls made while off didn't move the sample count
+		when(logger.isEnabledForLevel(org.slf4j.event.Level.DEBUG)).thenReturn(true);
+		assertFalse(site.log(Exchange.KRAKEN, "BTC-USD", 3, 0, 0));
+		assertFalse(site.log(Exchange.KRAKEN, "BTC-USD", 4, 0, 0));
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 5, 0, 0));
+	}
+
+	@Test
+	void writesThroughTheSitesLogger() {
+		Logger logger = enabledLogger("test.written");
+		LogSite site = site(logger, LogSite.Level.WARN, 10, "bids");
+		IOException error = new IOException("closed");
+
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 7, 3, 0, "raw", error));
+		assertTrue(site.log(Exchange.KRAKEN, "BTC-USD", 8, 3, 0, "raw", error));
+
+		//the first line of an error class carries its stack trace, later ones don't
+		verify(logger, timeout(1000)).warn(
+				"exchange=KRAKEN instrument=BTC-USD seq=7 bids=3 detail=\"raw\" error=java.io.IOException: closed",
+				error);
+		verify(logger, timeout(1000)).warn(
+				"exchange=KRAKEN instrument=BTC-USD seq=8 bids=3 detail=\"raw\" error=java.io.IOException: closed",
+				(Throwable) null);
+	}
+
+	@Test
+	void formatsStructuredFields() {
+		HotPathLog.LogEvent event = new HotPathLog.LogEvent();
+		event.site = LogSite.error("test.failed", 1, "bids");
+		event.exchange = Exchange.KRAKEN;
+		event.instrument = "BTC-USD";
+		event.sequence = 41;
+		event.first = 7;
+		event.detail = "x".repeat(500);
+		event.error = new IOException("closed");
+		event.skipped = 12;
+
+		StringBuilder line = new StringBuilder();
+		HotPathLog.format(event, line);
+		String text = line.toString();
+
+		assertTrue(text.startsWith("exchange=KRAKEN instrument=BTC-USD seq=41 bids=7"), text);
+		assertTrue(text.contains(" detail=\"" + "x".repeat(200) + "...\""), text);
+		assertTrue(text.endsWith(" error=java.io.IOException: closed (12 suppressed)"), text);
+	}
+
+	//a site on the test's clock, logging to a mock
+	private LogSite site(Logger logger, LogSite.Level level, int limit, String... fields) {
+		return new LogSite(logger, level, limit, fields, HotPathLog.get(), nanos::get);
+	}
+
+	private static Logger enabledLogger(String name) {
+		Logger logger = mock(Logger.class);
+		when(logger.getName()).thenReturn(name);
+		when(logger.isEnabledForLevel(any())).thenReturn(true);
+		return logger;
+	}
+}
@@ -0,0 +1,39 @@
+package com.samsonduncan.cryptorouter.model.normalised;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class FixedPointTests {
+
+	@Test
+	void parsesPaddedAndShortDecimals() {
+		assertEquals(554130L, FixedPoint.parse("5541.30000", 2));
+		assertEquals(554130L, FixedPoint.parse("5541.3", 2));
+		assertEquals(554100L, FixedPoint.parse("5541", 2));
+		assertEquals(123456L, FixedPoint.parse("0.00123456", 8));
+		assertEquals(-150L, FixedPoint.parse("-1.5", 2));
+	}
+
+	@Test
+	void rejectsLostPrecisionAndBadInput() {
+		assertThrows(ArithmeticException.class, () -> FixedPoint.parse("1.005", 2));
+		assertThrows(NumberFormatException.class, () -> FixedPoint.parse("1.0.0", 2));
+		assertThrows(NumberFormatException.class, () -> FixedPoint.parse("", 2));
+		assertThrows(NumberFormatException.class, () -> FixedPoint.parse("abc", 2));
+	}
+
+	@Test
+	void convertsNotionalAcrossLongOverflow() {
+		long price = 10_000_000L; //100000.00 at scale 2
+		long quantity = 5_000_000_000_000L; //50000 at scale 8
+		long low = price * quantity;
+		long high = Math.multiplyHigh(price, quantity);
+
+		assertEquals(new BigDecimal("5000000000.0000000000"), FixedPoint.toBigDecimal(high, low, 10));
+	}
+
+}
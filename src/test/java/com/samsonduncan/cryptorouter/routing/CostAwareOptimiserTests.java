@@ -0,0 +1,94 @@
+package com.samsonduncan.cryptorouter.routing;
+
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CostAwareOptimiserTests {
+
+	private static final long BTC = 100_000_000L;
+
+	@Test
+	void prefersCheaperVenueAfterFees() {
+		BookSnapshot book = book(10_000, BTC, 9_990, BTC);
+		CostAwareOptimiser optimiser = optimiser(
+				venue(Exchange.KRAKEN, "0", "0.00000001", "0"),
+				venue(Exchange.COINBASE, "0.01", "0.00000001", "0"));
+
+		ExecutionPlan plan = optimiser.route(book, OrderSide.BUY, BTC);
+
+		assertEquals(1, plan.legs().size());
+		assertEquals(Exchange.KRAKEN, plan.legs().get(0).exchange());
+		assertEquals(0, new BigDecimal("100").compareTo(plan.allInPrice()));
+	}
+
+	@Test
+	void roundsToLotsAndTopsUpElsewhere() {
+		BookSnapshot book = book(10_000, BTC, 10_010, BTC);
+		CostAwareOptimiser optimiser = optimiser(
+				venue(Exchange.KRAKEN, "0", "0.1", "0"),
+				venue(Exchange.COINBASE, "0", "0.00000001", "0"));
+
+		ExecutionPlan plan = optimiser.route(book, OrderSide.BUY, BTC / 4);
+
+		assertEquals(2, plan.legs().size());
+		assertEquals(0, new BigDecimal("0.2").compareTo(plan.legs().get(0).quantity()));
+		assertEquals(Exchange.COINBASE, plan.legs().get(1).exchange());
+		assertEquals(0, new BigDecimal("0.05").compareTo(plan.legs().get(1).quantity()));
+	}
+
+	@Test
+	void respectsBalancesAndMinimumNotional() {
+		BookSnapshot book = book(10_000, BTC, 10_010, BTC);
+		VenueBalances balances = new VenueBalances();
+		balances.setAvailable(Exchange.KRAKEN, "USD", new BigDecimal("50"));
+		CostAwareOptimiser optimiser = new CostAwareOptimiser(
+				List.of(
+						venue(Exchange.KRAKEN, "0", "0.00000001", "0"),
+						venue(Exchange.COINBASE, "0", "0.00000001", "40")),
+				balances,
+				BigDecimal.ZERO);
+
+		//kraken can only afford half, coinbase's half is over its minimum
+		ExecutionPlan plan = optimiser.route(book, OrderSide.BUY, BTC);
+		assertEquals(0, new BigDecimal("0.5").compareTo(plan.legs().get(0).quantity()));
+		assertEquals(0, new BigDecimal("0.5").compareTo(plan.legs().get(1).quantity()));
+
+		//a smaller order leaves coinbase's share under its minimum, so it is dropped
+		plan = optimiser.route(book, OrderSide.BUY, BTC * 3 / 4);
+		assertEquals(1, plan.legs().size());
+		assertEquals(Exchange.KRAKEN, plan.legs().get(0).exchange());
+		assertTrue(plan.notes().contains("Skipped [COINBASE]"));
+	}
+
+	//one ask level per exchange
+	private static BookSnapshot book(long krakenPrice, long krakenQuantity, long coinbasePrice, long coinbaseQuantity) {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, krakenPrice, krakenQuantity);
+		book.apply(Exchange.COINBASE, BookSide.ASK, coinbasePrice, coinbaseQuantity);
+		return book.snapshot(1);
+	}
+
+	private static CostAwareOptimiser optimiser(VenueProfile... venues) {
+		return new CostAwareOptimiser(List.of(venues), new VenueBalances(), BigDecimal.ZERO);
+	}
+
+	private static VenueProfile venue(Exchange exchange, String fee, String lot, String minNotional) {
+		return new VenueProfile(
+				exchange,
+				List.of(new FeeTier(BigDecimal.ZERO, new BigDecimal(fee))),
+				BigDecimal.ZERO,
+				new BigDecimal(lot),
+				new BigDecimal(minNotional),
+				0);
+	}
+}
@@ -0,0 +1,69 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.nimbusds.jose.crypto.ECDSAVerifier;
+import com.nimbusds.jwt.SignedJWT;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoinbaseAuthServiceTests {
+
+	private final ExecutionModel executionModel = new ExecutionModel(false);
+
+	@AfterEach
+	void tearDown() {
+		executionModel.close();
+	}
+
+	@Test
+	void handsOutEachPooledTokenOnce() throws Exception {
+		//BC writes the curve into the PEM, as Coinbase keys have it
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC", new BouncyCastleProvider());
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		KeyPair keys = generator.generateKeyPair();
+		StringWriter pem = new StringWriter();
+		try (JcaPEMWriter writer = new JcaPEMWriter(pem)) {
+			writer.writeObject(keys);
+		}
+		//as it sits in application.properties, one line with \n separators
+		String singleLine = pem.toString().replace("\n", "\\n");
+		CoinbaseAuthService authService = new CoinbaseAuthService("organizations/o/apiKeys/k", singleLine, 4, executionModel);
+		authService.start();
+
+		String uri = "GET https://api.coinbase.com/api/v3/brokerage/orders";
+		authService.refill(uri);
+		long signed = authService.getSignedTokens();
+		Set<String> tokens = new HashSet<>();
+		for (int i = 0; i < 4; i++) {
+			tokens.add(authService.jwt(uri));
+		}
+		assertEquals(4, tokens.size());
+		assertEquals(0, authService.getPoolMisses());
+
+		//a fifth take finds the pool empty, unless the background top-up beat it
+		tokens.add(authService.jwt(uri));
+		assertEquals(5, tokens.size());
+		assertTrue(authService.getSignedTokens() > signed);
+
+		for (String token : tokens) {
+			SignedJWT jwt = SignedJWT.parse(token);
+			assertTrue(jwt.verify(new ECDSAVerifier((ECPublicKey) keys.getPublic())));
+			assertEquals(uri, jwt.getJWTClaimsSet().getStringClaim("uri"));
+			assertEquals("organizations/o/apiKeys/k", jwt.getHeader().getKeyID());
+		}
+		authService.shutdown();
+	}
+}
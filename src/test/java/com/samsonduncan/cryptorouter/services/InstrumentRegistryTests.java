@@ -0,0 +1,60 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InstrumentRegistryTests {
+
+	private static final InstrumentSpec SOL_USD = new InstrumentSpec("SOL-USD", 2, 8);
+
+	@Test
+	void mapsExchangeSymbolsToOneInstrument() {
+		InstrumentRegistry registry = InstrumentConfig.defaultInstruments();
+
+		assertSame(InstrumentSpec.BTC_USD, registry.forExchangeSymbol(Exchange.KRAKEN, "XBT/USD"));
+		assertSame(InstrumentSpec.BTC_USD, registry.forExchangeSymbol(Exchange.COINBASE, "BTC-USD"));
+		assertEquals("XBT/USD", registry.exchangeSymbol(InstrumentSpec.BTC_USD, Exchange.KRAKEN));
+		assertEquals("ETH-USD", registry.exchangeSymbol(InstrumentSpec.ETH_USD, Exchange.COINBASE));
+
+		//symbols are per exchange, kraken's name for a pair means nothing to coinbase
+		assertNull(registry.forExchangeSymbol(Exchange.COINBASE, "XBT/USD"));
+	}
+
+	@Test
+	void rejectsUnknownAndDuplicateInstruments() {
+		InstrumentRegistry registry = InstrumentConfig.defaultInstruments();
+
+		assertNull(registry.get("DOGE-USD"));
+		assertNull(registry.forExchangeSymbol(Exchange.KRAKEN, "DOGE/USD"));
+		assertThrows(IllegalArgumentException.class, () -> registry.require("DOGE-USD"));
+		assertSame(InstrumentSpec.ETH_USD, registry.require("ETH-USD"));
+
+		assertThrows(IllegalArgumentException.class,
+				() -> registry.register(InstrumentSpec.BTC_USD, Map.of(Exchange.KRAKEN, "XBT/USD")));
+	}
+
+	@Test
+	void listsOnlyWhatEachExchangeTrades() {
+		InstrumentRegistry registry = InstrumentConfig.defaultInstruments()
+				.register(SOL_USD, Map.of(Exchange.COINBASE, "SOL-USD"));
+
+		//registration order
+		assertEquals(List.of(InstrumentSpec.BTC_USD, InstrumentSpec.ETH_USD, SOL_USD), registry.getInstruments());
+		assertEquals(List.of(InstrumentSpec.BTC_USD, InstrumentSpec.ETH_USD), registry.getInstruments(Exchange.KRAKEN));
+		assertEquals(List.of(InstrumentSpec.BTC_USD, InstrumentSpec.ETH_USD, SOL_USD), registry.getInstruments(Exchange.COINBASE));
+		assertNull(registry.exchangeSymbol(SOL_USD, Exchange.KRAKEN));
+
+		//an exchange with nothing registered lists nothing
+		assertEquals(List.of(), new InstrumentRegistry().getInstruments(Exchange.KRAKEN));
+	}
+}
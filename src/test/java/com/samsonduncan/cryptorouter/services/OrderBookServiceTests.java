@@ -0,0 +1,158 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.book.BookSideSnapshot;
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.connectors.CoinbaseAdapter;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.services.PipelineLatency.Series;
+import com.samsonduncan.cryptorouter.services.PipelineLatency.Stage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class OrderBookServiceTests {
+
+	private final InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+	private final OrderBookService orderBookService = new OrderBookService(
+			instruments, 64, OrderBookService.OverflowPolicy.BLOCK, true, new PipelineLatency(instruments));
+
+	@AfterEach
+	void tearDown() {
+		orderBookService.shutdown();
+	}
+
+	@Test
+	void emptySnapshotTakesAnExchangeOutOfTheBook() throws InterruptedException {
+		BookUpdate update = new BookUpdate();
+		update.reset(Exchange.KRAKEN, true);
+		update.add(BookSide.ASK, 10_000, 100_000_000L);
+		orderBookService.publish(InstrumentSpec.BTC_USD, update);
+		update.reset(Exchange.COINBASE, true);
+		update.add(BookSide.ASK, 10_100, 100_000_000L);
+		orderBookService.publish(InstrumentSpec.BTC_USD, update);
+
+		//kraken's feed dropped
+		update.reset(Exchange.KRAKEN, true);
+		orderBookService.publish(InstrumentSpec.BTC_USD, update);
+
+		//publish hands off to the writer thread
+		long deadline = System.currentTimeMillis() + 5_000;
+		BookSnapshot snapshot = orderBookService.getSnapshot("BTC-USD");
+		while (!(snapshot.asks().depth() == 1 && snapshot.asks().price(0) == 10_100)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+			snapshot = orderBookService.getSnapshot("BTC-USD");
+		}
+		assertEquals(1, snapshot.asks().depth());
+		assertEquals(10_100, snapshot.asks().price(0));
+	}
+
+	@Test
+	void coalescedBatchesEndOnTheSameBookAsApplyingEveryUpdate() throws InterruptedException {
+		//the same updates applied one by one, for comparison
+		ConsolidatedBook expected = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		BookUpdate update = new BookUpdate();
+		Random random = new Random(11);
+		for (int i = 0; i < 5_000; i++) {
+			Exchange exchange = Exchange.values()[random.nextInt(Exchange.values().length)];
+			//now and then an exchange resends its whole book
+			boolean snapshot = random.nextInt(50) == 0;
+			update.reset(exchange, snapshot);
+			int levels = snapshot ? 10 : 1 + random.nextInt(4);
+			for (int level = 0; level < levels; level++) {
+				//snapshots best first, deltas anywhere in a narrow band so levels are hit again and again
+				long price = snapshot ? 10_010 + level : 10_010 + random.nextInt(20);
+				update.add(BookSide.ASK, price, snapshot ? 1 + level : random.nextInt(3));
+				update.add(BookSide.BID, 20_000 - price, snapshot ? 1 + level : random.nextInt(3));
+			}
+			expected.apply(update);
+			orderBookService.publish(InstrumentSpec.BTC_USD, update);
+		}
+		BookSnapshot want = expected.snapshot(0);
+
+		long deadline = System.currentTimeMillis() + 5_000;
+		BookSnapshot snapshot = orderBookService.getSnapshot("BTC-USD");
+		while (!(sameLevels(want.bids(), snapshot.bids()) && sameLevels(want.asks(), snapshot.asks()))
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+			snapshot = orderBookService.getSnapshot("BTC-USD");
+		}
+		assertTrue(sameLevels(want.bids(), snapshot.bids()), "bids differ");
+		assertTrue(sameLevels(want.asks(), snapshot.asks()), "asks differ");
+	}
+
+	@Test
+	void timesEachStageFromTheExchangesClock() throws Exception {
+		CoinbaseAdapter adapter = new CoinbaseAdapter(mock(CoinbaseAuthService.class), instruments, orderBookService);
+		adapter.onMessage("{\"type\":\"snapshot\",\"product_id\":\"BTC-USD\","
+				+ "\"bids\":[[\"99.90\",\"0.5\"]],\"asks\":[[\"100.10\",\"1.0\"]]}");
+		//coinbase writes nanoseconds, only microseconds are kept
+		String sent = Instant.now().minusMillis(50).toString();
+		adapter.onMessage("{\"type\":\"l2update\",\"product_id\":\"BTC-USD\","
+				+ "\"changes\":[[\"buy\",\"99.95\",\"1.0\"]],\"time\":\"" + sent + "\"}");
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (orderBookService.getSnapshot("BTC-USD").bids().depth() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+		//the writer times an update after publishing its snapshot, so wait for one after it
+		BookUpdate nothing = new BookUpdate();
+		nothing.reset(Exchange.KRAKEN, false);
+		long version = orderBookService.getSnapshot("BTC-USD").version();
+		orderBookService.publish(InstrumentSpec.BTC_USD, nothing);
+		awaitNewerThan(version);
+
+		PipelineLatency latency = orderBookService.getLatency();
+		latency.roll();
+		Series venue = series(latency, Stage.VENUE);
+		assertEquals(1, venue.count());
+		assertTrue(venue.percentile(0) >= TimeUnit.MILLISECONDS.toNanos(49), venue.percentile(0) + "ns");
+		assertTrue(venue.percentile(0) < TimeUnit.SECONDS.toNanos(5), venue.percentile(0) + "ns");
+		//the snapshot has no time of its own but is still timed through our side
+		assertEquals(2, series(latency, Stage.PARSE).count());
+		assertEquals(2, series(latency, Stage.APPLY).count());
+		assertEquals(0, series(latency, Stage.BROADCAST).count());
+	}
+
+	private static boolean sameLevels(BookSideSnapshot expected, BookSideSnapshot actual) {
+		if (expected.depth() != actual.depth()) {
+			return false;
+		}
+		for (int level = 0; level < expected.depth(); level++) {
+			if (expected.price(level) != actual.price(level)) {
+				return false;
+			}
+			for (Exchange exchange : Exchange.values()) {
+				if (expected.quantity(level, exchange) != actual.quantity(level, exchange)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static Series series(PipelineLatency latency, Stage stage) {
+		return latency.series().stream()
+				.filter(s -> s.stage() == stage && s.exchange() == Exchange.COINBASE && s.instrument().equals("BTC-USD"))
+				.findFirst()
+				.orElseThrow();
+	}
+
+	private void awaitNewerThan(long version) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (orderBookService.getSnapshot("BTC-USD").version() <= version && System.currentTimeMillis() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+}
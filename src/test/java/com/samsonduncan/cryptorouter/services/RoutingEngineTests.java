@@ -0,0 +1,100 @@
+package com.samsonduncan.cryptorouter.services;
+
+import com.samsonduncan.cryptorouter.book.BookUpdate;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.OrderSide;
+import com.samsonduncan.cryptorouter.routing.PriceOnlyOptimiser;
+import com.samsonduncan.cryptorouter.routing.RouteRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RoutingEngineTests {
+
+	private OrderBookService orderBookService;
+	private RoutingEngine routingEngine;
+
+	@BeforeEach
+	void setUp() {
+		InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+		orderBookService = new OrderBookService(
+				instruments, 64, OrderBookService.OverflowPolicy.BLOCK, false, new PipelineLatency(instruments));
+		routingEngine = new RoutingEngine(orderBookService, new PriceOnlyOptimiser());
+	}
+
+	@AfterEach
+	void tearDown() {
+		orderBookService.shutdown();
+	}
+
+	@Test
+	void streamsOnlyWhenThePlanChanges() throws InterruptedException {
+		publishAsk(10_000, 100_000_000L, true);
+		awaitVersion(1);
+
+		StepVerifier.create(routingEngine.streamRoute("BTC-USD", OrderSide.BUY, new BigDecimal("0.5")))
+				.expectNextMatches(update -> update.bookVersion() == 1
+						&& update.plan().vwap().compareTo(new BigDecimal("100")) == 0)
+				//a level the order never reaches, same plan
+				.then(() -> publishAsk(20_000, 100_000_000L, false))
+				.then(() -> publishAsk(9_900, 100_000_000L, false))
+				.expectNextMatches(update -> update.bookVersion() == 3
+						&& update.plan().vwap().compareTo(new BigDecimal("99")) == 0)
+				.thenCancel()
+				.verify(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void batchOrdersTakeTurnsAtTheSameLevel() throws InterruptedException {
+		//1 BTC at 100 on each venue, then 101
+		publishAsk(Exchange.KRAKEN, 10_000, 100_000_000L, true);
+		publishAsk(Exchange.COINBASE, 10_000, 100_000_000L, true);
+		publishAsk(Exchange.KRAKEN, 10_100, 100_000_000L, false);
+		awaitVersion(3);
+
+		List<RouteRequest> orders = List.of(
+				new RouteRequest(OrderSide.BUY, new BigDecimal("0.5")),
+				new RouteRequest(OrderSide.BUY, new BigDecimal("1")),
+				new RouteRequest(OrderSide.BUY, new BigDecimal("1")));
+		BatchExecutionPlan batch = routingEngine.calculateRoutes("BTC-USD", orders, true);
+
+		//the first two share the 100 level across both venues, the third gets its last 0.5 and goes on to 101
+		assertEquals(3, batch.bookVersion());
+		assertEquals(0, new BigDecimal("100").compareTo(batch.plans().get(0).vwap()));
+		assertEquals(0, new BigDecimal("100").compareTo(batch.plans().get(1).vwap()));
+		assertEquals(0, new BigDecimal("100.5").compareTo(batch.plans().get(2).vwap()));
+
+		//without consuming, every order sees the untouched book
+		BatchExecutionPlan independent = routingEngine.calculateRoutes("BTC-USD", orders, false);
+		assertEquals(0, new BigDecimal("100").compareTo(independent.plans().get(2).vwap()));
+	}
+
+	private void publishAsk(long price, long quantity, boolean snapshot) {
+		publishAsk(Exchange.KRAKEN, price, quantity, snapshot);
+	}
+
+	private void publishAsk(Exchange exchange, long price, long quantity, boolean snapshot) {
+		BookUpdate update = new BookUpdate();
+		update.reset(exchange, snapshot);
+		update.add(BookSide.ASK, price, quantity);
+		orderBookService.publish(InstrumentSpec.BTC_USD, update);
+	}
+
+	//publish hands off to the writer thread
+	private void awaitVersion(long version) throws InterruptedException {
+		while (orderBookService.getSnapshot("BTC-USD").version() < version) {
+			Thread.sleep(1);
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookDiffTests {
+
+	@Test
+	void reportsChangedAddedAndRemovedLevels() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 101, 1);
+		book.apply(Exchange.COINBASE, BookSide.BID, 101, 2);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 99, 3);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 98, 4);
+		BookSnapshot before = book.snapshot(1);
+
+		book.apply(Exchange.COINBASE, BookSide.BID, 101, 5);
+		book.apply(Exchange.COINBASE, BookSide.BID, 100, 6);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 99, 0);
+		BookSnapshot after = book.snapshot(2);
+
+		List<BookDiff.LevelChange> changes = BookDiff.changes(before.bids(), after.bids());
+		assertEquals(List.of(
+				new BookDiff.LevelChange(101, Exchange.COINBASE, 5),
+				new BookDiff.LevelChange(100, Exchange.COINBASE, 6),
+				new BookDiff.LevelChange(99, Exchange.KRAKEN, 0)), changes);
+
+		assertTrue(BookDiff.changes(after.bids(), after.bids()).isEmpty());
+	}
+
+	@Test
+	void limitsToTopLevelsAndSumsExchanges() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 100, 1);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 101, 2);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 102, 3);
+		BookSnapshot before = book.snapshot(1);
+
+		//a better level pushes 101 out of the top two, a change at 102 is never seen
+		book.apply(Exchange.COINBASE, BookSide.ASK, 99, 4);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 100, 5);
+		book.apply(Exchange.COINBASE, BookSide.ASK, 102, 6);
+		BookSnapshot after = book.snapshot(2);
+
+		assertEquals(List.of(
+				new BookDiff.LevelChange(99, null, 4),
+				new BookDiff.LevelChange(100, null, 6),
+				new BookDiff.LevelChange(101, null, 0)),
+				BookDiff.changes(before.asks(), after.asks(), 2, true));
+	}
+}
@@ -0,0 +1,93 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samsonduncan.cryptorouter.config.ExecutionModel;
+import com.samsonduncan.cryptorouter.config.InstrumentConfig;
+import com.samsonduncan.cryptorouter.services.InstrumentRegistry;
+import com.samsonduncan.cryptorouter.services.OrderBookService;
+import com.samsonduncan.cryptorouter.services.PipelineLatency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OrderBookWebSocketHandlerTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final List<String> sent = new CopyOnWriteArrayList<>();
+	private OrderBookService orderBookService;
+	private ExecutionModel executionModel;
+	private OrderBookWebSocketHandler handler;
+	private WebSocketSession session;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		InstrumentRegistry instruments = InstrumentConfig.defaultInstruments();
+		orderBookService = new OrderBookService(
+				instruments, 64, OrderBookService.OverflowPolicy.BLOCK, false, new PipelineLatency(instruments));
+		executionModel = new ExecutionModel(false);
+		handler = new OrderBookWebSocketHandler(orderBookService, objectMapper, executionModel, 100, 5000, 1 << 20, 5);
+
+		session = mock(WebSocketSession.class);
+		when(session.getId()).thenReturn("test");
+		when(session.isOpen()).thenReturn(true);
+		doAnswer(invocation -> {
+			WebSocketMessage<?> message = invocation.getArgument(0);
+			sent.add((String) message.getPayload());
+			return null;
+		}).when(session).sendMessage(any());
+		handler.afterConnectionEstablished(session);
+	}
+
+	@AfterEach
+	void tearDown() {
+		executionModel.close();
+		orderBookService.shutdown();
+	}
+
+	@Test
+	void answersMalformedRequestsWithoutClosingTheSession() throws Exception {
+		handler.handleTextMessage(session, new TextMessage("{\"type\":\"subscribe\","));
+
+		assertEquals("Malformed request", awaitError());
+		verify(session, never()).close(any(CloseStatus.class));
+		assertEquals(1, handler.getSessionCount());
+	}
+
+	@Test
+	void checksTheTypeBeforeTheInstrument() throws Exception {
+		handler.handleTextMessage(session, new TextMessage("{\"type\":\"bogus\"}"));
+
+		assertEquals("Unknown request type: bogus", awaitError());
+	}
+
+	//the session's snapshots go out first, the error follows them
+	private String awaitError() throws Exception {
+		verify(session, timeout(1000).atLeastOnce()).sendMessage(any());
+		long deadline = System.currentTimeMillis() + 1000;
+		while (System.currentTimeMillis() < deadline) {
+			for (String message : sent) {
+				if (message.contains("\"error\"")) {
+					return objectMapper.readTree(message).path("message").asText();
+				}
+			}
+			Thread.sleep(1);
+		}
+		throw new AssertionError("No error sent, got " + sent);
+	}
+}
@@ -0,0 +1,121 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SessionSenderTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void dropsBacklogForSnapshotsWhenTooFarBehind() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		List<String> sent = new CopyOnWriteArrayList<>();
+		WebSocketSession session = session(sent, started, release);
+		FeedStats stats = new FeedStats();
+		SessionSender sender = new SessionSender(session, executor,
+				() -> List.of(new TextMessage("snapshot")), new FeedLimits(Long.MAX_VALUE, 10, 5), stats);
+
+		//the first send blocks, the rest queue up past the limit
+		sender.offer(new TextMessage("first"));
+		started.await(1, TimeUnit.SECONDS);
+		for (int i = 0; i < 5; i++) {
+			sender.offer(new TextMessage("delta" + i));
+		}
+		sender.offer(new TextMessage("last"));
+		release.countDown();
+
+		verify(session, timeout(1000).times(4)).sendMessage(any());
+		assertEquals(List.of("first", "snapshot", "delta4", "last"), sent);
+		assertEquals(2, stats.overflows.sum());
+		assertEquals(4, stats.dropped.sum());
+	}
+
+	@Test
+	void closesSessionThatNeverCatchesUp() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		WebSocketSession session = session(new CopyOnWriteArrayList<>(), started, release);
+		FeedStats stats = new FeedStats();
+		SessionSender sender = new SessionSender(session, executor,
+				List::of, new FeedLimits(Long.MAX_VALUE, 10, 2), stats);
+
+		sender.offer(new TextMessage("first"));
+		started.await(1, TimeUnit.SECONDS);
+		for (int i = 0; i < 10; i++) {
+			sender.offer(new TextMessage("delta-" + i));
+		}
+
+		verify(session, timeout(1000)).close(any(CloseStatus.class));
+		assertEquals(1, stats.evicted.sum());
+		release.countDown();
+	}
+
+	@Test
+	void closesSessionWhileASendIsStillBlocked() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		WebSocketSession session = session(new CopyOnWriteArrayList<>(), started, release);
+		FeedStats stats = new FeedStats();
+		long limit = TimeUnit.MILLISECONDS.toNanos(50);
+		SessionSender sender = new SessionSender(session, executor,
+				List::of, new FeedLimits(limit, 1_000, 5), stats);
+
+		//nothing in flight, nothing to time out
+		sender.checkSendTime(System.nanoTime() + 2 * limit);
+		assertEquals(0, stats.evicted.sum());
+
+		sender.offer(new TextMessage("first"));
+		started.await(1, TimeUnit.SECONDS);
+		sender.checkSendTime(System.nanoTime());
+		assertEquals(0, stats.evicted.sum());
+
+		//the send hasn't returned, the watchdog closes the session anyway
+		sender.checkSendTime(System.nanoTime() + 2 * limit);
+		verify(session, timeout(1000)).close(any(CloseStatus.class));
+		assertEquals(1, stats.evicted.sum());
+		release.countDown();
+	}
+
+	//records payloads, the first send waits for release
+	private static WebSocketSession session(List<String> sent, CountDownLatch started, CountDownLatch release) throws Exception {
+		WebSocketSession session = mock(WebSocketSession.class);
+		when(session.isOpen()).thenReturn(true);
+		when(session.getId()).thenReturn("test");
+		doAnswer(invocation -> {
+			WebSocketMessage<?> message = invocation.getArgument(0);
+			if (sent.isEmpty()) {
+				started.countDown();
+				release.await(5, TimeUnit.SECONDS);
+			}
+			sent.add((String) message.getPayload());
+			return null;
+		}).when(session).sendMessage(any());
+		return session;
+	}
+}
@@ -0,0 +1,61 @@
+package com.samsonduncan.cryptorouter.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ShapeFeedTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void writesPlainDecimals() {
+		BookJsonWriter json = new BookJsonWriter(4);
+		json.decimal(5_000_001, 2).raw(',')
+				.decimal(1, 8).raw(',')
+				.decimal(-150_000_000, 8).raw(',')
+				.decimal(Long.MAX_VALUE, 0).raw(',')
+				.number(0);
+
+		assertEquals("50000.01,0.00000001,-1.50000000,9223372036854775807,0", json.toMessage().getPayload());
+	}
+
+	@Test
+	void encodesSnapshotsOncePerSeq() throws Exception {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 10_001, 50_000_000);
+		book.apply(Exchange.COINBASE, BookSide.BID, 10_001, 1);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 10_100, 100_000_000);
+		ShapeFeed feed = new ShapeFeed(FeedShape.full("BTC-USD", false), book.snapshot(1));
+
+		WebSocketMessage<?> first = feed.snapshotMessage();
+		assertSame(first, feed.snapshotMessage());
+		String snapshot = ((TextMessage) first).getPayload();
+		assertEquals("{\"type\":\"snapshot\",\"instrument\":\"BTC-USD\",\"seq\":0,"
+				+ "\"bids\":{\"100.01\":{\"KRAKEN\":0.50000000,\"COINBASE\":0.00000001}},"
+				+ "\"asks\":{\"101.00\":{\"KRAKEN\":1.00000000}}}", snapshot);
+		objectMapper.readTree(snapshot);
+
+		//same book version, nothing encoded
+		assertNull(feed.deltaMessage(book.snapshot(1)));
+
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 10_100, 0);
+		String delta = ((TextMessage) feed.deltaMessage(book.snapshot(2))).getPayload();
+		assertEquals("{\"type\":\"delta\",\"instrument\":\"BTC-USD\",\"seq\":1,"
+				+ "\"bids\":[],\"asks\":[[101.00,\"KRAKEN\",0.00000000]]}", delta);
+
+		WebSocketMessage<?> second = feed.snapshotMessage();
+		assertNotSame(first, second);
+		assertEquals("{}", objectMapper.readTree(((TextMessage) second).getPayload()).get("asks").toString());
+	}
+}
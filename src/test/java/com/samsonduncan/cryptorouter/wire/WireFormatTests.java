@@ -0,0 +1,110 @@
+package com.samsonduncan.cryptorouter.wire;
+
+import com.samsonduncan.cryptorouter.book.BookSnapshot;
+import com.samsonduncan.cryptorouter.book.ConsolidatedBook;
+import com.samsonduncan.cryptorouter.model.normalised.BookSide;
+import com.samsonduncan.cryptorouter.model.normalised.Exchange;
+import com.samsonduncan.cryptorouter.model.normalised.InstrumentSpec;
+import com.samsonduncan.cryptorouter.routing.BatchExecutionPlan;
+import com.samsonduncan.cryptorouter.routing.ExecutionLeg;
+import com.samsonduncan.cryptorouter.routing.ExecutionPlan;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WireFormatTests {
+
+	@Test
+	void readsSnapshotLevelsInPlace() {
+		ConsolidatedBook book = new ConsolidatedBook(InstrumentSpec.BTC_USD);
+		book.apply(Exchange.KRAKEN, BookSide.BID, 101, 1);
+		book.apply(Exchange.COINBASE, BookSide.BID, 101, 2);
+		book.apply(Exchange.COINBASE, BookSide.BID, 100, 3);
+		book.apply(Exchange.KRAKEN, BookSide.ASK, 102, 4);
+		BookSnapshot snapshot = book.snapshot(7);
+
+		ByteBuffer message = BookMessageWriter.snapshot(InstrumentSpec.BTC_USD, 3, 7, false, true, true, 2, 1)
+				.level(snapshot.bids(), 0)
+				.level(snapshot.bids(), 1)
+				.level(snapshot.asks(), 0)
+				.finish();
+
+		BookMessageReader reader = new BookMessageReader().wrap(message);
+		assertEquals(WireFormat.SNAPSHOT, reader.type());
+		assertEquals("BTC-USD", reader.instrument());
+		assertEquals(3, reader.seq());
+		assertEquals(7, reader.bookVersion());
+		assertEquals(2, reader.priceScale());
+		assertEquals(2, reader.levels(BookSide.BID));
+		assertEquals(101, reader.price(BookSide.BID, 0));
+		assertEquals(2, reader.quantity(BookSide.BID, 0, Exchange.COINBASE.ordinal()));
+		assertEquals(3, reader.quantity(BookSide.BID, 0));
+		assertEquals(102, reader.price(BookSide.ASK, 0));
+		assertEquals(4, reader.quantity(BookSide.ASK, 0, Exchange.KRAKEN.ordinal()));
+	}
+
+	@Test
+	void readsDeltaChanges() {
+		ByteBuffer message = BookMessageWriter.delta(InstrumentSpec.BTC_USD, 4, 8, false, false, true, 0, 2)
+				.change(102, Exchange.KRAKEN, 0)
+				.change(103, Exchange.COINBASE, 5)
+				.finish();
+
+		BookMessageReader reader = new BookMessageReader().wrap(message);
+		assertEquals(WireFormat.DELTA, reader.type());
+		assertFalse(reader.hasSide(BookSide.BID));
+		assertTrue(reader.hasSide(BookSide.ASK));
+		assertEquals(0, reader.quantity(BookSide.ASK, 0));
+		assertEquals(103, reader.price(BookSide.ASK, 1));
+		assertEquals(5, reader.quantity(BookSide.ASK, 1));
+		assertEquals(Exchange.COINBASE.ordinal(), reader.exchange(BookSide.ASK, 1));
+	}
+
+	@Test
+	void roundTripsExecutionPlans() {
+		ExecutionPlan plan = new ExecutionPlan(
+				List.of(new ExecutionLeg(Exchange.KRAKEN, new BigDecimal("0.50000000"), new BigDecimal("67000.01"),
+						new BigDecimal("134.0000200000"))),
+				new BigDecimal("67000.01"),
+				new BigDecimal("67268.0104"),
+				"Order filled successfully.");
+
+		ExecutionPlan decoded = ExecutionPlanCodec.decode(ByteBuffer.wrap(ExecutionPlanCodec.encode(plan)));
+
+		assertEquals(plan.legs(), decoded.legs());
+		assertEquals(0, plan.vwap().compareTo(decoded.vwap()));
+		assertEquals(0, plan.allInPrice().compareTo(decoded.allInPrice()));
+		assertEquals(plan.notes(), decoded.notes());
+	}
+
+	@Test
+	void roundTripsBatchesOfPlans() {
+		ExecutionPlan filled = new ExecutionPlan(
+				List.of(new ExecutionLeg(Exchange.KRAKEN, new BigDecimal("0.50000000"), new BigDecimal("67000.01"),
+								new BigDecimal("0E-10")),
+						new ExecutionLeg(Exchange.COINBASE, new BigDecimal("0.25000000"), new BigDecimal("67000.02"),
+								new BigDecimal("0E-10"))),
+				new BigDecimal("67000.01333333"),
+				new BigDecimal("67000.01333333"),
+				"Order filled successfully.");
+		//notes of a length that leaves the next plan to be realigned
+		ExecutionPlan empty = new ExecutionPlan(List.of(), BigDecimal.ZERO, BigDecimal.ZERO, "No liquidity");
+		BatchExecutionPlan batch = new BatchExecutionPlan(42, true, List.of(empty, filled, empty));
+
+		BatchExecutionPlan decoded = ExecutionPlanCodec.decodeBatch(ByteBuffer.wrap(ExecutionPlanCodec.encode(batch)));
+
+		assertEquals(42, decoded.bookVersion());
+		assertTrue(decoded.consumeDepth());
+		assertEquals(3, decoded.plans().size());
+		assertEquals(filled.legs(), decoded.plans().get(1).legs());
+		assertEquals(0, filled.vwap().compareTo(decoded.plans().get(1).vwap()));
+		assertEquals("No liquidity", decoded.plans().get(0).notes());
+		assertEquals("No liquidity", decoded.plans().get(2).notes());
+	}
+}